@@ -8,20 +8,44 @@ import com.facebook.react.bridge.ReactMethod;
 
 import android.R;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
 import androidx.core.content.ContextCompat;
 import android.provider.Settings;
 import android.content.Context;
 import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * animationsEnabled is exported as a constant and kept current by an observer on the animation scale settings,
+ * which emits EVENT_ANIMATIONS_CHANGED only when the resulting value flips.
+ */
 public class AccessibilityModule extends ReactContextBaseJavaModule {
+    private static final String EVENT_ANIMATIONS_CHANGED = "animationsEnabledChanged";
+    private static final String[] ANIMATION_SCALES = {
+        Settings.Global.ANIMATOR_DURATION_SCALE,
+        Settings.Global.TRANSITION_ANIMATION_SCALE,
+        Settings.Global.WINDOW_ANIMATION_SCALE,
+    };
+
     ReactApplicationContext moduleContext;
     ContentResolver resolver;
+    private volatile boolean animationsEnabled;
+    private ContentObserver animationsObserver = null;
 
     AccessibilityModule(ReactApplicationContext context) {
         super(context);
 
         moduleContext = context;
         resolver = context.getApplicationContext().getContentResolver();
+        animationsEnabled = readAnimationsEnabled();
     }
 
     @Override
@@ -29,14 +53,67 @@ public class AccessibilityModule extends ReactContextBaseJavaModule {
         return "AccessibilityModule";
     }
 
+    @Override
+    public Map<String, Object> getConstants() {
+        Map<String, Object> constants = new HashMap<>();
+        constants.put("animationsEnabled", animationsEnabled);
+        return constants;
+    }
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        animationsObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                boolean enabled = readAnimationsEnabled();
+                if (enabled == animationsEnabled)
+                    return;
+                animationsEnabled = enabled;
+                if (!moduleContext.hasActiveReactInstance())
+                    return;
+                WritableMap params = Arguments.createMap();
+                params.putBoolean("animationsEnabled", enabled);
+                moduleContext.getJSModule(RCTNativeAppEventEmitter.class).emit(EVENT_ANIMATIONS_CHANGED, params);
+            }
+        };
+        for (String scale : ANIMATION_SCALES)
+            resolver.registerContentObserver(Settings.Global.getUriFor(scale), false, animationsObserver);
+    }
+
+    @Override
+    public void invalidate() {
+        if (animationsObserver != null)
+            resolver.unregisterContentObserver(animationsObserver);
+        animationsObserver = null;
+        super.invalidate();
+    }
+
+    /* Kept for older callers, answered from the observed value. */
     @ReactMethod
     public void areAnimationsEnabled(Promise promise) {
+        promise.resolve(animationsEnabled);
+    }
+
+    @ReactMethod
+    public void addListener(String event) {
+        // Keep:  Required for RN built-in NativeEventEmitter calls.
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+        // Keep:  Required for RN built-in NativeEventEmitter calls.
+    }
+
+    private boolean readAnimationsEnabled() {
         try {
-            promise.resolve(!(Settings.Global.getFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE) == 0f &&
-                Settings.Global.getFloat(resolver, Settings.Global.TRANSITION_ANIMATION_SCALE) == 0f &&
-                Settings.Global.getFloat(resolver, Settings.Global.WINDOW_ANIMATION_SCALE) == 0f));
+            for (String scale : ANIMATION_SCALES) {
+                if (Settings.Global.getFloat(resolver, scale) != 0f)
+                    return true;
+            }
+            return false;
         } catch (Exception e) {
-            promise.resolve(true);
+            return true;
         }
     }
 }
@@ -0,0 +1,103 @@
+package com.nunti;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/*
+ * Removes seen (already rated) articles, duplicate urls, too old articles and duplicate titles,
+ * same rules as the former ArticlesUtils.CleanArticles but with hash lookups instead of linear searches:
+ * - seen: url is in the seen list,
+ * - dup_url: an earlier kept article has the same url,
+ * - old: older than maxAgeMs (articles without a date are kept),
+ * - dup_title: same lowercased title as another kept article, one random article of each group survives.
+ */
+public class ArticleDeduplicator {
+    public static final String SEEN = "seen";
+    public static final String DUP_URL = "dup_url";
+    public static final String OLD = "old";
+    public static final String DUP_TITLE = "dup_title";
+
+    /** Returns indexes of kept items in their original order. */
+    public static Result clean(List<Item> items, Set<String> seenUrls, long maxAgeMs, long now, Random random) {
+        Map<String, Integer> removedReasonCount = new LinkedHashMap<>();
+        removedReasonCount.put(SEEN, 0);
+        removedReasonCount.put(DUP_URL, 0);
+        removedReasonCount.put(OLD, 0);
+        removedReasonCount.put(DUP_TITLE, 0);
+
+        // one pass over articles, title groups pick their survivor by reservoir sampling
+        Set<String> keptUrls = new HashSet<>(items.size() * 2);
+        Map<String, int[]> titles = new HashMap<>(items.size() * 2); // lowercased title -> {chosen index, group size}
+        boolean[] kept = new boolean[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if (seenUrls.contains(item.url)) {
+                increment(removedReasonCount, SEEN);
+            } else if (keptUrls.contains(item.url)) {
+                increment(removedReasonCount, DUP_URL);
+            } else if (item.date != null && now - item.date >= maxAgeMs) {
+                increment(removedReasonCount, OLD);
+            } else {
+                keptUrls.add(item.url);
+                kept[i] = true;
+                String title = item.title.toLowerCase(Locale.ROOT);
+                int[] group = titles.get(title);
+                if (group == null) {
+                    titles.put(title, new int[] { i, 1 });
+                } else {
+                    group[1]++;
+                    increment(removedReasonCount, DUP_TITLE);
+                    if (random.nextInt(group[1]) == 0) {
+                        kept[group[0]] = false;
+                        group[0] = i;
+                    } else {
+                        kept[i] = false;
+                    }
+                }
+            }
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < kept.length; i++) {
+            if (kept[i])
+                indexes.add(i);
+        }
+        int[] result = new int[indexes.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = indexes.get(i);
+        return new Result(result, removedReasonCount);
+    }
+
+    private static void increment(Map<String, Integer> counts, String reason) {
+        counts.put(reason, counts.get(reason) + 1);
+    }
+
+    public static class Item {
+        public final String url;
+        public final String title;
+        public final Long date; // milliseconds since epoch, null if unknown
+
+        public Item(String url, String title, Long date) {
+            this.url = url;
+            this.title = title != null ? title : "";
+            this.date = date;
+        }
+    }
+
+    public static class Result {
+        public final int[] kept;
+        public final Map<String, Integer> removedReasonCount;
+
+        Result(int[] kept, Map<String, Integer> removedReasonCount) {
+            this.kept = kept;
+            this.removedReasonCount = removedReasonCount;
+        }
+    }
+}
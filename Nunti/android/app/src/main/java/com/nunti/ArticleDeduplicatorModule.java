@@ -0,0 +1,78 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ArticleDeduplicatorModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    ArticleDeduplicatorModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "ArticleDeduplicatorModule";
+    }
+
+    /*
+     * Takes [{url, title, date}] (date in ms or null) and seen urls, resolves with
+     * {kept: [index], removedReasonCount: {seen, dup_url, old, dup_title}}.
+     */
+    @ReactMethod
+    public void clean(final ReadableArray articles, final ReadableArray seenUrls, final ReadableMap options, final Promise promise) {
+        final double maxAgeDays = options.hasKey("maxAgeDays") ? options.getDouble("maxAgeDays") : Double.MAX_VALUE;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<ArticleDeduplicator.Item> items = new ArrayList<>(articles.size());
+                    for (int i = 0; i < articles.size(); i++) {
+                        ReadableMap article = articles.getMap(i);
+                        items.add(new ArticleDeduplicator.Item(
+                            article.getString("url"),
+                            article.hasKey("title") ? article.getString("title") : "",
+                            article.hasKey("date") && !article.isNull("date") ? (long) article.getDouble("date") : null));
+                    }
+                    Set<String> seen = new HashSet<>(seenUrls.size() * 2);
+                    for (int i = 0; i < seenUrls.size(); i++)
+                        seen.add(seenUrls.getString(i));
+
+                    long maxAgeMs = (long) (maxAgeDays * 24 * 60 * 60 * 1000); // saturates for the "no limit" default
+                    ArticleDeduplicator.Result result = ArticleDeduplicator.clean(items, seen, maxAgeMs, System.currentTimeMillis(), new Random());
+
+                    WritableArray kept = Arguments.createArray();
+                    for (int index : result.kept)
+                        kept.pushInt(index);
+                    WritableMap counts = Arguments.createMap();
+                    for (Map.Entry<String, Integer> entry : result.removedReasonCount.entrySet())
+                        counts.putInt(entry.getKey(), entry.getValue());
+                    WritableMap map = Arguments.createMap();
+                    map.putArray("kept", kept);
+                    map.putMap("removedReasonCount", counts);
+                    promise.resolve(map);
+                } catch (Exception e) {
+                    promise.reject("CLEAN_FAILED", "Cleaning articles failed. " + e, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package com.nunti;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Inverted index over a list of articles for ArticlesFilter: lowercased words of title + description
+ * map to article ordinals, feed urls map to bitsets. Same matching rules as ArticlesFilter.Apply:
+ * - search: (title + ' ' + description).toLowerCase().split(' ') contains ANY of the search words,
+ * - feeds: article feed url is one of the given urls,
+ * - tags: article feed url is one of the feeds having a selected tag (resolved by the caller).
+ * Results of the three are intersected.
+ */
+public class ArticleIndex {
+    private final int size;
+    private final Map<String, int[]> postings;
+    private final Map<String, long[]> feeds;
+
+    private ArticleIndex(int size, Map<String, int[]> postings, Map<String, long[]> feeds) {
+        this.size = size;
+        this.postings = postings;
+        this.feeds = feeds;
+    }
+
+    public static ArticleIndex build(List<Entry> articles) {
+        int size = articles.size();
+        Map<String, Posting> building = new HashMap<>();
+        Map<String, long[]> feeds = new HashMap<>();
+
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            Entry article = articles.get(ordinal);
+            long[] feed = feeds.get(article.feedUrl);
+            if (feed == null) {
+                feed = new long[words(size)];
+                feeds.put(article.feedUrl, feed);
+            }
+            feed[ordinal >>> 6] |= 1L << ordinal;
+
+            String text = (article.title + " " + article.description).toLowerCase(Locale.ROOT);
+            int start = 0;
+            while (true) {
+                int end = text.indexOf(' ', start);
+                String token = end < 0 ? text.substring(start) : text.substring(start, end);
+                Posting posting = building.get(token);
+                if (posting == null) {
+                    posting = new Posting();
+                    building.put(token, posting);
+                }
+                posting.add(ordinal);
+                if (end < 0)
+                    break;
+                start = end + 1;
+            }
+        }
+
+        Map<String, int[]> postings = new HashMap<>(building.size() * 2);
+        for (Map.Entry<String, Posting> entry : building.entrySet())
+            postings.put(entry.getKey(), Arrays.copyOf(entry.getValue().ordinals, entry.getValue().count));
+        return new ArticleIndex(size, postings, feeds);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns ordinals of matching articles in ascending order.
+     * A null search, feedUrls or tagFeedUrls means that filter is not active.
+     */
+    public int[] query(String search, Collection<String> feedUrls, Collection<String> tagFeedUrls) {
+        long[] result = new long[words(size)];
+        Arrays.fill(result, -1L);
+        if (size % 64 != 0 && result.length > 0)
+            result[result.length - 1] = (1L << (size % 64)) - 1;
+
+        if (search != null) {
+            long[] matches = new long[result.length];
+            for (String word : search.toLowerCase(Locale.ROOT).split(" ", -1)) {
+                int[] posting = postings.get(word);
+                if (posting != null) {
+                    for (int ordinal : posting)
+                        matches[ordinal >>> 6] |= 1L << ordinal;
+                }
+            }
+            and(result, matches);
+        }
+        if (feedUrls != null)
+            and(result, feedUnion(feedUrls));
+        if (tagFeedUrls != null)
+            and(result, feedUnion(tagFeedUrls));
+
+        int count = 0;
+        for (long word : result)
+            count += Long.bitCount(word);
+        int[] ordinals = new int[count];
+        int i = 0;
+        for (int w = 0; w < result.length; w++) {
+            long word = result[w];
+            while (word != 0) {
+                ordinals[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ordinals;
+    }
+
+    private long[] feedUnion(Collection<String> feedUrls) {
+        long[] union = new long[words(size)];
+        for (String url : feedUrls) {
+            long[] feed = feeds.get(url);
+            if (feed == null)
+                continue;
+            for (int w = 0; w < union.length; w++)
+                union[w] |= feed[w];
+        }
+        return union;
+    }
+
+    private static void and(long[] target, long[] mask) {
+        for (int w = 0; w < target.length; w++)
+            target[w] &= mask[w];
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /* Growing list of ascending ordinals, a word repeated in one article is stored once. */
+    private static class Posting {
+        int[] ordinals = new int[4];
+        int count = 0;
+
+        void add(int ordinal) {
+            if (count > 0 && ordinals[count - 1] == ordinal)
+                return;
+            if (count == ordinals.length)
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+            ordinals[count++] = ordinal;
+        }
+    }
+
+    public static class Entry {
+        public final String title;
+        public final String description;
+        public final String feedUrl;
+
+        public Entry(String title, String description, String feedUrl) {
+            this.title = title != null ? title : "";
+            this.description = description != null ? description : "";
+            this.feedUrl = feedUrl != null ? feedUrl : "";
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.Arguments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ArticleIndexModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /* Only touched from the executor thread. */
+    private static ArticleIndex index = null;
+    private static String indexVersion = null;
+
+    ArticleIndexModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "ArticleIndexModule";
+    }
+
+    /* Indexes [{title, description, sourceUrl}], ordinals are positions in this array. Resolves with the version. */
+    @ReactMethod
+    public void build(final ReadableArray articles, final String version, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<ArticleIndex.Entry> entries = new ArrayList<>(articles.size());
+                    for (int i = 0; i < articles.size(); i++) {
+                        ReadableMap article = articles.getMap(i);
+                        entries.add(new ArticleIndex.Entry(
+                            article.hasKey("title") ? article.getString("title") : "",
+                            article.hasKey("description") ? article.getString("description") : "",
+                            article.hasKey("sourceUrl") ? article.getString("sourceUrl") : ""));
+                    }
+                    index = ArticleIndex.build(entries);
+                    indexVersion = version;
+                    promise.resolve(version);
+                } catch (Exception e) {
+                    promise.reject("INDEX_FAILED", "Cannot build article index. " + e, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getVersion(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(indexVersion);
+            }
+        });
+    }
+
+    /*
+     * Filter is {search, feeds, tagFeeds}, missing keys are inactive filters. Resolves with matching ordinals,
+     * rejects with INDEX_STALE if the index was rebuilt for a different version in the meantime.
+     */
+    @ReactMethod
+    public void query(final String version, final ReadableMap filter, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (index == null || !version.equals(indexVersion)) {
+                    promise.reject("INDEX_STALE", "Article index is at version " + indexVersion + ", not " + version);
+                    return;
+                }
+                int[] ordinals = index.query(
+                    filter.hasKey("search") ? filter.getString("search") : null,
+                    filter.hasKey("feeds") ? toList(filter.getArray("feeds")) : null,
+                    filter.hasKey("tagFeeds") ? toList(filter.getArray("tagFeeds")) : null);
+                WritableArray result = Arguments.createArray();
+                for (int ordinal : ordinals)
+                    result.pushInt(ordinal);
+                promise.resolve(result);
+            }
+        });
+    }
+
+    private static List<String> toList(ReadableArray array) {
+        List<String> list = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++)
+            list.add(array.getString(i));
+        return list;
+    }
+}
@@ -0,0 +1,267 @@
+package com.nunti;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Scores articles against learned keyword weights and hands out the ranked order page by page.
+ * score = sum(article keyword tf-idf * learned weight), same as Article.CalcArticleScoreFast.
+ *
+ * The first page comes from a heap bounded to the page size, the rest of the order is only
+ * built (heapify + pops) once something past the first page is requested.
+ * Every DiscoverRatio-th position (on average, after the first 6) is filled by a random article instead.
+ */
+public class ArticleRanker {
+    private static final int SCORE_CHUNK = 512;
+
+    private final ForkJoinPool pool;
+
+    public ArticleRanker(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public Ranking rank(List<KeywordExtractor.Keywords> articles, WeightTable weights, double discoverRatio, int pageSize, Random random) {
+        KeywordExtractor.Keywords[] keywords = articles.toArray(new KeywordExtractor.Keywords[0]);
+        double[] scores = new double[keywords.length];
+        pool.invoke(new ScoreTask(keywords, weights, scores, 0, keywords.length));
+        return new Ranking(scores, discoverRatio, pageSize, random);
+    }
+
+    private static class ScoreTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final KeywordExtractor.Keywords[] keywords;
+        private final WeightTable weights;
+        private final double[] scores;
+        private final int from;
+        private final int to;
+
+        ScoreTask(KeywordExtractor.Keywords[] keywords, WeightTable weights, double[] scores, int from, int to) {
+            this.keywords = keywords;
+            this.weights = weights;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SCORE_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreTask(keywords, weights, scores, from, middle), new ScoreTask(keywords, weights, scores, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                KeywordExtractor.Keywords article = keywords[i];
+                double score = 0;
+                for (int k = 0; k < article.words.length; k++) {
+                    double weight = weights.get(article.words[k]);
+                    if (weight != 0)
+                        score += article.scores[k] * weight;
+                }
+                scores[i] = score;
+            }
+        }
+    }
+
+    /* Ranked order of one rank() call, positions are produced on demand and remembered. */
+    public static class Ranking {
+        private final double[] scores;
+        private final double discoverRatio;
+        private final Random random;
+        private final int[] tieBreak; // random permutation, shuffles articles with equal scores
+        private final int[] shuffled; // articles by tieBreak, source of discover picks
+        private final boolean[] emitted;
+        private final int[] order;
+        private int produced = 0;
+        private int shuffledCursor = 0;
+
+        private int[] top; // first page candidates, best first
+        private int topCursor = 0;
+        private int[] heap = null; // everything else, built lazily
+        private int heapSize = 0;
+
+        Ranking(double[] scores, double discoverRatio, int pageSize, Random random) {
+            int count = scores.length;
+            this.scores = scores;
+            this.discoverRatio = discoverRatio;
+            this.random = random;
+            this.emitted = new boolean[count];
+            this.order = new int[count];
+
+            shuffled = new int[count];
+            for (int i = 0; i < count; i++)
+                shuffled[i] = i;
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = swap;
+            }
+            tieBreak = new int[count];
+            for (int i = 0; i < count; i++)
+                tieBreak[shuffled[i]] = i;
+
+            top = selectTop(Math.min(Math.max(1, pageSize), count));
+        }
+
+        public int size() {
+            return order.length;
+        }
+
+        public double score(int article) {
+            return scores[article];
+        }
+
+        /** Article indexes at ranked positions [from, to), to is clamped to size(). */
+        public int[] range(int from, int to) {
+            to = Math.min(to, order.length);
+            while (produced < to)
+                order[produced++] = next();
+            return from >= to ? new int[0] : Arrays.copyOfRange(order, from, to);
+        }
+
+        private int next() {
+            int position = produced;
+            if (position > 5 && discoverRatio > 0 && (int) (random.nextDouble() * (1 / discoverRatio)) == 0) {
+                while (emitted[shuffled[shuffledCursor]])
+                    shuffledCursor++;
+                return emit(shuffled[shuffledCursor]);
+            }
+            while (topCursor < top.length) {
+                int article = top[topCursor++];
+                if (!emitted[article])
+                    return emit(article);
+            }
+            if (heap == null)
+                buildHeap();
+            while (true) {
+                int article = pop();
+                if (!emitted[article])
+                    return emit(article);
+            }
+        }
+
+        private int emit(int article) {
+            emitted[article] = true;
+            return article;
+        }
+
+        /* true if a ranks before b */
+        private boolean before(int a, int b) {
+            return scores[a] > scores[b] || (scores[a] == scores[b] && tieBreak[a] < tieBreak[b]);
+        }
+
+        /* Bounded heap with the worst of the best k on top, O(n log k). */
+        private int[] selectTop(int k) {
+            int[] bounded = new int[k];
+            int size = 0;
+            for (int article = 0; article < scores.length; article++) {
+                if (size < k) {
+                    bounded[size] = article;
+                    siftUp(bounded, size++, false);
+                } else if (before(article, bounded[0])) {
+                    bounded[0] = article;
+                    siftDown(bounded, 0, size, false);
+                }
+            }
+            // pop worst-first into the array from the back, leaving it best-first
+            int[] sorted = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                sorted[i] = bounded[0];
+                bounded[0] = bounded[--size];
+                siftDown(bounded, 0, size, false);
+            }
+            return sorted;
+        }
+
+        private void buildHeap() {
+            boolean[] inTop = new boolean[scores.length];
+            for (int article : top)
+                inTop[article] = true;
+            heap = new int[scores.length - top.length];
+            for (int article = 0; article < scores.length; article++) {
+                if (!inTop[article])
+                    heap[heapSize++] = article;
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--)
+                siftDown(heap, i, heapSize, true);
+        }
+
+        private int pop() {
+            int article = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, 0, heapSize, true);
+            return article;
+        }
+
+        /* best == true keeps the best article on top, otherwise the worst one. */
+        private boolean above(int a, int b, boolean best) {
+            return best ? before(a, b) : before(b, a);
+        }
+
+        private void siftUp(int[] array, int index, boolean best) {
+            int article = array[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!above(article, array[parent], best))
+                    break;
+                array[index] = array[parent];
+                index = parent;
+            }
+            array[index] = article;
+        }
+
+        private void siftDown(int[] array, int index, int size, boolean best) {
+            int article = array[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && above(array[child + 1], array[child], best))
+                    child++;
+                if (!above(array[child], article, best))
+                    break;
+                array[index] = array[child];
+                index = child;
+            }
+            array[index] = article;
+        }
+    }
+
+    /* Open addressing String -> double table, avoids boxing every weight during scoring. Missing terms weigh 0. */
+    public static class WeightTable {
+        private final String[] keys;
+        private final double[] values;
+        private final int mask;
+
+        public WeightTable(Map<String, Double> weights) {
+            int capacity = Integer.highestOneBit(Math.max(4, weights.size() * 2 - 1)) << 1;
+            keys = new String[capacity];
+            values = new double[capacity];
+            mask = capacity - 1;
+            for (Map.Entry<String, Double> entry : weights.entrySet()) {
+                int slot = slot(entry.getKey());
+                keys[slot] = entry.getKey();
+                values[slot] = entry.getValue();
+            }
+        }
+
+        public double get(String key) {
+            int slot = slot(key);
+            return keys[slot] == null ? 0 : values[slot];
+        }
+
+        private int slot(String key) {
+            int hash = key.hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null && !keys[slot].equals(key))
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+}
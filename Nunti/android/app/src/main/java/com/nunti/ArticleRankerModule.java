@@ -0,0 +1,144 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+public class ArticleRankerModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    // rankings JS gave up on without release (e.g. a reload of the bundle) are dropped past this many
+    private static final int MAX_RANKINGS = 4;
+
+    /* Only touched from the executor thread, oldest first. */
+    private final Map<Integer, ArticleRanker.Ranking> rankings = new LinkedHashMap<Integer, ArticleRanker.Ranking>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ArticleRanker.Ranking> eldest) {
+            return size() > MAX_RANKINGS;
+        }
+    };
+    private int lastRankingId = 0;
+
+    ArticleRankerModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "ArticleRankerModule";
+    }
+
+    /*
+     * Scores [{keywords}] against learned keyword weights ({term: weight}) and resolves with
+     * {rankingId, total, page: [{index, score}]}, page holds the first pageSize ranked positions.
+     * Further positions are read with getRange, the ranking stays in memory until release,
+     * or until MAX_RANKINGS newer rankings were made.
+     */
+    @ReactMethod
+    public void rank(final ReadableArray articles, final ReadableMap weights, final ReadableMap options, final Promise promise) {
+        final double discoverRatio = options.hasKey("discoverRatio") ? options.getDouble("discoverRatio") : 0;
+        final int pageSize = options.hasKey("pageSize") ? options.getInt("pageSize") : 20;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<KeywordExtractor.Keywords> keywords = new ArrayList<>(articles.size());
+                    for (int i = 0; i < articles.size(); i++)
+                        keywords.add(toKeywords(articles.getMap(i).getMap("keywords")));
+
+                    ArticleRanker.Ranking ranking = new ArticleRanker(pool).rank(keywords,
+                        new ArticleRanker.WeightTable(toDoubleMap(weights)), discoverRatio, pageSize, new Random());
+                    int rankingId = ++lastRankingId;
+                    rankings.put(rankingId, ranking);
+
+                    WritableMap result = Arguments.createMap();
+                    result.putInt("rankingId", rankingId);
+                    result.putInt("total", ranking.size());
+                    result.putArray("page", toWritableArray(ranking, 0, pageSize));
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("RANK_FAILED", "Ranking failed. " + e, e);
+                }
+            }
+        });
+    }
+
+    /* Resolves with [{index, score}] for ranked positions [from, to), to < 0 means until the end. */
+    @ReactMethod
+    public void getRange(final int rankingId, final int from, final int to, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ArticleRanker.Ranking ranking = rankings.get(rankingId);
+                if (ranking == null) {
+                    promise.reject("RANK_FAILED", "Unknown ranking " + rankingId);
+                    return;
+                }
+                promise.resolve(toWritableArray(ranking, from, to < 0 ? ranking.size() : to));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void release(final int rankingId) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                rankings.remove(rankingId);
+            }
+        });
+    }
+
+    private static WritableArray toWritableArray(ArticleRanker.Ranking ranking, int from, int to) {
+        WritableArray array = Arguments.createArray();
+        for (int index : ranking.range(from, to)) {
+            WritableMap item = Arguments.createMap();
+            item.putInt("index", index);
+            item.putDouble("score", ranking.score(index));
+            array.pushMap(item);
+        }
+        return array;
+    }
+
+    private static KeywordExtractor.Keywords toKeywords(ReadableMap map) {
+        Map<String, Double> values = map != null ? toDoubleMap(map) : new HashMap<String, Double>();
+        String[] words = new String[values.size()];
+        double[] scores = new double[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            words[i] = entry.getKey();
+            scores[i++] = entry.getValue();
+        }
+        return new KeywordExtractor.Keywords(words, scores);
+    }
+
+    private static Map<String, Double> toDoubleMap(ReadableMap map) {
+        Map<String, Double> values = new HashMap<>();
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            values.put(key, map.getDouble(key));
+        }
+        return values;
+    }
+}
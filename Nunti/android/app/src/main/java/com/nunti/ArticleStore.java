@@ -0,0 +1,210 @@
+package com.nunti;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Article cache (the feed as last downloaded) in one memory-mapped file, pages are decoded on demand.
+ *
+ * Layout, big endian:
+ *   header   int MAGIC, int VERSION, long timestamp, int count, int offsets[count + 1]
+ *   records  title, description, cover?, url, source, sourceUrl, date?, int keywordCount, (word, double score)*
+ * Strings are int byte length + UTF-8, a nullable string has length -1 for null, a nullable date is a
+ * boolean followed by the long. offsets[i] is where record i starts, offsets[count] is the end of data.
+ */
+public class ArticleStore {
+    private static final int MAGIC = 0x4E415254; // "NART"
+    private static final int VERSION = 1;
+    private static final int TIMESTAMP_OFFSET = 8;
+    private static final int HEADER_BYTES = 20;
+
+    private final File file;
+    private MappedByteBuffer buffer = null;
+    private long timestamp = 0;
+    private int count = 0;
+
+    public ArticleStore(File file) {
+        this.file = file;
+    }
+
+    /** Maps the file, a missing or incompatible file is an empty cache with timestamp 0. */
+    public synchronized void open() throws IOException {
+        buffer = null;
+        timestamp = 0;
+        count = 0;
+        if (!file.exists() || file.length() < HEADER_BYTES)
+            return;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION)
+                return;
+            int storedCount = mapped.getInt(16);
+            if (storedCount < 0 || HEADER_BYTES + 4L * (storedCount + 1) > mapped.capacity())
+                return;
+            buffer = mapped;
+            timestamp = mapped.getLong(TIMESTAMP_OFFSET);
+            count = storedCount;
+        } finally {
+            raf.close(); // the mapping stays valid after the channel is closed
+        }
+    }
+
+    public synchronized long getTimestamp() {
+        return timestamp;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /** Decodes records [from, to), to is clamped to size(). */
+    public synchronized List<Record> read(int from, int to) {
+        to = Math.min(to, count);
+        List<Record> records = new ArrayList<>(Math.max(0, to - from));
+        if (buffer == null)
+            return records;
+        ByteBuffer view = buffer.duplicate();
+        for (int i = Math.max(0, from); i < to; i++) {
+            view.position(buffer.getInt(HEADER_BYTES + 4 * i));
+            records.add(readRecord(view));
+        }
+        return records;
+    }
+
+    /** Replaces the whole cache. Written next to the old file and renamed over it, readers never see a partial file. */
+    public synchronized void write(long timestamp, List<Record> records) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try {
+            raf.setLength(0);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(raf.getFD())));
+            int[] offsets = new int[records.size() + 1];
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(timestamp);
+            output.writeInt(records.size());
+            for (int i = 0; i < offsets.length; i++)
+                output.writeInt(0); // patched below once record sizes are known
+            for (int i = 0; i < records.size(); i++) {
+                offsets[i] = output.size();
+                writeRecord(output, records.get(i));
+            }
+            offsets[records.size()] = output.size();
+            output.flush();
+
+            ByteBuffer table = ByteBuffer.allocate(4 * offsets.length);
+            for (int offset : offsets)
+                table.putInt(offset);
+            table.flip();
+            raf.getChannel().write(table, HEADER_BYTES);
+        } finally {
+            raf.close();
+        }
+        if (!temp.renameTo(file))
+            throw new IOException("Cannot replace " + file);
+        open();
+    }
+
+    /** Changes only the timestamp in place, e.g. to force a re-download. */
+    public synchronized void setTimestamp(long timestamp) throws IOException {
+        if (buffer == null) {
+            write(timestamp, new ArrayList<Record>());
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            ByteBuffer value = ByteBuffer.allocate(8);
+            value.putLong(timestamp);
+            value.flip();
+            raf.getChannel().write(value, TIMESTAMP_OFFSET);
+        } finally {
+            raf.close();
+        }
+        this.timestamp = timestamp;
+    }
+
+    public synchronized void clear() throws IOException {
+        write(0, new ArrayList<Record>());
+    }
+
+    private static Record readRecord(ByteBuffer view) {
+        Record record = new Record();
+        record.title = readString(view);
+        record.description = readString(view);
+        record.cover = readString(view);
+        record.url = readString(view);
+        record.source = readString(view);
+        record.sourceUrl = readString(view);
+        record.date = view.get() != 0 ? view.getLong() : null;
+        int keywordCount = view.getInt();
+        String[] words = new String[keywordCount];
+        double[] scores = new double[keywordCount];
+        for (int k = 0; k < keywordCount; k++) {
+            words[k] = readString(view);
+            scores[k] = view.getDouble();
+        }
+        record.keywords = new KeywordExtractor.Keywords(words, scores);
+        return record;
+    }
+
+    private static void writeRecord(DataOutputStream output, Record record) throws IOException {
+        writeString(output, record.title);
+        writeString(output, record.description);
+        writeString(output, record.cover);
+        writeString(output, record.url);
+        writeString(output, record.source);
+        writeString(output, record.sourceUrl);
+        output.writeBoolean(record.date != null);
+        if (record.date != null)
+            output.writeLong(record.date);
+        KeywordExtractor.Keywords keywords = record.keywords;
+        int keywordCount = keywords != null ? keywords.words.length : 0;
+        output.writeInt(keywordCount);
+        for (int k = 0; k < keywordCount; k++) {
+            writeString(output, keywords.words[k]);
+            output.writeDouble(keywords.scores[k]);
+        }
+    }
+
+    private static String readString(ByteBuffer view) {
+        int length = view.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /* One cached article, mirrors the persisted fields of the JS Article. */
+    public static class Record {
+        public String title = "";
+        public String description = "";
+        public String cover = null;
+        public String url = "";
+        public String source = "";
+        public String sourceUrl = "";
+        public Long date = null;
+        public KeywordExtractor.Keywords keywords = null;
+    }
+}
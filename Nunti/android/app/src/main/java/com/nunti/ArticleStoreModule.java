@@ -0,0 +1,182 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ArticleStoreModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static ArticleStore store = null;
+
+    ArticleStoreModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "ArticleStoreModule";
+    }
+
+    static synchronized ArticleStore getStore(File filesDir) throws IOException {
+        if (store == null) {
+            ArticleStore opened = new ArticleStore(new File(filesDir, "article-cache.bin"));
+            opened.open();
+            store = opened;
+        }
+        return store;
+    }
+
+    /* Resolves with {timestamp, count} without decoding any article. */
+    @ReactMethod
+    public void getHeader(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ArticleStore articles = getStore(getReactApplicationContext().getFilesDir());
+                    WritableMap result = Arguments.createMap();
+                    result.putDouble("timestamp", articles.getTimestamp());
+                    result.putInt("count", articles.size());
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("STORE_FAILED", "Cannot open article cache. " + e, e);
+                }
+            }
+        });
+    }
+
+    /* Resolves with articles at [from, to), to = -1 means until the end. */
+    @ReactMethod
+    public void getRange(final int from, final int to, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ArticleStore articles = getStore(getReactApplicationContext().getFilesDir());
+                    WritableArray result = Arguments.createArray();
+                    for (ArticleStore.Record record : articles.read(from, to < 0 ? articles.size() : to))
+                        result.pushMap(toWritableMap(record));
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("STORE_FAILED", "Cannot read article cache. " + e, e);
+                }
+            }
+        });
+    }
+
+    /* Replaces the cache with [{title, description, cover, url, source, sourceUrl, date, keywords}]. */
+    @ReactMethod
+    public void write(final ReadableArray articles, final double timestamp, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<ArticleStore.Record> records = new ArrayList<>(articles.size());
+                    for (int i = 0; i < articles.size(); i++)
+                        records.add(toRecord(articles.getMap(i)));
+                    getStore(getReactApplicationContext().getFilesDir()).write((long) timestamp, records);
+                    promise.resolve(records.size());
+                } catch (Exception e) {
+                    promise.reject("STORE_FAILED", "Cannot write article cache. " + e, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setTimestamp(final double timestamp, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getStore(getReactApplicationContext().getFilesDir()).setTimestamp((long) timestamp);
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    promise.reject("STORE_FAILED", "Cannot update article cache. " + e, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void clear(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getStore(getReactApplicationContext().getFilesDir()).clear();
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    promise.reject("STORE_FAILED", "Cannot clear article cache. " + e, e);
+                }
+            }
+        });
+    }
+
+    private static ArticleStore.Record toRecord(ReadableMap article) {
+        ArticleStore.Record record = new ArticleStore.Record();
+        record.title = getString(article, "title", "");
+        record.description = getString(article, "description", "");
+        record.cover = getString(article, "cover", null);
+        record.url = getString(article, "url", "");
+        record.source = getString(article, "source", "");
+        record.sourceUrl = getString(article, "sourceUrl", "");
+        if (article.hasKey("date") && article.getType("date") == ReadableType.Number)
+            record.date = (long) article.getDouble("date");
+
+        ReadableMap keywords = article.hasKey("keywords") && article.getType("keywords") == ReadableType.Map ? article.getMap("keywords") : null;
+        List<String> words = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        if (keywords != null) {
+            ReadableMapKeySetIterator iterator = keywords.keySetIterator();
+            while (iterator.hasNextKey()) {
+                String word = iterator.nextKey();
+                words.add(word);
+                scores.add(keywords.getDouble(word));
+            }
+        }
+        double[] scoreArray = new double[scores.size()];
+        for (int i = 0; i < scoreArray.length; i++)
+            scoreArray[i] = scores.get(i);
+        record.keywords = new KeywordExtractor.Keywords(words.toArray(new String[0]), scoreArray);
+        return record;
+    }
+
+    private static String getString(ReadableMap map, String key, String fallback) {
+        return map.hasKey(key) && map.getType(key) == ReadableType.String ? map.getString(key) : fallback;
+    }
+
+    private static WritableMap toWritableMap(ArticleStore.Record record) {
+        WritableMap article = Arguments.createMap();
+        article.putString("title", record.title);
+        article.putString("description", record.description);
+        if (record.cover != null)
+            article.putString("cover", record.cover);
+        article.putString("url", record.url);
+        article.putString("source", record.source);
+        article.putString("sourceUrl", record.sourceUrl);
+        if (record.date != null)
+            article.putDouble("date", record.date);
+        WritableMap keywords = Arguments.createMap();
+        for (int k = 0; k < record.keywords.words.length; k++)
+            keywords.putDouble(record.keywords.words[k], record.keywords.scores[k]);
+        article.putMap("keywords", keywords);
+        return article;
+    }
+}
@@ -0,0 +1,617 @@
+package com.nunti;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import com.transistorsoft.tsbackgroundfetch.BackgroundFetch;
+import com.transistorsoft.tsbackgroundfetch.MetricsRecorder;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Background task without JS: download -> keywords -> cache write -> dedup -> rank -> notification, the same steps
+ * and settings as Background.RunBackgroundTask, so periodic jobs do not have to load the JS bundle.
+ *
+ * JS writes what a run needs to PROFILE_FILE on start and whenever the app goes to background (see Background.ts).
+ * What JS has to learn afterwards (failed attempts of feeds, notified articles) is kept in STATE_FILE, carried over
+ * runs until JS merges and deletes it on its next start. Jobs that need JS (auto-backup due, offline reading)
+ * are handed over to the headless task. The profile is only read on the executor, never on the UI thread.
+ */
+public class BackgroundSync {
+    private static final String TAG = "BackgroundSync";
+    static final String PROFILE_FILE = "background-sync-profile.json";
+    static final String STATE_FILE = "background-sync-state.json";
+    private static final int VERSION = 1;
+
+    private static final long TIME_BUDGET = 50 * 1000; // BGTask times out after 60 s, same budget as Background.ts
+    private static final long DOWNLOAD_RESERVE = 10 * 1000; // no new feed is started later than this before the deadline
+    private static final int DOWNLOAD_THREADS = 6;
+    private static final int NOTIFICATION_BATCH_SIZE = 5;
+    private static final int NOTIFIED_URLS_KEPT = 20;
+    private static final int MAX_FAILED_ATTEMPTS = 9999;
+    private static final int FAULTY_FEED_ATTEMPTS = 4; // such feeds are expected to fail, see Downloader.ts
+
+    /* Runs, profile writes and state file access, one at a time. */
+    static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static volatile FeedDownloader activeDownloader = null;
+
+    private static Profile profile = null;
+    private static long profileModified = 0;
+
+    private final Context context;
+    private final File filesDir;
+    private final Profile settings;
+    private final long deadline;
+    private final Random random = new Random();
+    private final MetricsRecorder metrics;
+
+    private BackgroundSync(Context context, Profile settings, long deadline) {
+        this.context = context;
+        this.metrics = MetricsRecorder.getInstance(context);
+        this.filesDir = context.getFilesDir();
+        this.settings = settings;
+        this.deadline = deadline;
+    }
+
+    /*
+     * BackgroundFetch.NativeHandler, called on the UI thread. Takes every job, the profile is read on the executor
+     * and a job that needs JS is handed over to the headless task from there.
+     */
+    public static boolean start(final Context context, final String taskId) {
+        final long deadline = System.currentTimeMillis() + TIME_BUDGET;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Profile current = getProfile(context);
+                if (!accepts(current)) {
+                    BackgroundFetch.getInstance(context).handOverToHeadless(taskId);
+                    return;
+                }
+                int result = BackgroundFetch.FETCH_RESULT_FAILED;
+                try {
+                    if (System.currentTimeMillis() >= deadline - DOWNLOAD_RESERVE) {
+                        Log.w(TAG, "Task " + taskId + " waited for the previous run too long, skipping.");
+                        result = -1; // says nothing about the feeds, the interval stays as it is
+                    } else {
+                        result = new BackgroundSync(context, current, deadline).run();
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Background sync failed, task " + taskId, e);
+                } finally {
+                    BackgroundFetch.getInstance(context).finish(taskId, result);
+                }
+            }
+        });
+        return true;
+    }
+
+    /* Stops starting new feeds, the run then finishes with what it has. */
+    public static void cancel() {
+        FeedDownloader downloader = activeDownloader;
+        if (downloader != null)
+            downloader.cancel();
+    }
+
+    /* BackgroundFetch.Prewarmer, called on the UI thread. Pre-warms the headless JS runtime only for a job that is not going to run here. */
+    public static void prewarm(final Context context) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (accepts(getProfile(context)))
+                    return;
+                BackgroundFetch.getUiHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        HeadlessTask.prewarm(context);
+                    }
+                });
+            }
+        });
+    }
+
+    private static boolean accepts(Profile current) {
+        if (current == null)
+            return false; // JS has not written a profile yet
+        if (current.offlineReading)
+            return false;
+        return current.nextBackupAt <= 0 || System.currentTimeMillis() < current.nextBackupAt;
+    }
+
+    /* Only called on the executor. */
+    static void writeProfile(File filesDir, String json) throws IOException {
+        writeFile(new File(filesDir, PROFILE_FILE), json);
+        synchronized (BackgroundSync.class) {
+            profile = null;
+        }
+    }
+
+    /* Only called on the executor, so a state written by a run is never lost between reading and deleting it. */
+    static String takeState(File filesDir) throws IOException {
+        File file = new File(filesDir, STATE_FILE);
+        if (!file.exists())
+            return null;
+        String json = readFile(file);
+        if (!file.delete())
+            throw new IOException("Cannot delete " + file);
+        return json;
+    }
+
+    private static synchronized Profile getProfile(Context context) {
+        File file = new File(context.getFilesDir(), PROFILE_FILE);
+        if (!file.exists())
+            return null;
+        if (profile == null || profileModified != file.lastModified()) {
+            try {
+                profileModified = file.lastModified();
+                profile = Profile.parse(new JSONObject(readFile(file)));
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Cannot read background sync profile. " + e);
+                profile = null;
+            }
+        }
+        return profile;
+    }
+
+    /* Returns the result to finish the task with, see Background.GetFetchResult. */
+    private int run() throws IOException, InterruptedException {
+        if (settings.disableBackgroundTasks) {
+            Log.i(TAG, "DisableBackgroundTasks enabled, exiting.");
+            return BackgroundFetch.FETCH_RESULT_NO_DATA;
+        }
+        State state = readState();
+        ArticleStore store = ArticleStoreModule.getStore(filesDir);
+
+        // cache is refreshed a bit before it expires when background sync is enabled, as Background.TryDoBackgroundSyncAsync does
+        List<ArticleStore.Record> articles = null;
+        int result = BackgroundFetch.FETCH_RESULT_NO_DATA;
+        double cacheAgeMinutes = (System.currentTimeMillis() - store.getTimestamp()) / 60000.0;
+        if (cacheAgeMinutes >= settings.articleCacheTime || (settings.backgroundSync && cacheAgeMinutes >= settings.articleCacheTime * 0.75)) {
+            if (!isDoNotDownloadActive()) {
+                Download download = download(state, store);
+                articles = download.articles;
+                if (download.failed)
+                    result = BackgroundFetch.FETCH_RESULT_FAILED;
+                else if (download.feedsWithNewItems > 0)
+                    result = BackgroundFetch.FETCH_RESULT_NEW_DATA;
+            }
+            else if (settings.backgroundSync)
+                store.setTimestamp(0); // expired, the app downloads once it may
+        }
+        if (articles == null) {
+            Log.i(TAG, "Using cached articles. (" + (int) cacheAgeMinutes + " minutes old)");
+            articles = store.read(0, store.size());
+        }
+
+        if (settings.notifications) {
+            MetricsRecorder.Span span = metrics.begin(MetricsRecorder.SYNC_NOTIFICATION, TAG);
+            notify(state, articles);
+            span.end();
+        } else {
+            Log.i(TAG, "Notifications disabled.");
+        }
+        writeState(state);
+        return result;
+    }
+
+    /* Downloader.DownloadArticles: failed attempts, the 90% failure rollback, saveToCache and skipping feeds not due (respectSchedule) work the same way. */
+    private Download download(State state, ArticleStore store) throws IOException, InterruptedException {
+        long timeBegin = System.currentTimeMillis();
+        List<FeedDownloader.Request> requests = new ArrayList<>();
+        for (Feed feed : settings.feeds) {
+            if (feed.enabled)
+                requests.add(new FeedDownloader.Request(feed.url, state.getFailedAttempts(feed), settings.maxArticlesPerChannel, feed.noImages, settings.userAgent));
+        }
+
+        final long downloadDeadline = deadline - DOWNLOAD_RESERVE;
+        final FeedDownloader downloader = new FeedDownloader(DOWNLOAD_THREADS, FeedDownloaderModule.getValidators(filesDir), FeedDownloaderModule.getSchedule(filesDir), true);
+        activeDownloader = downloader;
+        MetricsRecorder.Span span = metrics.begin(MetricsRecorder.SYNC_DOWNLOAD, TAG);
+        List<FeedDownloader.Result> results;
+        try {
+            results = downloader.download(requests, new FeedDownloader.Listener() {
+                @Override
+                public void onFeedFinished(FeedDownloader.Result result, int finished, int total) {
+                    if (System.currentTimeMillis() >= downloadDeadline)
+                        downloader.cancel();
+                }
+            });
+        } finally {
+            activeDownloader = null;
+            span.end();
+        }
+        FeedDownloaderModule.saveValidators(filesDir);
+        FeedDownloaderModule.saveSchedule(filesDir);
+
+        List<ArticleStore.Record> articles = new ArrayList<>();
+        int unexpectedFails = 0;
+        int totalFails = 0;
+        int skipped = 0;
+        int newItems = 0;
+        int resultIndex = 0;
+        for (Feed feed : settings.feeds) {
+            int found = 0;
+            if (feed.enabled) {
+                FeedDownloader.Result result = results.get(resultIndex++);
+                if (FeedDownloader.ABORTED.equals(result.error)) {
+                    // never requested, says nothing about the feed
+                } else if (result.error != null) {
+                    Log.w(TAG, "Faulty RSS feed " + feed.url + ": " + result.error);
+                    state.failedAttempts.put(feed.url, Math.min(MAX_FAILED_ATTEMPTS, state.getFailedAttempts(feed) + 1));
+                } else {
+                    for (FeedArticle article : result.articles)
+                        articles.add(toRecord(feed, article));
+                    found = result.articles.size();
+                    if (result.skipped)
+                        skipped++; // not requested, failed attempts stay as they are
+                    else
+                        state.failedAttempts.put(feed.url, 0);
+                    if (result.newItems)
+                        newItems++;
+                }
+            }
+            if (found == 0) {
+                if (state.getFailedAttempts(feed) < FAULTY_FEED_ATTEMPTS)
+                    unexpectedFails++;
+                totalFails++;
+            }
+        }
+        if (totalFails >= 0.9 * settings.feeds.size()) {
+            // more than 90% feeds failed, treat this as a nonfunctioning network and revert failed attempts
+            Log.w(TAG, "Almost all feeds failed (" + totalFails + "/" + settings.feeds.size() + "), possibly non-functioning internet connection.");
+            for (Feed feed : settings.feeds) {
+                if (state.getFailedAttempts(feed) > 0)
+                    state.failedAttempts.put(feed.url, state.getFailedAttempts(feed) - 1);
+            }
+        }
+
+        span = metrics.begin(MetricsRecorder.SYNC_KEYWORDS, TAG);
+        List<KeywordExtractor.Document> documents = new ArrayList<>(articles.size());
+        for (ArticleStore.Record article : articles)
+            documents.add(new KeywordExtractor.Document(article.source, article.title, article.description));
+        List<KeywordExtractor.Keywords> keywords = new KeywordExtractor(KeywordExtractorModule.pool).extract(documents);
+        for (int i = 0; i < articles.size(); i++)
+            articles.get(i).keywords = keywords.get(i);
+        span.end();
+
+        Log.i(TAG, "Downloaded " + articles.size() + " articles in " + (System.currentTimeMillis() - timeBegin) + " ms, " + unexpectedFails + " unexpected fails, " + skipped + " feeds not due, " + newItems + " feeds with new items.");
+        boolean saveToCache = !articles.isEmpty() && unexpectedFails / (double) settings.feeds.size() <= 0.25;
+        if (saveToCache)
+            store.write(System.currentTimeMillis(), articles);
+        else
+            Log.w(TAG, "Downloaded articles will NOT be saved to cache. (" + (articles.isEmpty() ? "no articles were loaded" : "many feeds unexpectedly failed") + ")");
+        return new Download(articles, newItems, !saveToCache);
+    }
+
+    /* Background.TryDoNotificationAsync, the top ranked articles not notified yet. */
+    private void notify(State state, List<ArticleStore.Record> articles) {
+        long now = System.currentTimeMillis();
+        double lastNotificationBeforeMins = (now - state.notifiedAt) / 60000.0;
+        if (lastNotificationBeforeMins < settings.notificationPeriod) {
+            Log.i(TAG, "Will not show notification, time remaining: " + (int) (settings.notificationPeriod - lastNotificationBeforeMins) + " mins.");
+            return;
+        }
+
+        List<ArticleStore.Record> unseen = new ArrayList<>(NOTIFICATION_BATCH_SIZE);
+        Set<String> notified = new HashSet<>(state.notifiedUrls);
+        for (ArticleStore.Record article : rank(clean(articles))) {
+            if (unseen.size() >= NOTIFICATION_BATCH_SIZE)
+                break;
+            if (!notified.contains(article.url))
+                unseen.add(article);
+        }
+        if (unseen.isEmpty()) {
+            Log.w(TAG, "No available article to show.");
+        } else {
+            try {
+                NotificationsModule.postArticles(context, unseen, settings.channelName, null, settings.channelName, settings.channelDescription);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to send notification.", e);
+                return; // tried again next run
+            }
+            for (ArticleStore.Record article : unseen)
+                state.notifiedUrls.add(article.url);
+            if (state.notifiedUrls.size() > NOTIFIED_URLS_KEPT)
+                state.notifiedUrls.subList(0, state.notifiedUrls.size() - NOTIFIED_URLS_KEPT).clear();
+        }
+        state.notifiedAt = now;
+    }
+
+    /* ArticlesUtils.CleanArticles */
+    private List<ArticleStore.Record> clean(List<ArticleStore.Record> articles) {
+        List<ArticleDeduplicator.Item> items = new ArrayList<>(articles.size());
+        for (ArticleStore.Record article : articles)
+            items.add(new ArticleDeduplicator.Item(article.url, article.title, article.date));
+        long now = System.currentTimeMillis();
+        int[] kept = ArticleDeduplicator.clean(items, settings.seenUrls, settings.maxArticleAgeDays * 24L * 60 * 60 * 1000, now, random).kept;
+
+        List<ArticleStore.Record> result = new ArrayList<>(kept.length);
+        for (int index : kept)
+            result.add(articles.get(index));
+        return result;
+    }
+
+    /* ArticlesUtils.SortArticles, ranked order is produced page by page as far as it is iterated. */
+    private Iterable<ArticleStore.Record> rank(final List<ArticleStore.Record> articles) {
+        if (!settings.sortingEnabled) {
+            Collections.shuffle(articles, random);
+            Collections.sort(articles, new Comparator<ArticleStore.Record>() {
+                @Override
+                public int compare(ArticleStore.Record first, ArticleStore.Record second) {
+                    // newest first, undated last (JS leaves them in place, which is no consistent order for Java's sort)
+                    if (first.date == null || second.date == null)
+                        return first.date == null ? (second.date == null ? 0 : 1) : -1;
+                    return Long.compare(second.date, first.date);
+                }
+            });
+            return articles;
+        }
+
+        List<KeywordExtractor.Keywords> keywords = new ArrayList<>(articles.size());
+        for (ArticleStore.Record article : articles)
+            keywords.add(article.keywords != null ? article.keywords : new KeywordExtractor.Keywords(new String[0], new double[0]));
+        final ArticleRanker.Ranking ranking = new ArticleRanker(ArticleRankerModule.pool).rank(keywords, settings.weights, settings.discoverRatio, settings.feedPageSize, random);
+        final int pageSize = Math.max(1, settings.feedPageSize);
+        return new Iterable<ArticleStore.Record>() {
+            @Override
+            public Iterator<ArticleStore.Record> iterator() {
+                return new Iterator<ArticleStore.Record>() {
+                    private int[] page = new int[0];
+                    private int position = 0;
+                    private int produced = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (position < page.length)
+                            return true;
+                        if (produced >= ranking.size())
+                            return false;
+                        page = ranking.range(produced, produced + pageSize);
+                        produced += page.length;
+                        position = 0;
+                        return page.length > 0;
+                    }
+
+                    @Override
+                    public ArticleStore.Record next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        return articles.get(page[position++]);
+                    }
+                };
+            }
+        };
+    }
+
+    /* Utils.IsDoNotDownloadActive */
+    private boolean isDoNotDownloadActive() {
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        Network network = connectivity.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET))
+            return true;
+        return settings.wifiOnly && connectivity.isActiveNetworkMetered();
+    }
+
+    private static ArticleStore.Record toRecord(Feed feed, FeedArticle article) {
+        ArticleStore.Record record = new ArticleStore.Record();
+        record.title = article.title;
+        record.description = article.description;
+        record.cover = article.cover;
+        record.url = article.url;
+        record.source = feed.name;
+        record.sourceUrl = feed.url;
+        record.date = article.date;
+        return record;
+    }
+
+    /* Values JS sent with the profile, overridden by what earlier runs left in STATE_FILE. */
+    private State readState() {
+        State state = new State();
+        for (Feed feed : settings.feeds)
+            state.failedAttempts.put(feed.url, feed.failedAttempts);
+        state.notifiedUrls.addAll(settings.notifiedUrls);
+        state.notifiedAt = settings.notifiedAt;
+
+        File file = new File(filesDir, STATE_FILE);
+        if (!file.exists())
+            return state;
+        try {
+            JSONObject json = new JSONObject(readFile(file));
+            JSONObject failedAttempts = json.getJSONObject("failedAttempts");
+            for (Iterator<String> urls = failedAttempts.keys(); urls.hasNext(); ) {
+                String url = urls.next();
+                state.failedAttempts.put(url, failedAttempts.getInt(url));
+            }
+            JSONObject notifications = json.getJSONObject("notifications");
+            state.notifiedUrls.clear();
+            state.notifiedUrls.addAll(toStringList(notifications.getJSONArray("seen_urls")));
+            state.notifiedAt = notifications.getLong("timestamp");
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Cannot read background sync state, starting from the profile. " + e);
+        }
+        return state;
+    }
+
+    /* {version, ranAt, failedAttempts: {url: count}, notifications: {seen_urls, timestamp}}, notifications in the shape of 'notifications-cache'. */
+    private void writeState(State state) throws IOException {
+        try {
+            JSONObject notifications = new JSONObject();
+            notifications.put("seen_urls", new JSONArray(state.notifiedUrls));
+            notifications.put("timestamp", state.notifiedAt);
+            JSONObject json = new JSONObject();
+            json.put("version", VERSION);
+            json.put("ranAt", System.currentTimeMillis());
+            json.put("failedAttempts", new JSONObject(state.failedAttempts));
+            json.put("notifications", notifications);
+            writeFile(new File(filesDir, STATE_FILE), json.toString());
+        } catch (JSONException e) {
+            throw new IOException("Cannot serialize background sync state.", e);
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                bytes.write(buffer, 0, read);
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+
+    /* Written next to the file and renamed over it, readers never see a partial file. */
+    private static void writeFile(File file, String content) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream output = new FileOutputStream(temp);
+        try {
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file))
+            throw new IOException("Cannot replace " + file);
+    }
+
+    private static List<String> toStringList(JSONArray array) throws JSONException {
+        List<String> list = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++)
+            list.add(array.getString(i));
+        return list;
+    }
+
+    private static class State {
+        final Map<String, Integer> failedAttempts = new LinkedHashMap<>();
+        final List<String> notifiedUrls = new ArrayList<>();
+        long notifiedAt = 0;
+
+        int getFailedAttempts(Feed feed) {
+            Integer attempts = failedAttempts.get(feed.url);
+            return attempts != null ? attempts : 0;
+        }
+    }
+
+    private static class Download {
+        final List<ArticleStore.Record> articles;
+        final int feedsWithNewItems;
+        final boolean failed; // not saved to cache, no articles or many feeds unexpectedly failed
+
+        Download(List<ArticleStore.Record> articles, int feedsWithNewItems, boolean failed) {
+            this.articles = articles;
+            this.feedsWithNewItems = feedsWithNewItems;
+            this.failed = failed;
+        }
+    }
+
+    private static class Feed {
+        String url;
+        String name;
+        boolean enabled;
+        boolean noImages;
+        int failedAttempts;
+    }
+
+    /* Settings and data of the app a run needs, as written by Background.WriteNativeSyncProfile. */
+    private static class Profile {
+        boolean disableBackgroundTasks;
+        boolean backgroundSync;
+        boolean notifications;
+        boolean offlineReading;
+        boolean wifiOnly;
+        boolean sortingEnabled;
+        long nextBackupAt; // epoch ms, 0 = no automatic backups
+        double notificationPeriod; // minutes
+        double articleCacheTime; // minutes
+        int maxArticlesPerChannel;
+        int maxArticleAgeDays;
+        double discoverRatio;
+        int feedPageSize;
+        String userAgent;
+        String channelName;
+        String channelDescription;
+        final List<Feed> feeds = new ArrayList<>();
+        ArticleRanker.WeightTable weights;
+        final Set<String> seenUrls = new HashSet<>();
+        final List<String> notifiedUrls = new ArrayList<>();
+        long notifiedAt;
+
+        static Profile parse(JSONObject json) throws JSONException {
+            if (json.getInt("version") != VERSION)
+                throw new JSONException("Unsupported profile version " + json.getInt("version"));
+            Profile profile = new Profile();
+            profile.disableBackgroundTasks = json.getBoolean("disableBackgroundTasks");
+            profile.backgroundSync = json.getBoolean("backgroundSync");
+            profile.notifications = json.getBoolean("notifications");
+            profile.offlineReading = json.getBoolean("offlineReading");
+            profile.wifiOnly = json.getBoolean("wifiOnly");
+            profile.sortingEnabled = json.getBoolean("sortingEnabled");
+            profile.nextBackupAt = json.getLong("nextBackupAt");
+            profile.notificationPeriod = json.getDouble("notificationPeriod");
+            profile.articleCacheTime = json.getDouble("articleCacheTime");
+            profile.maxArticlesPerChannel = json.getInt("maxArticlesPerChannel");
+            profile.maxArticleAgeDays = json.getInt("maxArticleAgeDays");
+            profile.discoverRatio = json.getDouble("discoverRatio");
+            profile.feedPageSize = json.getInt("feedPageSize");
+            profile.userAgent = json.optString("userAgent", null);
+            profile.channelName = json.getString("channelName");
+            profile.channelDescription = json.getString("channelDescription");
+
+            JSONArray feeds = json.getJSONArray("feeds");
+            for (int i = 0; i < feeds.length(); i++) {
+                JSONObject item = feeds.getJSONObject(i);
+                Feed feed = new Feed();
+                feed.url = item.getString("url");
+                feed.name = item.getString("name");
+                feed.enabled = item.getBoolean("enabled");
+                feed.noImages = item.getBoolean("noImages");
+                feed.failedAttempts = item.getInt("failedAttempts");
+                profile.feeds.add(feed);
+            }
+
+            JSONObject keywords = json.getJSONObject("keywords");
+            Map<String, Double> weights = new HashMap<>(keywords.length() * 2);
+            for (Iterator<String> words = keywords.keys(); words.hasNext(); ) {
+                String word = words.next();
+                weights.put(word, keywords.getDouble(word));
+            }
+            profile.weights = new ArticleRanker.WeightTable(weights);
+
+            profile.seenUrls.addAll(toStringList(json.getJSONArray("seenUrls")));
+            JSONObject notificationsCache = json.getJSONObject("notificationsCache");
+            profile.notifiedUrls.addAll(toStringList(notificationsCache.getJSONArray("seen_urls")));
+            profile.notifiedAt = notificationsCache.getLong("timestamp");
+            return profile;
+        }
+    }
+}
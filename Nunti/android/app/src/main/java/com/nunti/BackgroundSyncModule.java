@@ -0,0 +1,50 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+
+/* JS side of BackgroundSync: JS hands over the profile for native runs and takes what those runs changed. */
+public class BackgroundSyncModule extends ReactContextBaseJavaModule {
+    BackgroundSyncModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "BackgroundSyncModule";
+    }
+
+    /* Profile as JSON, see BackgroundSync.Profile for the fields. */
+    @ReactMethod
+    public void setProfile(final String profile, final Promise promise) {
+        BackgroundSync.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BackgroundSync.writeProfile(getReactApplicationContext().getFilesDir(), profile);
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    promise.reject("SYNC_PROFILE_FAILED", "Cannot save background sync profile. " + e, e);
+                }
+            }
+        });
+    }
+
+    /* Resolves with the state JSON left by native runs since the last call and removes it, null if there was none. */
+    @ReactMethod
+    public void takeState(final Promise promise) {
+        BackgroundSync.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.resolve(BackgroundSync.takeState(getReactApplicationContext().getFilesDir()));
+                } catch (Exception e) {
+                    promise.reject("SYNC_STATE_FAILED", "Cannot read background sync state. " + e, e);
+                }
+            }
+        });
+    }
+}
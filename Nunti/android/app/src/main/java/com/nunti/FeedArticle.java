@@ -0,0 +1,15 @@
+package com.nunti;
+
+/* Compact article record produced by FeedParser, mirrors the fields Downloader.SingleFeed fills in. */
+public class FeedArticle {
+    public String title = "";
+    public String description = "";
+    public String url = null;
+    public String cover = null;
+    public Long date = null; // milliseconds since epoch, null when the feed did not provide a parsable date
+
+    @Override
+    public String toString() {
+        return "[FeedArticle url=" + url + ", title=" + title + "]";
+    }
+}
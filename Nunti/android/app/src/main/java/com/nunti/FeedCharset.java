@@ -0,0 +1,173 @@
+package com.nunti;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Picks the charset of a feed body once and decodes it while the parser reads it.
+ * Order: charset parameter of the Content-Type header, byte order mark or <?xml encoding="..."?> prolog,
+ * and finally a byte heuristic - UTF-8 until the first invalid sequence, ISO-8859-1 from there on.
+ *
+ * UTF-8 always goes through the heuristic reader, plenty of servers label latin-1 feeds as UTF-8.
+ */
+public class FeedCharset {
+    private static final int SNIFF_BYTES = 1024;
+    private static final Pattern HEADER_CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([A-Za-z0-9._:-]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PROLOG_ENCODING = Pattern.compile("^\\s*<\\?xml[^>]*?encoding\\s*=\\s*[\"']([A-Za-z0-9._:-]+)[\"']");
+
+    /** Wraps the body stream in a reader, contentType is the raw Content-Type header and may be null. */
+    public static Reader open(InputStream stream, String contentType) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(stream, 8 * 1024);
+        byte[] head = new byte[SNIFF_BYTES];
+        input.mark(SNIFF_BYTES);
+        int length = readUpTo(input, head);
+        input.reset();
+
+        Charset charset = fromContentType(contentType);
+        int bom = 0;
+        if (charset == null) {
+            if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+                charset = StandardCharsets.UTF_8;
+                bom = 3;
+            } else if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+                charset = StandardCharsets.UTF_16BE;
+                bom = 2;
+            } else if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+                charset = StandardCharsets.UTF_16LE;
+                bom = 2;
+            } else if (length >= 4 && head[0] == '<' && head[1] == 0 && head[2] == '?' && head[3] == 0) {
+                charset = StandardCharsets.UTF_16LE;
+            } else if (length >= 4 && head[0] == 0 && head[1] == '<' && head[2] == 0 && head[3] == '?') {
+                charset = StandardCharsets.UTF_16BE;
+            } else {
+                charset = fromProlog(head, length);
+            }
+        } else if (charset.equals(StandardCharsets.UTF_8) && length >= 3
+                && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            bom = 3;
+        }
+        if (bom > 0)
+            input.skip(bom);
+
+        if (charset == null || charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII))
+            return new FallbackReader(input);
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return new InputStreamReader(input, decoder);
+    }
+
+    static Charset fromContentType(String contentType) {
+        if (contentType == null)
+            return null;
+        Matcher matcher = HEADER_CHARSET.matcher(contentType);
+        return matcher.find() ? forName(matcher.group(1)) : null;
+    }
+
+    static Charset fromProlog(byte[] head, int length) {
+        // the prolog is ASCII in every ASCII-compatible charset, latin-1 maps those bytes 1:1
+        Matcher matcher = PROLOG_ENCODING.matcher(new String(head, 0, length, StandardCharsets.ISO_8859_1));
+        return matcher.find() ? forName(matcher.group(1)) : null;
+    }
+
+    private static Charset forName(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) { // illegal or unsupported name, fall through to the next detection step
+            return null;
+        }
+    }
+
+    private static int readUpTo(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = input.read(buffer, length, buffer.length - length)) != -1)
+            length += read;
+        return length;
+    }
+
+    /*
+     * Strict UTF-8 decoder which switches to ISO-8859-1 at the first malformed sequence instead of
+     * emitting U+FFFD. Everything before that point was valid UTF-8, so nothing needs decoding twice.
+     */
+    static class FallbackReader extends Reader {
+        private final InputStream input;
+        private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder(); // reports malformed input by default
+        private final ByteBuffer bytes = ByteBuffer.allocate(8 * 1024);
+        private final CharBuffer chars = CharBuffer.allocate(8 * 1024);
+        private boolean latin1 = false;
+        private boolean endOfInput = false;
+        private boolean finished = false;
+
+        FallbackReader(InputStream input) {
+            this.input = input;
+            bytes.flip();
+            chars.flip();
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if (!chars.hasRemaining() && !fill())
+                return -1;
+            int count = Math.min(length, chars.remaining());
+            chars.get(buffer, offset, count);
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            chars.clear();
+            while (chars.position() == 0 && !finished) {
+                if (latin1) {
+                    if (!bytes.hasRemaining() && !readBytes()) {
+                        finished = true;
+                        break;
+                    }
+                    while (bytes.hasRemaining() && chars.hasRemaining())
+                        chars.put((char) (bytes.get() & 0xFF));
+                } else {
+                    CoderResult result = utf8.decode(bytes, chars, endOfInput);
+                    if (result.isError()) {
+                        latin1 = true;
+                    } else if (result.isUnderflow()) {
+                        if (endOfInput) {
+                            utf8.flush(chars);
+                            finished = true;
+                        } else if (!readBytes()) {
+                            endOfInput = true;
+                        }
+                    }
+                }
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        }
+
+        private boolean readBytes() throws IOException {
+            bytes.compact();
+            int read = input.read(bytes.array(), bytes.position(), bytes.remaining());
+            if (read > 0)
+                bytes.position(bytes.position() + read);
+            bytes.flip();
+            return read != -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.nunti;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Downloads and parses a list of feeds with a fixed number of requests in flight.
+ * Workers pull the next feed as soon as they finish the previous one, so a slow feed
+ * only occupies its own slot instead of stalling a whole batch.
+ *
+ * Connections are left to the platform HttpURLConnection keep-alive pool, which reuses
+ * them per host as long as every response body is read to the end and closed.
+ *
+ * With a FeedValidatorStore, requests are conditional (If-None-Match / If-Modified-Since)
+ * and a 304 Not Modified reuses the articles parsed from the previous full response.
+ * With a FeedSchedule as well, every download is recorded in it to learn how often feeds change. When the
+ * schedule is respected, feeds that are not due are not requested at all and reuse those articles too.
+ */
+public class FeedDownloader {
+    public static final int DEFAULT_THREADS = 6;
+    public static final String ABORTED = "Aborted.";
+    private static final int MAX_REDIRECTS = 5;
+    // unread rest of a body that is skipped to keep the connection, past it a new connection is cheaper
+    static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("FeedDownloader-watchdog"));
+    // rests of bodies nobody needs are read into this and thrown away
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8 * 1024];
+        }
+    };
+
+    private final int threads;
+    private final FeedValidatorStore validators;
+    private final FeedSchedule schedule;
+    private final boolean respectSchedule;
+    private volatile boolean cancelled = false;
+
+    public FeedDownloader(int threads) {
+        this(threads, null);
+    }
+
+    public FeedDownloader(int threads, FeedValidatorStore validators) {
+        this(threads, validators, null, false);
+    }
+
+    /**
+     * schedule is only used together with validators, they keep the articles of feeds that are skipped.
+     * Without respectSchedule every feed is requested and the schedule only records the downloads.
+     */
+    public FeedDownloader(int threads, FeedValidatorStore validators, FeedSchedule schedule, boolean respectSchedule) {
+        this.threads = Math.max(1, threads);
+        this.validators = validators;
+        this.schedule = validators != null ? schedule : null;
+        this.respectSchedule = respectSchedule;
+    }
+
+    /** Downloads all feeds, results keep the order of requests. Blocks until every feed finished or failed. */
+    public List<Result> download(List<Request> requests, final Listener listener) throws InterruptedException {
+        final int total = requests.size();
+        final AtomicInteger finished = new AtomicInteger(0);
+        List<Future<Result>> futures = new ArrayList<>(total);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, total)), new NamedThreadFactory("FeedDownloader"));
+        try {
+            for (final Request request : requests) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        Result result = downloadSingle(request);
+                        if (listener != null)
+                            listener.onFeedFinished(result, finished.incrementAndGet(), total);
+                        return result;
+                    }
+                }));
+            }
+
+            List<Result> results = new ArrayList<>(total);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(Result.failed(requests.get(i).url, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Stops handing out new feeds, feeds already in flight are left to finish or time out. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    Result downloadSingle(Request request) {
+        if (cancelled)
+            return Result.failed(request.url, ABORTED);
+
+        long startTime = System.currentTimeMillis();
+        FeedValidatorStore.Entry cached = validators != null ? validators.get(request) : null;
+        if (schedule != null && respectSchedule && !schedule.isDue(request.url, request.failedAttempts, startTime)) {
+            // a failing feed without earlier articles has nothing to reuse, skipping it costs nothing either
+            if (cached != null || request.failedAttempts > 0) {
+                schedule.recordSkip();
+                return Result.skipped(request.url, cached != null ? new ArrayList<>(cached.articles) : new ArrayList<FeedArticle>());
+            }
+        }
+        try {
+            Response response = get(request, cached);
+            if (response.notModified) {
+                validators.recordHit();
+                if (schedule != null)
+                    schedule.recordDownload(request.url, cached.articles, true, startTime);
+                return Result.notModified(request.url, new ArrayList<>(cached.articles), System.currentTimeMillis() - startTime);
+            }
+
+            List<FeedArticle> articles;
+            try {
+                articles = FeedParser.parse(FeedCharset.open(response.body, response.contentType), request.maxArticles, request.noImages);
+            } finally {
+                response.close();
+            }
+            if (validators != null)
+                validators.put(request, response.etag, response.lastModified, articles);
+            // without a schedule there is no previous download to compare with
+            boolean newItems = schedule == null || schedule.recordDownload(request.url, articles, false, startTime);
+            return Result.succeeded(request.url, articles, System.currentTimeMillis() - startTime, newItems);
+        } catch (Exception e) {
+            if (schedule != null)
+                schedule.recordFailure(request.url, startTime);
+            return Result.failed(request.url, "Cannot read RSS " + e);
+        }
+    }
+
+    /* Same policy as the JS downloader: reduce timeout for feeds which tend to fail anyway. */
+    static int timeoutFor(int failedAttempts) {
+        return failedAttempts < 2 ? 5000 : 2000;
+    }
+
+    private Response get(Request request, FeedValidatorStore.Entry cached) throws IOException {
+        final int timeout = timeoutFor(request.failedAttempts);
+        URL url = new URL(request.url);
+
+        // HttpURLConnection does not follow redirects across protocols (http -> https), XMLHttpRequest did.
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestProperty("Cache-Control", "no-cache, no-store, must-revalidate");
+            if (request.userAgent != null)
+                connection.setRequestProperty("User-Agent", request.userAgent);
+            if (cached != null && cached.etag != null)
+                connection.setRequestProperty("If-None-Match", cached.etag);
+            if (cached != null && cached.lastModified != null)
+                connection.setRequestProperty("If-Modified-Since", cached.lastModified);
+
+            // Hard deadline, feeds sometimes connect SSL but then trickle data for a long time, which "cheats" the read timeout.
+            ScheduledFuture<?> deadline = watchdog.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            }, timeout * 2L, TimeUnit.MILLISECONDS);
+
+            boolean keepOpen = false;
+            try {
+                int status = connection.getResponseCode();
+                if (isRedirect(status) && connection.getHeaderField("Location") != null) {
+                    url = new URL(url, connection.getHeaderField("Location"));
+                    drain(connection);
+                    continue;
+                }
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                    drain(connection);
+                    return Response.notModified();
+                }
+                if (status != HttpURLConnection.HTTP_OK)
+                    throw new IOException("Server returned " + status + ", statustext: " + connection.getResponseMessage());
+
+                // body is decoded while the parser reads it, the deadline stays armed until Response.close
+                keepOpen = true;
+                return Response.body(connection, deadline);
+            } finally {
+                if (!keepOpen)
+                    deadline.cancel(false);
+            }
+        }
+        throw new IOException("Too many redirects.");
+    }
+
+    private static boolean isRedirect(int status) {
+        return status == HttpURLConnection.HTTP_MOVED_PERM || status == HttpURLConnection.HTTP_MOVED_TEMP
+                || status == HttpURLConnection.HTTP_SEE_OTHER || status == 307 || status == 308;
+    }
+
+    /* Reads the rest of a response we don't need so the connection can go back to the keep-alive pool. */
+    private static void drain(HttpURLConnection connection) {
+        try {
+            InputStream stream = connection.getErrorStream() != null ? connection.getErrorStream() : connection.getInputStream();
+            if (stream == null)
+                return;
+            if (skipRest(stream))
+                stream.close();
+            else
+                connection.disconnect();
+        } catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+
+    /* Reads stream to the end into a scratch buffer that is thrown away, false once more than MAX_DRAIN_BYTES were left. */
+    private static boolean skipRest(InputStream stream) throws IOException {
+        byte[] buffer = scratch.get();
+        long skipped = 0;
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            skipped += read;
+            if (skipped > MAX_DRAIN_BYTES)
+                return false;
+        }
+        return true;
+    }
+
+    public static class Request {
+        public final String url;
+        public final int failedAttempts;
+        public final int maxArticles;
+        public final boolean noImages;
+        public final String userAgent;
+
+        public Request(String url, int failedAttempts, int maxArticles, boolean noImages, String userAgent) {
+            this.url = url;
+            this.failedAttempts = failedAttempts;
+            this.maxArticles = maxArticles;
+            this.noImages = noImages;
+            this.userAgent = userAgent;
+        }
+    }
+
+    public static class Result {
+        public final String url;
+        public final List<FeedArticle> articles;
+        public final String error;
+        public final long durationMs;
+        public final boolean notModified;
+        public final boolean skipped; // not due, articles are the ones of the last download
+        public final boolean newItems; // full download with item urls the last download did not have
+
+        private Result(String url, List<FeedArticle> articles, String error, long durationMs, boolean notModified, boolean skipped, boolean newItems) {
+            this.url = url;
+            this.articles = articles;
+            this.error = error;
+            this.durationMs = durationMs;
+            this.notModified = notModified;
+            this.skipped = skipped;
+            this.newItems = newItems;
+        }
+
+        static Result succeeded(String url, List<FeedArticle> articles, long durationMs, boolean newItems) {
+            return new Result(url, articles, null, durationMs, false, false, newItems);
+        }
+
+        static Result notModified(String url, List<FeedArticle> articles, long durationMs) {
+            return new Result(url, articles, null, durationMs, true, false, false);
+        }
+
+        static Result skipped(String url, List<FeedArticle> articles) {
+            return new Result(url, articles, null, 0, false, true, false);
+        }
+
+        static Result failed(String url, String error) {
+            return new Result(url, new ArrayList<FeedArticle>(), error, -1, false, false, false);
+        }
+    }
+
+    private static class Response {
+        final boolean notModified;
+        final InputStream body;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+        private final HttpURLConnection connection;
+        private final ScheduledFuture<?> deadline;
+
+        private Response(boolean notModified, HttpURLConnection connection, ScheduledFuture<?> deadline) throws IOException {
+            this.notModified = notModified;
+            this.connection = connection;
+            this.deadline = deadline;
+            this.body = notModified ? null : connection.getInputStream();
+            this.contentType = notModified ? null : connection.getContentType();
+            this.etag = notModified ? null : connection.getHeaderField("ETag");
+            this.lastModified = notModified ? null : connection.getHeaderField("Last-Modified");
+        }
+
+        static Response body(HttpURLConnection connection, ScheduledFuture<?> deadline) throws IOException {
+            return new Response(false, connection, deadline);
+        }
+
+        static Response notModified() throws IOException {
+            return new Response(true, null, null);
+        }
+
+        /* Parser may stop after maxArticles, skip a short rest so the connection can be reused, drop it after a long one. */
+        void close() {
+            try {
+                if (skipRest(body))
+                    body.close();
+                else
+                    connection.disconnect();
+            } catch (IOException e) {
+                connection.disconnect();
+            } finally {
+                deadline.cancel(false);
+            }
+        }
+    }
+
+    public interface Listener {
+        void onFeedFinished(Result result, int finished, int total);
+    }
+
+    static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
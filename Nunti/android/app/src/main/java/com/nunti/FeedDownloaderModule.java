@@ -0,0 +1,226 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class FeedDownloaderModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "FeedDownloaderModule";
+    private static final String EVENT_PROGRESS = "feedDownloadProgress";
+    private static final String VALIDATORS_FILE = "feed-validators.bin";
+    private static final String SCHEDULE_FILE = "feed-schedule.bin";
+
+    // conditional runs share the validators and the schedule, they go one after another
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // unconditional runs (a feed being added) touch neither, they never wait behind a sync
+    private static final ExecutorService unconditionalExecutor = Executors.newCachedThreadPool();
+    private final Map<String, FeedDownloader> activeRuns = new ConcurrentHashMap<>();
+    private static FeedValidatorStore validators = null;
+    private static FeedSchedule schedule = null;
+
+    FeedDownloaderModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "FeedDownloaderModule";
+    }
+
+    /*
+     * Downloads and parses feeds ({url, failedAttempts, maxArticles, noImages, userAgent}),
+     * emits a progress event after every feed and resolves with [{url, articles, error}] in request order.
+     * Downloads are conditional by default. Only with respectSchedule (background syncs) they also skip
+     * feeds that are not due according to their FeedSchedule, a refresh in the app requests every feed.
+     */
+    @ReactMethod
+    public void downloadFeeds(ReadableArray feeds, ReadableMap options, final Promise promise) {
+        final String runId = options.hasKey("runId") ? options.getString("runId") : "default";
+        final int threads = options.hasKey("threads") ? options.getInt("threads") : FeedDownloader.DEFAULT_THREADS;
+        final boolean conditional = !options.hasKey("conditional") || options.getBoolean("conditional");
+        final boolean respectSchedule = options.hasKey("respectSchedule") && options.getBoolean("respectSchedule");
+
+        final List<FeedDownloader.Request> requests = new ArrayList<>(feeds.size());
+        for (int i = 0; i < feeds.size(); i++) {
+            ReadableMap feed = feeds.getMap(i);
+            requests.add(new FeedDownloader.Request(
+                feed.getString("url"),
+                feed.hasKey("failedAttempts") ? feed.getInt("failedAttempts") : 0,
+                feed.hasKey("maxArticles") ? feed.getInt("maxArticles") : Integer.MAX_VALUE,
+                feed.hasKey("noImages") && feed.getBoolean("noImages"),
+                feed.hasKey("userAgent") ? feed.getString("userAgent") : null));
+        }
+
+        activeRuns.put(runId, new FeedDownloader(threads));
+        (conditional ? executor : unconditionalExecutor).execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    File filesDir = getReactApplicationContext().getFilesDir();
+                    FeedDownloader downloader = conditional
+                        ? new FeedDownloader(threads, getValidators(filesDir), getSchedule(filesDir), respectSchedule)
+                        : new FeedDownloader(threads);
+                    if (activeRuns.put(runId, downloader).isCancelled())
+                        downloader.cancel();
+                    List<FeedDownloader.Result> results = downloader.download(requests, new FeedDownloader.Listener() {
+                        @Override
+                        public void onFeedFinished(FeedDownloader.Result result, int finished, int total) {
+                            WritableMap params = Arguments.createMap();
+                            params.putString("runId", runId);
+                            params.putString("url", result.url);
+                            params.putInt("finished", finished);
+                            params.putInt("total", total);
+                            params.putInt("articles", result.articles.size());
+                            if (result.error != null)
+                                params.putString("error", result.error);
+                            else
+                                params.putNull("error");
+                            getReactApplicationContext().getJSModule(RCTNativeAppEventEmitter.class).emit(EVENT_PROGRESS, params);
+                        }
+                    });
+                    if (conditional) {
+                        saveValidators(filesDir);
+                        saveSchedule(filesDir);
+                    }
+                    promise.resolve(toWritableArray(results));
+                } catch (Exception e) {
+                    promise.reject("DOWNLOAD_FAILED", "Feed download failed. " + e, e);
+                } finally {
+                    activeRuns.remove(runId);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void cancel(String runId) {
+        FeedDownloader downloader = activeRuns.get(runId);
+        if (downloader != null)
+            downloader.cancel();
+    }
+
+    /* Counts conditional requests answered with 304 (hits), full downloads (misses) and feeds skipped as not due since the app started. */
+    @ReactMethod
+    public void getCacheStats(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                FeedValidatorStore store = getValidators(getReactApplicationContext().getFilesDir());
+                WritableMap stats = Arguments.createMap();
+                stats.putInt("hits", store.getHits());
+                stats.putInt("misses", store.getMisses());
+                stats.putInt("feeds", store.size());
+                stats.putInt("skipped", getSchedule(getReactApplicationContext().getFilesDir()).getSkipped());
+                promise.resolve(stats);
+            }
+        });
+    }
+
+    /* Forgets all validators and the schedule, next download of every feed is unconditional. */
+    @ReactMethod
+    public void clearCache(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File filesDir = getReactApplicationContext().getFilesDir();
+                getValidators(filesDir).clear();
+                saveValidators(filesDir);
+                getSchedule(filesDir).clear();
+                saveSchedule(filesDir);
+                promise.resolve(null);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void addListener(String event) {
+        // Keep:  Required for RN built-in NativeEventEmitter calls.
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+        // Keep:  Required for RN built-in NativeEventEmitter calls.
+    }
+
+    /* Shared with BackgroundSync, so a headless sync and the app never keep two copies of the validators. */
+    static synchronized FeedValidatorStore getValidators(File filesDir) {
+        if (validators == null) {
+            validators = new FeedValidatorStore(new File(filesDir, VALIDATORS_FILE));
+            try {
+                validators.load();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot load feed validators, starting empty. " + e);
+                validators.clear();
+            }
+        }
+        return validators;
+    }
+
+    static void saveValidators(File filesDir) {
+        try {
+            getValidators(filesDir).save();
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save feed validators. " + e);
+        }
+    }
+
+    /* Shared with BackgroundSync like the validators. */
+    static synchronized FeedSchedule getSchedule(File filesDir) {
+        if (schedule == null) {
+            schedule = new FeedSchedule(new File(filesDir, SCHEDULE_FILE));
+            try {
+                schedule.load();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot load feed schedule, every feed is due. " + e);
+                schedule.clear();
+            }
+        }
+        return schedule;
+    }
+
+    static void saveSchedule(File filesDir) {
+        try {
+            getSchedule(filesDir).save();
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save feed schedule. " + e);
+        }
+    }
+
+    private static WritableArray toWritableArray(List<FeedDownloader.Result> results) {
+        WritableArray array = Arguments.createArray();
+        for (FeedDownloader.Result result : results) {
+            WritableMap map = Arguments.createMap();
+            map.putString("url", result.url);
+            map.putArray("articles", FeedParserModule.toWritableArray(result.articles));
+            if (result.error != null)
+                map.putString("error", result.error);
+            else
+                map.putNull("error");
+            map.putDouble("durationMs", result.durationMs);
+            map.putBoolean("notModified", result.notModified);
+            map.putBoolean("skipped", result.skipped);
+            map.putBoolean("newItems", result.newItems);
+            array.pushMap(map);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,359 @@
+package com.nunti;
+
+import org.jsoup.parser.Parser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Streaming RSS 2.0 / Atom / RDF parser.
+ * Walks the document once with a pull parser and follows the same extraction rules
+ * the JS Downloader used on top of xmldom (first matching descendant wins).
+ */
+public class FeedParser {
+    private static final int MAX_TITLE_LENGTH = 256;
+    private static final int MAX_DESCRIPTION_LENGTH = 1024;
+    private static final String FEATURE_RELAXED = "http://xmlpull.org/v1/doc/features.html#relaxed";
+
+    private static final String[] TEXT_TAGS = {
+        "title", "description", "content", "content:encoded", "link", "dc:date", "pubDate", "published", "updated"
+    };
+    private static final String[] DATE_TAGS = { "dc:date", "pubDate", "published", "updated" };
+    private static final String[] IMAGE_TAGS = { "enclosure", "media:content", "media:thumbnail" };
+
+    private static final Pattern HTML_TAG = Pattern.compile("<([^>]*)>");
+    private static final Pattern HTML_ENTITY_LEFTOVER = Pattern.compile("&[\\S]+;");
+    private static final Pattern SHORTCODE = Pattern.compile("\\[\\S+\\]");
+    private static final Pattern LONG_WHITESPACE = Pattern.compile("[^\\S]{3,}");
+    private static final Pattern IMAGE_URL = Pattern.compile("\\.(?:(?:jpe?g)|(?:png))", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IMG_TAG_SRC = Pattern.compile("<img[^>]*?src\\s*=\\s*[\"']?(https?://[^\"'<>\\s]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOOSE_IMAGE_URL = Pattern.compile("(https?://[^<>\"'/]+/+[^<>\"':]+?\\.(?:(?:jpe?g)|(?:png)).*?)[\\n\"'<]", Pattern.CASE_INSENSITIVE);
+    private static final List<DateTimeFormatter> RFC822_FORMATS = new ArrayList<>();
+    static {
+        String[] patterns = {
+            "EEE, d MMM yyyy HH:mm[:ss] Z",
+            "EEE, d MMM yyyy HH:mm[:ss] z",
+            "EEE, d MMM yyyy HH:mm[:ss] xxx",
+            "d MMM yyyy HH:mm[:ss] Z",
+            "d MMM yyyy HH:mm[:ss] z",
+            "EEE, d MMM yy HH:mm[:ss] Z",
+            "EEE, d MMM yy HH:mm[:ss] z",
+        };
+        for (String pattern : patterns) {
+            RFC822_FORMATS.add(new DateTimeFormatterBuilder()
+                    .parseCaseInsensitive()
+                    .appendPattern(pattern)
+                    .toFormatter(Locale.ENGLISH));
+        }
+    }
+
+    /** Parses a feed document, returns at most maxArticles articles. Articles without a title or link are skipped. */
+    public static List<FeedArticle> parse(Reader reader, int maxArticles, boolean noImages) throws XmlPullParserException, IOException {
+        XmlPullParser parser = newParser();
+        parser.setInput(reader);
+
+        List<FeedArticle> articles = new ArrayList<>();
+        String rootTag = null;
+        int itemsSeen = 0;
+        Item item = null;
+        int itemDepth = -1;
+        Deque<Capture> captures = new ArrayDeque<>();
+
+        int event = parser.getEventType();
+        while (event != XmlPullParser.END_DOCUMENT) {
+            if (event == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+                if (rootTag == null)
+                    rootTag = name;
+
+                if (item == null) {
+                    // RSS and RDF keep articles in <item>, Atom in <entry> directly under <feed>
+                    if (name.equals("item") || (name.equals("entry") && "feed".equals(rootTag))) {
+                        if (itemsSeen >= maxArticles)
+                            break;
+                        itemsSeen++;
+                        item = new Item();
+                        itemDepth = parser.getDepth();
+                    }
+                } else {
+                    item.collectAttributes(parser, name);
+                    if (isTextTag(name) && !item.texts.containsKey(name))
+                        captures.push(new Capture(name, parser.getDepth()));
+                }
+            } else if (event == XmlPullParser.TEXT) {
+                if (item != null) {
+                    String text = parser.getText();
+                    for (Capture capture : captures)
+                        capture.text.append(text);
+                    item.raw.append(text).append('\n');
+                }
+            } else if (event == XmlPullParser.END_TAG && item != null) {
+                int depth = parser.getDepth();
+                if (!captures.isEmpty() && captures.peek().depth == depth) {
+                    Capture capture = captures.pop();
+                    if (!item.texts.containsKey(capture.name))
+                        item.texts.put(capture.name, capture.text.toString());
+                }
+                if (depth == itemDepth) {
+                    FeedArticle article = item.toArticle(noImages);
+                    if (article != null)
+                        articles.add(article);
+                    item = null;
+                    itemDepth = -1;
+                    captures.clear();
+                }
+            }
+            event = parser.next();
+        }
+        return articles;
+    }
+
+    private static XmlPullParser newParser() throws XmlPullParserException {
+        XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+        factory.setNamespaceAware(false); // keep prefixed names such as media:content or dc:date
+        XmlPullParser parser = factory.newPullParser();
+        try {
+            parser.setFeature(FEATURE_RELAXED, true);
+        } catch (XmlPullParserException e) {
+            // not supported by this parser implementation, undefined entities will then be fatal
+        }
+        return parser;
+    }
+
+    private static boolean isTextTag(String name) {
+        for (String tag : TEXT_TAGS) {
+            if (tag.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    /** Decodes HTML entities with the full HTML5 named set, like html-entities did in the JS Downloader. */
+    static String decodeEntities(String input) {
+        if (input == null || input.indexOf('&') < 0)
+            return input;
+        return Parser.unescapeEntities(input, false);
+    }
+
+    /** Parses RFC 822 and ISO 8601 dates, returns milliseconds since epoch or null. */
+    static Long parseDate(String input) {
+        if (input == null)
+            return null;
+        String value = input.trim().replaceAll("\\s+", " ");
+        if (value.isEmpty())
+            return null;
+
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) { /* dontcare */ }
+        try {
+            return ZonedDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) { /* dontcare */ }
+        try {
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) { /* dontcare */ }
+        try {
+            return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) { /* dontcare */ }
+        for (DateTimeFormatter format : RFC822_FORMATS) {
+            try {
+                return ZonedDateTime.parse(value, format).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) { /* dontcare */ }
+        }
+        return null;
+    }
+
+    static String cleanDescription(String description) {
+        String output = decodeEntities(description).trim();
+        output = HTML_TAG.matcher(output).replaceAll("");
+        output = HTML_ENTITY_LEFTOVER.matcher(output).replaceAll("");
+        output = SHORTCODE.matcher(output).replaceAll("");
+        if (output.length() > MAX_DESCRIPTION_LENGTH)
+            output = output.substring(0, MAX_DESCRIPTION_LENGTH);
+        output = output.replaceFirst("[^\\S ]", " ");
+        output = LONG_WHITESPACE.matcher(output).replaceAll(" ");
+        return replaceLoneSurrogates(output);
+    }
+
+    /* replaces lone surrogates by the replacement character, see issue #86 */
+    private static String replaceLoneSurrogates(String input) {
+        StringBuilder output = null;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            boolean lone = false;
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 < input.length() && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    if (output != null)
+                        output.append(c).append(input.charAt(i + 1));
+                    i++;
+                    continue;
+                }
+                lone = true;
+            } else if (Character.isLowSurrogate(c)) {
+                lone = true;
+            }
+            if (lone && output == null)
+                output = new StringBuilder(input.length()).append(input, 0, i);
+            if (output != null)
+                output.append(lone ? '\uFFFD' : c);
+        }
+        return output == null ? input : output.toString();
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static class Capture {
+        final String name;
+        final int depth;
+        final StringBuilder text = new StringBuilder();
+
+        Capture(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+    }
+
+    /* Everything collected about a single <item> / <entry> while streaming through it. */
+    private static class Item {
+        final Map<String, String> texts = new HashMap<>();
+        final Map<String, Map<String, String>> imageAttributes = new HashMap<>();
+        final List<Map<String, String>> links = new ArrayList<>();
+        final StringBuilder raw = new StringBuilder(); // text and attribute values, stand-in for the serialized item
+
+        void collectAttributes(XmlPullParser parser, String name) {
+            int count = parser.getAttributeCount();
+            if (count <= 0)
+                return;
+            Map<String, String> attributes = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+                raw.append(parser.getAttributeValue(i)).append('\n');
+            }
+            if (name.equals("link")) {
+                links.add(attributes);
+            } else if (!imageAttributes.containsKey(name)) {
+                for (String tag : IMAGE_TAGS) {
+                    if (tag.equals(name))
+                        imageAttributes.put(name, attributes);
+                }
+            }
+        }
+
+        FeedArticle toArticle(boolean noImages) {
+            FeedArticle article = new FeedArticle();
+
+            String title = texts.get("title");
+            if (title == null)
+                return null;
+            if (title.length() > MAX_TITLE_LENGTH)
+                title = title.substring(0, MAX_TITLE_LENGTH);
+            article.title = decodeEntities(title);
+            if (isBlank(article.title))
+                return null;
+
+            String description = texts.get("description");
+            String content = texts.get("content");
+            if (!isBlank(content))
+                description = content;
+            article.description = cleanDescription(description == null ? "" : description);
+
+            if (!noImages)
+                article.cover = findCover();
+
+            article.url = findUrl();
+            if (isBlank(article.url))
+                return null;
+
+            for (String tag : DATE_TAGS) {
+                if (texts.containsKey(tag)) {
+                    article.date = parseDate(texts.get(tag));
+                    if (article.date != null)
+                        break;
+                }
+            }
+            return article;
+        }
+
+        private String findUrl() {
+            String url = texts.get("link");
+            if (!isBlank(url))
+                return url.trim();
+
+            url = null;
+            if (links.size() == 1) {
+                url = links.get(0).get("href");
+            } else {
+                // Needed for Atom feeds which provide multiple <link>, i.e.: Blogspot
+                // see gitlab issue #53
+                for (Map<String, String> link : links) {
+                    if ("alternate".equals(link.get("rel")))
+                        url = link.get("href");
+                }
+            }
+            return url;
+        }
+
+        private String findCover() {
+            String cover = null;
+
+            Map<String, String> image = null;
+            for (String tag : IMAGE_TAGS) {
+                image = imageAttributes.get(tag);
+                if (image != null)
+                    break;
+            }
+            if (image != null) {
+                String type = image.get("type");
+                String url = image.get("url");
+                if ((type != null && type.contains("image"))
+                        || "image".equals(image.get("medium"))
+                        || (url != null && IMAGE_URL.matcher(url).find()))
+                    cover = url;
+            }
+
+            // Check 'content:encoded' first, there are feeds with advertisement images outside of it.
+            if (cover == null) {
+                String content = texts.get("content:encoded");
+                Matcher matcher = IMG_TAG_SRC.matcher(content != null ? content : raw);
+                if (matcher.find()) {
+                    cover = matcher.group(1);
+                } else {
+                    matcher = LOOSE_IMAGE_URL.matcher(raw);
+                    if (matcher.find())
+                        cover = matcher.group(1);
+                }
+            }
+
+            if (cover != null) {
+                cover = decodeEntities(cover);
+                int http = cover.indexOf("http://");
+                if (http >= 0)
+                    cover = cover.substring(0, http) + "https://" + cover.substring(http + "http://".length());
+            }
+            return cover;
+        }
+    }
+}
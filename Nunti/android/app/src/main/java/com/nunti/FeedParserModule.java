@@ -0,0 +1,68 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class FeedParserModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    FeedParserModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "FeedParserModule";
+    }
+
+    /* Parses feed xml off the UI thread, resolves with an array of {title, description, url, cover, date}. */
+    @ReactMethod
+    public void parse(final String xml, final ReadableMap options, final Promise promise) {
+        final int maxArticles = options.hasKey("maxArticles") ? options.getInt("maxArticles") : Integer.MAX_VALUE;
+        final boolean noImages = options.hasKey("noImages") && options.getBoolean("noImages");
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<FeedArticle> articles = FeedParser.parse(new StringReader(xml), maxArticles, noImages);
+                    promise.resolve(toWritableArray(articles));
+                } catch (Exception e) {
+                    promise.reject("PARSE_FAILED", "Cannot parse feed. " + e, e);
+                }
+            }
+        });
+    }
+
+    static WritableArray toWritableArray(List<FeedArticle> articles) {
+        WritableArray result = Arguments.createArray();
+        for (FeedArticle article : articles) {
+            WritableMap map = Arguments.createMap();
+            map.putString("title", article.title);
+            map.putString("description", article.description);
+            map.putString("url", article.url);
+            if (article.cover != null)
+                map.putString("cover", article.cover);
+            else
+                map.putNull("cover");
+            if (article.date != null)
+                map.putDouble("date", article.date);
+            else
+                map.putNull("date");
+            result.pushMap(map);
+        }
+        return result;
+    }
+}
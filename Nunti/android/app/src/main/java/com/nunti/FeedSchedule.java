@@ -0,0 +1,231 @@
+package com.nunti;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * When each feed is due for its next download, learned from the feed itself:
+ * - cadence: median gap between item dates of the last full response, the feed is downloaded twice per cadence,
+ *   within [MIN_INTERVAL, MAX_INTERVAL]; feeds without item dates every MIN_INTERVAL,
+ * - quiet downloads: downloads in a row that brought no new item (no item url the previous download did not have,
+ *   or 304 Not Modified), items reordered or dropping off the end of the feed are not new,
+ * - failed attempts of the feed, kept by the app (Feed.failedAttempts).
+ * Quiet downloads and failed attempts back off the same way: every one after the first doubles the interval,
+ * up to MAX_INTERVAL. Feeds never downloaded are always due.
+ */
+public class FeedSchedule {
+    public static final long MIN_INTERVAL = 30 * 60 * 1000L;
+    public static final long MAX_INTERVAL = 2 * 24 * 60 * 60 * 1000L;
+    // runs are not exact, a feed due in a few minutes is downloaded now rather than a whole run later
+    private static final double EARLY_TOLERANCE = 0.1;
+    private static final int VERSION = 2; // 1 kept a hash of the url list, such a file is dropped and every feed is due once
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger skipped = new AtomicInteger(0);
+    private volatile boolean dirty = false;
+
+    public FeedSchedule(File file) {
+        this.file = file;
+    }
+
+    public boolean isDue(String url, int failedAttempts, long now) {
+        Entry entry = entries.get(url);
+        if (entry == null || now < entry.downloadedAt) // never downloaded, or the clock went back
+            return true;
+        return now - entry.downloadedAt >= (1 - EARLY_TOLERANCE) * interval(entry, failedAttempts);
+    }
+
+    /** Time between the last download and the next one, 0 for feeds never downloaded. */
+    public long getInterval(String url, int failedAttempts) {
+        Entry entry = entries.get(url);
+        return entry == null ? 0 : interval(entry, failedAttempts);
+    }
+
+    /**
+     * A download that returned articles, notModified if the server answered 304.
+     * Returns false if the download was quiet, true if it brought items the previous one did not have.
+     */
+    public boolean recordDownload(String url, List<FeedArticle> articles, boolean notModified, long now) {
+        Entry previous = entries.get(url);
+        long[] items = notModified && previous != null ? previous.items : itemHashes(articles);
+        long cadence = notModified && previous != null ? previous.cadence : cadence(articles);
+        boolean quiet = previous != null && !hasNewItems(items, previous.items);
+        entries.put(url, new Entry(now, cadence, items, quiet ? previous.quietDownloads + 1 : 0));
+        dirty = true;
+        return !quiet;
+    }
+
+    /* Failed attempts themselves are counted by the app, only the time of the attempt matters here. */
+    public void recordFailure(String url, long now) {
+        Entry previous = entries.get(url);
+        entries.put(url, previous != null
+                ? new Entry(now, previous.cadence, previous.items, previous.quietDownloads)
+                : new Entry(now, 0, new long[0], 0));
+        dirty = true;
+    }
+
+    public void recordSkip() {
+        skipped.incrementAndGet();
+    }
+
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    public void clear() {
+        entries.clear();
+        skipped.set(0);
+        dirty = true;
+    }
+
+    /** Doubles interval for every attempt after the first, up to MAX_INTERVAL. Shared by quiet downloads and failed attempts. */
+    static long backoff(long interval, int attempts) {
+        if (attempts <= 1)
+            return interval;
+        int doublings = Math.min(attempts - 1, Long.numberOfLeadingZeros(interval) - 1);
+        return Math.min(MAX_INTERVAL, interval << doublings);
+    }
+
+    private static long interval(Entry entry, int failedAttempts) {
+        long base = entry.cadence > 0 ? Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, entry.cadence / 2)) : MIN_INTERVAL;
+        return backoff(base, Math.max(failedAttempts, entry.quietDownloads));
+    }
+
+    /* Median gap between item dates, 0 when fewer than two items are dated. */
+    static long cadence(List<FeedArticle> articles) {
+        long[] dates = new long[articles.size()];
+        int count = 0;
+        for (FeedArticle article : articles) {
+            if (article.date != null)
+                dates[count++] = article.date;
+        }
+        if (count < 2)
+            return 0;
+        Arrays.sort(dates, 0, count);
+        long[] gaps = new long[count - 1];
+        for (int i = 1; i < count; i++)
+            gaps[i - 1] = dates[i] - dates[i - 1];
+        Arrays.sort(gaps);
+        return gaps[gaps.length / 2];
+    }
+
+    /* Sorted 64-bit hashes of the item urls, 8 bytes per item instead of the urls themselves. */
+    static long[] itemHashes(List<FeedArticle> articles) {
+        long[] hashes = new long[articles.size()];
+        for (int i = 0; i < hashes.length; i++)
+            hashes[i] = urlHash(articles.get(i).url);
+        Arrays.sort(hashes);
+        return hashes;
+    }
+
+    /* FNV-1a over the chars of the url. */
+    static long urlHash(String url) {
+        long hash = 0xcbf29ce484222325L;
+        if (url == null)
+            return hash;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /* Whether items has a hash that previous (sorted) does not. */
+    static boolean hasNewItems(long[] items, long[] previous) {
+        for (long item : items) {
+            if (Arrays.binarySearch(previous, item) < 0)
+                return true;
+        }
+        return false;
+    }
+
+    public synchronized void load() throws IOException {
+        entries.clear();
+        if (!file.exists())
+            return;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != VERSION)
+                return;
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String url = input.readUTF();
+                long downloadedAt = input.readLong();
+                long cadence = input.readLong();
+                int quietDownloads = input.readInt();
+                long[] items = new long[input.readInt()];
+                for (int j = 0; j < items.length; j++)
+                    items[j] = input.readLong();
+                entries.put(url, new Entry(downloadedAt, cadence, items, quietDownloads));
+            }
+        } finally {
+            input.close();
+        }
+        dirty = false;
+    }
+
+    /** Writes the schedule to disk if anything changed since the last load or save. */
+    public synchronized void save() throws IOException {
+        if (!dirty)
+            return;
+        // cleared before the snapshot is taken, so a change made while writing marks it dirty again
+        dirty = false;
+        List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+        try {
+            write(snapshot);
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    private void write(List<Map.Entry<String, Entry>> snapshot) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(VERSION);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> item : snapshot) {
+                Entry entry = item.getValue();
+                output.writeUTF(item.getKey());
+                output.writeLong(entry.downloadedAt);
+                output.writeLong(entry.cadence);
+                output.writeInt(entry.quietDownloads);
+                output.writeInt(entry.items.length);
+                for (long hash : entry.items)
+                    output.writeLong(hash);
+            }
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file))
+            throw new IOException("Cannot replace " + file);
+    }
+
+    private static class Entry {
+        final long downloadedAt; // last attempt, successful or not
+        final long cadence; // 0 if unknown
+        final long[] items; // itemHashes of the last full response
+        final int quietDownloads;
+
+        Entry(long downloadedAt, long cadence, long[] items, int quietDownloads) {
+            this.downloadedAt = downloadedAt;
+            this.cadence = cadence;
+            this.items = items;
+            this.quietDownloads = quietDownloads;
+        }
+    }
+}
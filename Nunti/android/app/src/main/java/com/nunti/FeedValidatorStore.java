@@ -0,0 +1,177 @@
+package com.nunti;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Per-feed HTTP validators (ETag / Last-Modified) together with the articles parsed from
+ * that response, so a 304 Not Modified can reuse them without downloading or parsing again.
+ * Articles are kept for feeds without validators as well, feeds skipped by FeedSchedule reuse them.
+ */
+public class FeedValidatorStore {
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger(0);
+    private final AtomicInteger misses = new AtomicInteger(0);
+    private volatile boolean dirty = false;
+
+    public FeedValidatorStore(File file) {
+        this.file = file;
+    }
+
+    /** Returns validators and articles usable for this request, null if there are none or they were stored with different parse options. */
+    public Entry get(FeedDownloader.Request request) {
+        Entry entry = entries.get(request.url);
+        if (entry == null || entry.maxArticles != request.maxArticles || entry.noImages != request.noImages)
+            return null;
+        return entry;
+    }
+
+    public void put(FeedDownloader.Request request, String etag, String lastModified, List<FeedArticle> articles) {
+        misses.incrementAndGet();
+        entries.put(request.url, new Entry(etag, lastModified, request.maxArticles, request.noImages, articles));
+        dirty = true;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        hits.set(0);
+        misses.set(0);
+        dirty = true;
+    }
+
+    public synchronized void load() throws IOException {
+        entries.clear();
+        if (!file.exists())
+            return;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != VERSION)
+                return;
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String url = input.readUTF();
+                String etag = readNullableString(input);
+                String lastModified = readNullableString(input);
+                int maxArticles = input.readInt();
+                boolean noImages = input.readBoolean();
+                int articleCount = input.readInt();
+                List<FeedArticle> articles = new ArrayList<>(articleCount);
+                for (int a = 0; a < articleCount; a++) {
+                    FeedArticle article = new FeedArticle();
+                    article.title = input.readUTF();
+                    article.description = input.readUTF();
+                    article.url = readNullableString(input);
+                    article.cover = readNullableString(input);
+                    article.date = input.readBoolean() ? input.readLong() : null;
+                    articles.add(article);
+                }
+                entries.put(url, new Entry(etag, lastModified, maxArticles, noImages, articles));
+            }
+        } finally {
+            input.close();
+        }
+        dirty = false;
+    }
+
+    /** Writes the store to disk if anything changed since the last load or save. */
+    public synchronized void save() throws IOException {
+        if (!dirty)
+            return;
+        // a put racing with the write below sets dirty again instead of being lost until the next put
+        dirty = false;
+        List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+        try {
+            write(snapshot);
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+
+    private void write(List<Map.Entry<String, Entry>> snapshot) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(VERSION);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> item : snapshot) {
+                Entry entry = item.getValue();
+                output.writeUTF(item.getKey());
+                writeNullableString(output, entry.etag);
+                writeNullableString(output, entry.lastModified);
+                output.writeInt(entry.maxArticles);
+                output.writeBoolean(entry.noImages);
+                output.writeInt(entry.articles.size());
+                for (FeedArticle article : entry.articles) {
+                    output.writeUTF(article.title);
+                    output.writeUTF(article.description);
+                    writeNullableString(output, article.url);
+                    writeNullableString(output, article.cover);
+                    output.writeBoolean(article.date != null);
+                    if (article.date != null)
+                        output.writeLong(article.date);
+                }
+            }
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file))
+            throw new IOException("Cannot replace " + file);
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null)
+            output.writeUTF(value);
+    }
+
+    public static class Entry {
+        public final String etag;
+        public final String lastModified;
+        public final int maxArticles;
+        public final boolean noImages;
+        public final List<FeedArticle> articles;
+
+        Entry(String etag, String lastModified, int maxArticles, boolean noImages, List<FeedArticle> articles) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.maxArticles = maxArticles;
+            this.noImages = noImages;
+            this.articles = articles;
+        }
+    }
+}
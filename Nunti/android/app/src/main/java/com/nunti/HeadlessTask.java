@@ -27,6 +27,7 @@ package com.nunti;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.facebook.react.ReactApplication;
@@ -41,15 +42,26 @@ import com.facebook.react.jstasks.HeadlessJsTaskContext;
 import com.facebook.react.jstasks.HeadlessJsTaskEventListener;
 import com.transistorsoft.tsbackgroundfetch.BGTask;
 import com.transistorsoft.tsbackgroundfetch.BackgroundFetch;
+import com.transistorsoft.tsbackgroundfetch.MetricsRecorder;
 import com.facebook.react.common.LifecycleState;
 import androidx.annotation.Keep;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
 @Keep
 public class HeadlessTask implements HeadlessJsTaskEventListener {
     private static String HEADLESS_TASK_NAME = "BackgroundFetch";
+    private static final int MAX_TIMINGS = 10;
     private static Handler mHandler = new Handler();
+    private static final ArrayDeque<Timing> sTimings = new ArrayDeque<>();
     private ReactNativeHost mReactNativeHost;
     private HeadlessJsTaskContext mActiveTaskContext;
+    private Timing mTiming;
+    private MetricsRecorder mMetrics;
+    private MetricsRecorder.Span mContextSpan;
+    private MetricsRecorder.Span mJsSpan;
 
     public HeadlessTask(Context context, BGTask task) {
         try {
@@ -59,6 +71,9 @@ public class HeadlessTask implements HeadlessJsTaskEventListener {
             Log.e(BackgroundFetch.TAG, "Failed to fetch ReactApplication.  Task ignored.");
             return;  // <-- Do nothing.  Just return
         }
+        mTiming = new Timing(task.getTaskId(), task.getStartedAt(), task.getTimedOut());
+        mMetrics = MetricsRecorder.getInstance(context);
+        mContextSpan = mMetrics.begin(MetricsRecorder.REACT_CONTEXT, task.getTaskId(), task.getStartedAt());
         WritableMap clientEvent = new WritableNativeMap();
         clientEvent.putString("taskId", task.getTaskId());
         clientEvent.putBoolean("timeout", task.getTimedOut());
@@ -66,6 +81,30 @@ public class HeadlessTask implements HeadlessJsTaskEventListener {
         startTask(config);
     }
 
+    /**
+     * Starts creating the React context while the job is being dispatched, so JS bundle load overlaps
+     * with config loading instead of following it. Does nothing if a context exists or is being created.
+     * Has to be called on the UI thread.
+     */
+    public static void prewarm(Context context) {
+        try {
+            ReactInstanceManager reactInstanceManager = ((ReactApplication) context.getApplicationContext()).getReactNativeHost().getReactInstanceManager();
+            if (reactInstanceManager.getCurrentReactContext() == null && !reactInstanceManager.hasStartedCreatingInitialContext()) {
+                Log.d(BackgroundFetch.TAG, "Pre-warming React context for a headless task");
+                reactInstanceManager.createReactContextInBackground();
+            }
+        } catch (AssertionError | ClassCastException e) {
+            Log.e(BackgroundFetch.TAG, "Failed to fetch ReactApplication.  Pre-warm skipped.");
+        }
+    }
+
+    /** Phase timings of the last headless tasks, oldest first. */
+    public static List<Timing> getTimings() {
+        synchronized (sTimings) {
+            return new ArrayList<>(sTimings);
+        }
+    }
+
     public void finish() {
         if (mActiveTaskContext != null) {
             mActiveTaskContext.removeTaskEventListener(this);
@@ -74,11 +113,24 @@ public class HeadlessTask implements HeadlessJsTaskEventListener {
     @Override
     public void onHeadlessJsTaskStart(int taskId) {
         Log.d(BackgroundFetch.TAG,"onHeadlessJsTaskStart: " + taskId);
+        mTiming.jsTaskStartedAt = SystemClock.elapsedRealtime();
+        mJsSpan = mMetrics.begin(MetricsRecorder.HEADLESS_JS, mTiming.taskId, mTiming.jsTaskStartedAt);
     }
     @Override
     public void onHeadlessJsTaskFinish(int taskId) {
         Log.d(BackgroundFetch.TAG, "onHeadlessJsTaskFinish: " + taskId);
         mActiveTaskContext.removeTaskEventListener(this);
+        mTiming.finishedAt = SystemClock.elapsedRealtime();
+        if (mJsSpan != null) {
+            mJsSpan.end();
+        }
+        Log.i(BackgroundFetch.TAG, mTiming.toString());
+        synchronized (sTimings) {
+            if (sTimings.size() >= MAX_TIMINGS) {
+                sTimings.removeFirst();
+            }
+            sTimings.addLast(mTiming);
+        }
     }
 
     /**
@@ -93,27 +145,51 @@ public class HeadlessTask implements HeadlessJsTaskEventListener {
         final ReactInstanceManager reactInstanceManager = mReactNativeHost.getReactInstanceManager();
         ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
         if (reactContext == null) {
+            mTiming.coldStart = true;
             reactInstanceManager.addReactInstanceEventListener(new ReactInstanceManager.ReactInstanceEventListener() {
                 @Override
                 public void onReactContextInitialized(final ReactContext reactContext) {
-                    // Hack to fix unknown problem executing asynchronous BackgroundTask when ReactContext is created *first time*.  Fixed by adding short delay before #invokeStartTask
-                    mHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            invokeStartTask(reactContext, taskConfig);
-                        }
-                    }, 500);
                     reactInstanceManager.removeReactInstanceEventListener(this);
+                    whenReady(reactContext, taskConfig);
                 }
             });
             if (!reactInstanceManager.hasStartedCreatingInitialContext()) {
                 reactInstanceManager.createReactContextInBackground();
+            } else {
+                mTiming.prewarmed = true;
             }
         } else {
+            mTiming.contextReadyAt = SystemClock.elapsedRealtime();
+            mContextSpan.end();
             invokeStartTask(reactContext, taskConfig);
         }
     }
 
+    /*
+     * A context reported as initialized for the first time may still have work queued on its JS thread
+     * (what the former fixed 500 ms delay papered over). Queueing a no-op behind it there and starting
+     * the task from the UI thread once it ran means the bundle is done, however long that took.
+     */
+    private void whenReady(final ReactContext reactContext, final HeadlessJsTaskConfig taskConfig) {
+        final Runnable start = new Runnable() {
+            @Override
+            public void run() {
+                mTiming.contextReadyAt = SystemClock.elapsedRealtime();
+                mContextSpan.end();
+                invokeStartTask(reactContext, taskConfig);
+            }
+        };
+        boolean queued = reactContext.hasActiveReactInstance() && reactContext.runOnJSQueueThread(new Runnable() {
+            @Override
+            public void run() {
+                mHandler.post(start);
+            }
+        });
+        if (!queued) {
+            mHandler.post(start);
+        }
+    }
+
     private void invokeStartTask(ReactContext reactContext, final HeadlessJsTaskConfig taskConfig) {
         if (reactContext.getLifecycleState() == LifecycleState.RESUMED) {
             return;
@@ -139,4 +215,29 @@ public class HeadlessTask implements HeadlessJsTaskEventListener {
         }
 
     }
+
+    /** SystemClock.elapsedRealtime() of every phase, 0 for phases not reached. */
+    public static class Timing {
+        public final String taskId;
+        public final long jobStartedAt;
+        public final boolean timeout;
+        public volatile boolean coldStart = false; // no React context existed when the task arrived
+        public volatile boolean prewarmed = false; // context creation was already under way (pre-warm)
+        public volatile long contextReadyAt = 0;
+        public volatile long jsTaskStartedAt = 0;
+        public volatile long finishedAt = 0;
+
+        Timing(String taskId, long jobStartedAt, boolean timeout) {
+            this.taskId = taskId;
+            this.jobStartedAt = jobStartedAt;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public String toString() {
+            return "[HeadlessTask " + taskId + (coldStart ? " cold" : " warm") + (prewarmed ? " prewarmed" : "")
+                + "] context ready +" + (contextReadyAt - jobStartedAt) + " ms, JS task start +" + (jsTaskStartedAt - contextReadyAt)
+                + " ms, finish +" + (finishedAt - jsTaskStartedAt) + " ms, total " + (finishedAt - jobStartedAt) + " ms";
+        }
+    }
 }
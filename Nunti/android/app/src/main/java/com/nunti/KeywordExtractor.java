@@ -0,0 +1,205 @@
+package com.nunti;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/*
+ * TF-IDF keywords per article, same numbers as the former ArticlesUtils.ExtractKeywords:
+ * TF = term count in article / all terms in article, IDF = ln(articles in feed / (1 + articles containing term)) + 1,
+ * score = tf * idf * 1000, only the top MAX_KEYWORDS are kept.
+ *
+ * Feeds are independent corpora, so each one is a separate task on the pool. Within a feed terms are
+ * interned to dense ids once and all counting is done in int arrays indexed by term id.
+ */
+public class KeywordExtractor {
+    public static final int MAX_KEYWORDS = 20;
+
+    // Same (odd) pattern as Article.GetKeywordBase, incl. the JS \s set: one separator char directly followed by ']'.
+    private static final Pattern KEYWORD_SEPARATORS = Pattern.compile(
+        "[\\s\\u00A0\\u1680\\u2000-\\u200A\\u2028\\u2029\\u202F\\u205F\\u3000\\uFEFF,.\\u2013\"!?:-{}/\\\\;\\[]\\]");
+
+    private final ForkJoinPool pool;
+
+    public KeywordExtractor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Returns keywords for every document, in the order of documents. */
+    public List<Keywords> extract(List<Document> documents) throws InterruptedException {
+        Map<String, List<Integer>> feeds = new LinkedHashMap<>();
+        for (int i = 0; i < documents.size(); i++) {
+            String source = documents.get(i).source;
+            List<Integer> indexes = feeds.get(source);
+            if (indexes == null) {
+                indexes = new ArrayList<>();
+                feeds.put(source, indexes);
+            }
+            indexes.add(i);
+        }
+
+        final Keywords[] results = new Keywords[documents.size()];
+        List<Callable<Void>> tasks = new ArrayList<>(feeds.size());
+        for (final List<Integer> indexes : feeds.values()) {
+            final List<Document> feed = new ArrayList<>(indexes.size());
+            for (int index : indexes)
+                feed.add(documents.get(index));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Keywords[] keywords = extractFeed(feed);
+                    for (int i = 0; i < keywords.length; i++)
+                        results[indexes.get(i)] = keywords[i];
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Keyword extraction failed.", e.getCause());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /* One feed is one corpus for IDF. */
+    static Keywords[] extractFeed(List<Document> feed) {
+        int documentCount = feed.size();
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        int[][] tokens = new int[documentCount][];
+
+        // pass 1 - tokenize, intern terms and count documents containing each term
+        int[] documentFrequency = new int[64];
+        int[] lastDocument = new int[64];
+        for (int d = 0; d < documentCount; d++) {
+            String[] words = split(feed.get(d).text);
+            int[] ids = new int[words.length];
+            for (int w = 0; w < words.length; w++) {
+                Integer id = termIds.get(words[w]);
+                if (id == null) {
+                    id = terms.size();
+                    termIds.put(words[w], id);
+                    terms.add(words[w]);
+                    if (id == documentFrequency.length) {
+                        documentFrequency = Arrays.copyOf(documentFrequency, id * 2);
+                        lastDocument = Arrays.copyOf(lastDocument, id * 2);
+                    }
+                    lastDocument[id] = -1;
+                }
+                ids[w] = id;
+                if (lastDocument[id] != d) {
+                    lastDocument[id] = d;
+                    documentFrequency[id]++;
+                }
+            }
+            tokens[d] = ids;
+        }
+
+        // pass 2 - tf-idf per article, scratch counts are reset only for the terms an article touched
+        Keywords[] results = new Keywords[documentCount];
+        int[] counts = new int[terms.size()];
+        int[] unique = new int[16];
+        for (int d = 0; d < documentCount; d++) {
+            int[] ids = tokens[d];
+            int uniqueCount = 0;
+            for (int id : ids) {
+                if (counts[id]++ == 0) {
+                    if (uniqueCount == unique.length)
+                        unique = Arrays.copyOf(unique, uniqueCount * 2);
+                    unique[uniqueCount++] = id;
+                }
+            }
+
+            final String[] words = new String[uniqueCount];
+            final double[] scores = new double[uniqueCount];
+            for (int u = 0; u < uniqueCount; u++) {
+                int id = unique[u];
+                double tf = (double) counts[id] / ids.length;
+                double idf = Math.log((double) documentCount / (1 + documentFrequency[id])) + 1;
+                words[u] = terms.get(id);
+                scores[u] = tf * idf * 1000;
+                counts[id] = 0;
+            }
+            results[d] = top(words, scores, MAX_KEYWORDS);
+        }
+        return results;
+    }
+
+    /* Highest scores first, ties keep the order of first occurrence like the stable JS sort did. */
+    private static Keywords top(final String[] words, final double[] scores, int limit) {
+        Integer[] order = new Integer[words.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(scores[second], scores[first]);
+            }
+        });
+
+        int count = Math.min(limit, order.length);
+        String[] topWords = new String[count];
+        double[] topScores = new double[count];
+        for (int i = 0; i < count; i++) {
+            topWords[i] = words[order[i]];
+            topScores[i] = scores[order[i]];
+        }
+        return new Keywords(topWords, topScores);
+    }
+
+    /* Equivalent of keywordBase.split(' ') without the empty strings. */
+    private static String[] split(String text) {
+        List<String> words = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ') {
+                if (i > start)
+                    words.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /** Port of Article.GetKeywordBase. */
+    public static String keywordBase(String title, String description) {
+        String base = KEYWORD_SEPARATORS.matcher(title + " " + description).replaceAll(" ");
+        int doubleSpace = base.indexOf("  ");
+        if (doubleSpace >= 0) // JS String.replace with a string argument only replaces the first occurrence
+            base = base.substring(0, doubleSpace) + " " + base.substring(doubleSpace + 2);
+        return base;
+    }
+
+    public static class Document {
+        public final String source;
+        public final String text;
+
+        public Document(String source, String title, String description) {
+            this.source = source;
+            this.text = keywordBase(title, description);
+        }
+    }
+
+    public static class Keywords {
+        public final String[] words;
+        public final double[] scores;
+
+        Keywords(String[] words, double[] scores) {
+            this.words = words;
+            this.scores = scores;
+        }
+    }
+}
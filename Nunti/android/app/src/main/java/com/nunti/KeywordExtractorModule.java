@@ -0,0 +1,64 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+public class KeywordExtractorModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    KeywordExtractorModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "KeywordExtractorModule";
+    }
+
+    /* Takes [{source, title, description}], resolves with [{keyword: score}] in the same order, top 20 per article. */
+    @ReactMethod
+    public void extract(final ReadableArray articles, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<KeywordExtractor.Document> documents = new ArrayList<>(articles.size());
+                    for (int i = 0; i < articles.size(); i++) {
+                        ReadableMap article = articles.getMap(i);
+                        documents.add(new KeywordExtractor.Document(
+                            article.getString("source"),
+                            article.hasKey("title") ? article.getString("title") : "",
+                            article.hasKey("description") ? article.getString("description") : ""));
+                    }
+
+                    List<KeywordExtractor.Keywords> keywords = new KeywordExtractor(pool).extract(documents);
+                    WritableArray result = Arguments.createArray();
+                    for (KeywordExtractor.Keywords item : keywords) {
+                        WritableMap map = Arguments.createMap();
+                        for (int i = 0; i < item.words.length; i++)
+                            map.putDouble(item.words[i], item.scores[i]);
+                        result.pushMap(map);
+                    }
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("EXTRACT_FAILED", "Keyword extraction failed. " + e, e);
+                }
+            }
+        });
+    }
+}
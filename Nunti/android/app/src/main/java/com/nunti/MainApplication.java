@@ -15,6 +15,9 @@ import com.oblador.vectoricons.VectorIconsPackage;
 
 import com.nunti.MaterialYouPackage;
 import com.nunti.NotificationsPackage;
+import com.transistorsoft.tsbackgroundfetch.ActivityTracker;
+import com.transistorsoft.tsbackgroundfetch.BackgroundFetch;
+import android.content.Context;
 
 public class MainApplication extends Application implements ReactApplication {
   private final ReactNativeHost mReactNativeHost =
@@ -33,6 +36,16 @@ public class MainApplication extends Application implements ReactApplication {
           packages.add(new AccessibilityPackage());
           packages.add(new NotificationsPackage());
           packages.add(new RNBackgroundFetchPackage());
+          packages.add(new FeedParserPackage());
+          packages.add(new FeedDownloaderPackage());
+          packages.add(new KeywordExtractorPackage());
+          packages.add(new ArticleRankerPackage());
+          packages.add(new ArticleDeduplicatorPackage());
+          packages.add(new ArticleIndexPackage());
+          packages.add(new ArticleStorePackage());
+          packages.add(new OfflineStorePackage());
+          packages.add(new WebpageParserPackage());
+          packages.add(new BackgroundSyncPackage());
           
           return packages;
         }
@@ -66,5 +79,26 @@ public class MainApplication extends Application implements ReactApplication {
       // If you opted-in for the New Architecture, we load the native entry point for this app.
       DefaultNewArchitectureEntryPoint.load();
     }
+    // lets background fetch tell foreground from headless without scanning running tasks
+    ActivityTracker.install(this);
+    // background fetch jobs start loading the JS bundle right away, see HeadlessTask.prewarm,
+    // unless BackgroundSync is going to run the job without JS
+    BackgroundFetch.setPrewarmer(new BackgroundFetch.Prewarmer() {
+      @Override
+      public void prewarm(Context context) {
+        BackgroundSync.prewarm(context);
+      }
+    });
+    BackgroundFetch.setNativeHandler(new BackgroundFetch.NativeHandler() {
+      @Override
+      public boolean onFetch(Context context, String taskId) {
+        return BackgroundSync.start(context, taskId);
+      }
+
+      @Override
+      public void onTimeout(Context context, String taskId) {
+        BackgroundSync.cancel();
+      }
+    });
   }
 }
@@ -10,10 +10,36 @@ import android.R;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
 import androidx.core.content.ContextCompat;
 
+import android.app.WallpaperColors;
+import android.app.WallpaperManager;
+import android.content.ComponentCallbacks;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Palettes for both themes are resolved once and handed to JS as module constants, so the theme is known
+ * at bundle load. They are resolved again when the configuration or the wallpaper colors change and if
+ * the system colors actually changed, EVENT_PALETTE_CHANGED is emitted with the same shape as the constants.
+ */
 public class MaterialYouModule extends ReactContextBaseJavaModule {
+    private static final String TAG = "MaterialYouModule";
+    private static final String EVENT_PALETTE_CHANGED = "materialYouPaletteChanged";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     ReactApplicationContext moduleContext;
+    private volatile Palette palette = null;
+    private ComponentCallbacks configurationListener = null;
+    private WallpaperManager.OnColorsChangedListener wallpaperListener = null;
 
     MaterialYouModule(ReactApplicationContext context) {
         super(context);
@@ -26,117 +52,248 @@ public class MaterialYouModule extends ReactContextBaseJavaModule {
         return "MaterialYouModule";
     }
 
-    @ReactMethod
-    public void getMaterialYouPalette(String theme, Promise promise) throws Exception {
-        try{
-            WritableMap colors = Arguments.createMap();
-
-            if(theme.equals("dark")){
-                colors.putString("primary", getHexCode(R.color.system_accent1_200));
-                colors.putString("onPrimary", getHexCode(R.color.system_accent1_800));
-                colors.putString("primaryContainer", getHexCode(R.color.system_accent1_700));
-                colors.putString("onPrimaryContainer", getHexCode(R.color.system_accent1_100));
-                
-                colors.putString("secondary", getHexCode(R.color.system_accent2_200));
-                colors.putString("onSecondary", getHexCode(R.color.system_accent2_800));
-                colors.putString("secondaryContainer", getHexCode(R.color.system_accent2_700));
-                colors.putString("onSecondaryContainer", getHexCode(R.color.system_accent2_100));
-                
-                colors.putString("tertiary", getHexCode(R.color.system_accent3_200));
-                colors.putString("onTertiary", getHexCode(R.color.system_accent3_800));
-                colors.putString("tertiaryContainer", getHexCode(R.color.system_accent3_700));
-                colors.putString("onTertiaryContainer", getHexCode(R.color.system_accent3_100));
-                
-                colors.putString("background", getHexCode(R.color.system_neutral1_900));
-                colors.putString("onBackground", getHexCode(R.color.system_neutral1_100));
-                colors.putString("surface", getHexCode(R.color.system_neutral1_900));
-                colors.putString("onSurface", getHexCode(R.color.system_neutral1_100));
-                
-                colors.putString("surfaceVariant", getHexCode(R.color.system_neutral1_700));
-                colors.putString("onSurfaceVariant", getHexCode(R.color.system_neutral1_200));
-                colors.putString("outline", getHexCode(R.color.system_neutral1_400));
-                
-                colors.putString("inversePrimary", getHexCode(R.color.system_accent1_600));
-                colors.putString("inverseSurface", getHexCode(R.color.system_neutral1_10));
-                colors.putString("inverseOnSurface", getHexCode(R.color.system_neutral1_900));
-                
-                colors.putString("error", "#ffb4ab");
-                colors.putString("onError", "#690005");
-                colors.putString("errorContainer", "#93000a");
-                colors.putString("onErrorContainer", "#ffdad6");
-            
-                colors.putString("warn", "#f1c100");
-                colors.putString("onWarn", "#3d2f00");
-                colors.putString("warnContainer", "#584400");
-                colors.putString("onWarnContainer", "#ffe08b");
-                
-                colors.putString("positive", "#8fd88a");
-                colors.putString("onPositive", "#00390b");
-                colors.putString("positiveContainer", "#045316");
-                colors.putString("onPositiveContainer", "#aaf5a4");
-                
-                colors.putString("negative", "#ffb4aa");
-                colors.putString("onNegative", "#690003");
-                colors.putString("negativeContainer", "#8b1913");
-                colors.putString("onNegativeContainer", "#ffdad5");
-            } else {
-                colors.putString("primary", getHexCode(R.color.system_accent1_600));
-                colors.putString("onPrimary", getHexCode(R.color.system_accent1_0));
-                colors.putString("primaryContainer", getHexCode(R.color.system_accent1_100));
-                colors.putString("onPrimaryContainer", getHexCode(R.color.system_accent1_900));
-                
-                colors.putString("secondary", getHexCode(R.color.system_accent2_600));
-                colors.putString("onSecondary", getHexCode(R.color.system_accent2_0));
-                colors.putString("secondaryContainer", getHexCode(R.color.system_accent2_100));
-                colors.putString("onSecondaryContainer", getHexCode(R.color.system_accent2_900));
-                
-                colors.putString("tertiary", getHexCode(R.color.system_accent3_600));
-                colors.putString("onTertiary", getHexCode(R.color.system_accent3_0));
-                colors.putString("tertiaryContainer", getHexCode(R.color.system_accent3_100));
-                colors.putString("onTertiaryContainer", getHexCode(R.color.system_accent3_900));
-                
-                colors.putString("background", getHexCode(R.color.system_neutral1_10));
-                colors.putString("onBackground", getHexCode(R.color.system_neutral1_900));
-                colors.putString("surface", getHexCode(R.color.system_neutral1_10));
-                colors.putString("onSurface", getHexCode(R.color.system_neutral1_900));
-                
-                colors.putString("surfaceVariant", getHexCode(R.color.system_neutral1_100));
-                colors.putString("onSurfaceVariant", getHexCode(R.color.system_neutral1_700));
-                colors.putString("outline", getHexCode(R.color.system_neutral1_500));
-                
-                colors.putString("inversePrimary", getHexCode(R.color.system_accent1_200));
-                colors.putString("inverseSurface", getHexCode(R.color.system_neutral1_900));
-                colors.putString("inverseOnSurface", getHexCode(R.color.system_neutral1_100));
-                
-                colors.putString("error", "#ba1a1a");
-                colors.putString("onError", "#ffffff");
-                colors.putString("errorContainer", "#ffdad6");
-                colors.putString("onErrorContainer", "#410002");
-            
-                colors.putString("warn", "#745b00");
-                colors.putString("onWarn", "#ffffff");
-                colors.putString("warnContainer", "#ffe08b");
-                colors.putString("onWarnContainer", "#241a00");
-                
-                colors.putString("positive", "#266c2b");
-                colors.putString("onPositive", "#ffffff");
-                colors.putString("positiveContainer", "#aaf5a4");
-                colors.putString("onPositiveContainer", "#002204");
-                
-                colors.putString("negative", "#ad3228");
-                colors.putString("onNegative", "#ffffff");
-                colors.putString("negativeContainer", "#ffdad5");
-                colors.putString("onNegativeContainer", "#410001");
+    /* {isSupported, dark, light}, palettes are null on devices without Material You. */
+    @Override
+    public Map<String, Object> getConstants() {
+        Palette current = getPalette();
+        Map<String, Object> constants = new HashMap<>();
+        constants.put("isSupported", current != null);
+        constants.put("dark", current != null ? current.dark : null);
+        constants.put("light", current != null ? current.light : null);
+        return constants;
+    }
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S)
+            return;
+
+        configurationListener = new ComponentCallbacks() {
+            @Override
+            public void onConfigurationChanged(Configuration configuration) {
+                refresh();
+            }
+
+            @Override
+            public void onLowMemory() {
+            }
+        };
+        moduleContext.getApplicationContext().registerComponentCallbacks(configurationListener);
+
+        wallpaperListener = new WallpaperManager.OnColorsChangedListener() {
+            @Override
+            public void onColorsChanged(WallpaperColors colors, int which) {
+                refresh();
             }
+        };
+        WallpaperManager.getInstance(moduleContext).addOnColorsChangedListener(wallpaperListener, new Handler(Looper.getMainLooper()));
+    }
+
+    @Override
+    public void invalidate() {
+        if (configurationListener != null)
+            moduleContext.getApplicationContext().unregisterComponentCallbacks(configurationListener);
+        if (wallpaperListener != null)
+            WallpaperManager.getInstance(moduleContext).removeOnColorsChangedListener(wallpaperListener);
+        configurationListener = null;
+        wallpaperListener = null;
+        super.invalidate();
+    }
 
-            promise.resolve(colors);
-        } catch(Exception e) {
+    /* Kept for callers that ask for a single theme, answered from the cached palette. */
+    @ReactMethod
+    public void getMaterialYouPalette(String theme, Promise promise) throws Exception {
+        Palette current = getPalette();
+        if (current == null)
             throw new Exception("Material you is not supported on this device");
+        promise.resolve(toWritableMap(theme.equals("dark") ? current.dark : current.light));
+    }
+
+    @ReactMethod
+    public void addListener(String event) {
+        // Keep:  Required for RN built-in NativeEventEmitter calls.
+    }
+
+    @ReactMethod
+    public void removeListeners(Integer count) {
+        // Keep:  Required for RN built-in NativeEventEmitter calls.
+    }
+
+    private Palette getPalette() {
+        Palette current = palette;
+        if (current == null) {
+            current = readPalette();
+            palette = current;
+        }
+        return current;
+    }
+
+    /* Wallpaper changes are reported before the new system colors apply, so only an actual change is emitted. */
+    private void refresh() {
+        Palette previous = palette;
+        Palette current = readPalette();
+        if (current == null || current.equals(previous))
+            return;
+        palette = current;
+
+        if (!moduleContext.hasActiveReactInstance())
+            return;
+        WritableMap params = Arguments.createMap();
+        params.putMap("dark", toWritableMap(current.dark));
+        params.putMap("light", toWritableMap(current.light));
+        moduleContext.getJSModule(RCTNativeAppEventEmitter.class).emit(EVENT_PALETTE_CHANGED, params);
+    }
+
+    private Palette readPalette() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S)
+            return null;
+        try {
+            return new Palette(readColors(true), readColors(false));
+        } catch (Exception e) {
+            Log.w(TAG, "Material you is not supported on this device", e);
+            return null;
         }
     }
 
+    private Map<String, Object> readColors(boolean dark) {
+        Map<String, Object> colors = new LinkedHashMap<>();
+
+        if(dark){
+            colors.put("primary", getHexCode(R.color.system_accent1_200));
+            colors.put("onPrimary", getHexCode(R.color.system_accent1_800));
+            colors.put("primaryContainer", getHexCode(R.color.system_accent1_700));
+            colors.put("onPrimaryContainer", getHexCode(R.color.system_accent1_100));
+
+            colors.put("secondary", getHexCode(R.color.system_accent2_200));
+            colors.put("onSecondary", getHexCode(R.color.system_accent2_800));
+            colors.put("secondaryContainer", getHexCode(R.color.system_accent2_700));
+            colors.put("onSecondaryContainer", getHexCode(R.color.system_accent2_100));
+
+            colors.put("tertiary", getHexCode(R.color.system_accent3_200));
+            colors.put("onTertiary", getHexCode(R.color.system_accent3_800));
+            colors.put("tertiaryContainer", getHexCode(R.color.system_accent3_700));
+            colors.put("onTertiaryContainer", getHexCode(R.color.system_accent3_100));
+
+            colors.put("background", getHexCode(R.color.system_neutral1_900));
+            colors.put("onBackground", getHexCode(R.color.system_neutral1_100));
+            colors.put("surface", getHexCode(R.color.system_neutral1_900));
+            colors.put("onSurface", getHexCode(R.color.system_neutral1_100));
+
+            colors.put("surfaceVariant", getHexCode(R.color.system_neutral1_700));
+            colors.put("onSurfaceVariant", getHexCode(R.color.system_neutral1_200));
+            colors.put("outline", getHexCode(R.color.system_neutral1_400));
+
+            colors.put("inversePrimary", getHexCode(R.color.system_accent1_600));
+            colors.put("inverseSurface", getHexCode(R.color.system_neutral1_10));
+            colors.put("inverseOnSurface", getHexCode(R.color.system_neutral1_900));
+
+            colors.put("error", "#ffb4ab");
+            colors.put("onError", "#690005");
+            colors.put("errorContainer", "#93000a");
+            colors.put("onErrorContainer", "#ffdad6");
+
+            colors.put("warn", "#f1c100");
+            colors.put("onWarn", "#3d2f00");
+            colors.put("warnContainer", "#584400");
+            colors.put("onWarnContainer", "#ffe08b");
+
+            colors.put("positive", "#8fd88a");
+            colors.put("onPositive", "#00390b");
+            colors.put("positiveContainer", "#045316");
+            colors.put("onPositiveContainer", "#aaf5a4");
+
+            colors.put("negative", "#ffb4aa");
+            colors.put("onNegative", "#690003");
+            colors.put("negativeContainer", "#8b1913");
+            colors.put("onNegativeContainer", "#ffdad5");
+        } else {
+            colors.put("primary", getHexCode(R.color.system_accent1_600));
+            colors.put("onPrimary", getHexCode(R.color.system_accent1_0));
+            colors.put("primaryContainer", getHexCode(R.color.system_accent1_100));
+            colors.put("onPrimaryContainer", getHexCode(R.color.system_accent1_900));
+
+            colors.put("secondary", getHexCode(R.color.system_accent2_600));
+            colors.put("onSecondary", getHexCode(R.color.system_accent2_0));
+            colors.put("secondaryContainer", getHexCode(R.color.system_accent2_100));
+            colors.put("onSecondaryContainer", getHexCode(R.color.system_accent2_900));
+
+            colors.put("tertiary", getHexCode(R.color.system_accent3_600));
+            colors.put("onTertiary", getHexCode(R.color.system_accent3_0));
+            colors.put("tertiaryContainer", getHexCode(R.color.system_accent3_100));
+            colors.put("onTertiaryContainer", getHexCode(R.color.system_accent3_900));
+
+            colors.put("background", getHexCode(R.color.system_neutral1_10));
+            colors.put("onBackground", getHexCode(R.color.system_neutral1_900));
+            colors.put("surface", getHexCode(R.color.system_neutral1_10));
+            colors.put("onSurface", getHexCode(R.color.system_neutral1_900));
+
+            colors.put("surfaceVariant", getHexCode(R.color.system_neutral1_100));
+            colors.put("onSurfaceVariant", getHexCode(R.color.system_neutral1_700));
+            colors.put("outline", getHexCode(R.color.system_neutral1_500));
+
+            colors.put("inversePrimary", getHexCode(R.color.system_accent1_200));
+            colors.put("inverseSurface", getHexCode(R.color.system_neutral1_900));
+            colors.put("inverseOnSurface", getHexCode(R.color.system_neutral1_100));
+
+            colors.put("error", "#ba1a1a");
+            colors.put("onError", "#ffffff");
+            colors.put("errorContainer", "#ffdad6");
+            colors.put("onErrorContainer", "#410002");
+
+            colors.put("warn", "#745b00");
+            colors.put("onWarn", "#ffffff");
+            colors.put("warnContainer", "#ffe08b");
+            colors.put("onWarnContainer", "#241a00");
+
+            colors.put("positive", "#266c2b");
+            colors.put("onPositive", "#ffffff");
+            colors.put("positiveContainer", "#aaf5a4");
+            colors.put("onPositiveContainer", "#002204");
+
+            colors.put("negative", "#ad3228");
+            colors.put("onNegative", "#ffffff");
+            colors.put("negativeContainer", "#ffdad5");
+            colors.put("onNegativeContainer", "#410001");
+        }
+        return colors;
+    }
+
+    private static WritableMap toWritableMap(Map<String, Object> colors) {
+        WritableMap map = Arguments.createMap();
+        for (Map.Entry<String, Object> color : colors.entrySet())
+            map.putString(color.getKey(), (String) color.getValue());
+        return map;
+    }
+
     private String getHexCode(int color){
-        int hex = ContextCompat.getColor(moduleContext, color);
-        return ("#" + java.lang.String.format("%06X", hex).substring(2));
+        int argb = ContextCompat.getColor(moduleContext, color);
+        char[] hex = new char[7];
+        hex[0] = '#';
+        for (int i = 6; i >= 1; i--) {
+            hex[i] = HEX_DIGITS[argb & 0xF];
+            argb >>>= 4;
+        }
+        return new String(hex);
+    }
+
+    private static class Palette {
+        final Map<String, Object> dark;
+        final Map<String, Object> light;
+
+        Palette(Map<String, Object> dark, Map<String, Object> light) {
+            this.dark = dark;
+            this.light = light;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Palette && dark.equals(((Palette) other).dark) && light.equals(((Palette) other).light);
+        }
+
+        @Override
+        public int hashCode() {
+            return dark.hashCode() * 31 + light.hashCode();
+        }
     }
 }
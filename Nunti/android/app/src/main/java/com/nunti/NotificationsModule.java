@@ -8,18 +8,24 @@ import com.facebook.react.bridge.ReactMethod;
 
 import com.nunti.R;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
 import androidx.core.content.ContextCompat;
 //import android.graphics.BitmapFactory;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import android.os.Build;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
+import android.content.Context;
 import android.content.Intent;
 
 import androidx.core.app.ActivityCompat;
@@ -30,7 +36,15 @@ import com.facebook.react.modules.core.PermissionAwareActivity;
 import com.facebook.react.modules.core.PermissionListener;
 
 public class NotificationsModule extends ReactContextBaseJavaModule {
+    private static final String CHANNEL_ID = "Messages";
+    private static final String ARTICLES_GROUP = "com.nunti.ARTICLES";
+    private static final int MAX_INBOX_LINES = 5;
+
+    /* channel id -> name + description it was registered with, re-registered only when those change (locale switch) */
+    private static final Map<String, String> registeredChannels = new ConcurrentHashMap<>();
+
     ReactApplicationContext moduleContext;
+    private static PendingIntent contentIntent = null;
 
     NotificationsModule(ReactApplicationContext context) {
         super(context);
@@ -75,40 +89,131 @@ public class NotificationsModule extends ReactContextBaseJavaModule {
             String title,
             String message,
             String summary,
-            String _channelName,
+            String channelName,
             String channelDescription,
             Promise promise
         ) {
         try {
-            int notificationId  = new Random().nextInt();
-            String channelId  = "Messages";
-            NotificationCompat.Builder builder = new NotificationCompat.Builder(moduleContext, channelId);
-            builder.setSmallIcon( R.drawable.icon_notification_small );
-            //builder.setLargeIcon( BitmapFactory.decodeResource(moduleContext.getResources(), R.drawable.icon_notifications_large) );
-            builder.setContentTitle( title );
-            builder.setContentText( message );
+            registerChannel(moduleContext, CHANNEL_ID, channelName, channelDescription);
+            // same text gets the same id, so a repeated notification replaces the previous one
+            int notificationId = (title + "\n" + message).hashCode();
+            NotificationCompat.Builder builder = newBuilder(moduleContext, title, message);
             builder.setStyle( new NotificationCompat.BigTextStyle().bigText(message).setSummaryText(summary) );
-            builder.setPriority( NotificationCompat.PRIORITY_HIGH );
-            Intent notifyIntent = new Intent(moduleContext, MainActivity.class);
-            notifyIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            PendingIntent notifyPendingIntent = PendingIntent.getActivity(moduleContext, 0, notifyIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-            builder.setContentIntent( notifyPendingIntent );
-            builder.setAutoCancel( true );
-            
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                CharSequence channelName = _channelName;
-                int importance = NotificationManager.IMPORTANCE_HIGH;
-                NotificationChannel channel = new NotificationChannel( channelId,channelName,importance );
-                channel.setDescription( channelDescription );
-                NotificationManager notificationManager = moduleContext.getSystemService( NotificationManager.class );
-                notificationManager.createNotificationChannel( channel );
-            }
 
-            NotificationManagerCompat notificationManagerCompat = NotificationManagerCompat.from(moduleContext);
-            notificationManagerCompat.notify(notificationId,builder.build());
+            NotificationManagerCompat.from(moduleContext).notify(notificationId, builder.build());
+            promise.resolve(true);
+        } catch(Exception e) {
+            promise.resolve("Notification attempt failed. " + e);
+        }
+    }
+
+    /*
+     * Posts articles ([{url, title, source}]) as one group: a notification per article, id derived from its url
+     * so a repeated article updates in place, plus an InboxStyle summary listing them. Only the summary alerts.
+     */
+    @ReactMethod
+    public void notifyBatch(
+            ReadableArray articles,
+            String title,
+            String summary,
+            String channelName,
+            String channelDescription,
+            Promise promise
+        ) {
+        try {
+            List<ArticleStore.Record> records = new ArrayList<>(articles.size());
+            for (int i = 0; i < articles.size(); i++) {
+                ReadableMap article = articles.getMap(i);
+                ArticleStore.Record record = new ArticleStore.Record();
+                record.url = article.getString("url");
+                record.title = article.getString("title");
+                record.source = article.hasKey("source") ? article.getString("source") : null;
+                records.add(record);
+            }
+            postArticles(moduleContext, records, title, summary, channelName, channelDescription);
             promise.resolve(true);
         } catch(Exception e) {
             promise.resolve("Notification attempt failed. " + e);
         }
     }
+
+    /* notifyBatch without a React context, BackgroundSync posts its articles through this. Only url, title and source are used. */
+    static void postArticles(
+            Context context,
+            List<ArticleStore.Record> articles,
+            String title,
+            String summary,
+            String channelName,
+            String channelDescription
+        ) {
+        if (articles.isEmpty())
+            return;
+        registerChannel(context, CHANNEL_ID, channelName, channelDescription);
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
+
+        NotificationCompat.InboxStyle inbox = new NotificationCompat.InboxStyle().setBigContentTitle(title);
+        for (int i = 0; i < articles.size(); i++) {
+            ArticleStore.Record article = articles.get(i);
+
+            NotificationCompat.Builder builder = newBuilder(context, article.source != null ? article.source : title, article.title);
+            builder.setStyle( new NotificationCompat.BigTextStyle().bigText(article.title) );
+            builder.setGroup( ARTICLES_GROUP );
+            builder.setGroupAlertBehavior( NotificationCompat.GROUP_ALERT_SUMMARY );
+            notificationManager.notify(articleId(article.url), builder.build());
+
+            if (i < MAX_INBOX_LINES)
+                inbox.addLine(article.title);
+        }
+        if (summary != null)
+            inbox.setSummaryText(summary);
+        else if (articles.size() > MAX_INBOX_LINES)
+            inbox.setSummaryText("+" + (articles.size() - MAX_INBOX_LINES));
+
+        NotificationCompat.Builder builder = newBuilder(context, title, articles.get(0).title);
+        builder.setStyle( inbox );
+        builder.setNumber( articles.size() );
+        builder.setGroup( ARTICLES_GROUP );
+        builder.setGroupSummary( true );
+        builder.setGroupAlertBehavior( NotificationCompat.GROUP_ALERT_SUMMARY );
+        notificationManager.notify(ARTICLES_GROUP.hashCode(), builder.build());
+    }
+
+    private static NotificationCompat.Builder newBuilder(Context context, String title, String message) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID);
+        builder.setSmallIcon( R.drawable.icon_notification_small );
+        //builder.setLargeIcon( BitmapFactory.decodeResource(moduleContext.getResources(), R.drawable.icon_notifications_large) );
+        builder.setContentTitle( title );
+        builder.setContentText( message );
+        builder.setPriority( NotificationCompat.PRIORITY_HIGH );
+        builder.setContentIntent( getContentIntent(context) );
+        builder.setAutoCancel( true );
+        return builder;
+    }
+
+    private static synchronized PendingIntent getContentIntent(Context context) {
+        if (contentIntent == null) {
+            Intent notifyIntent = new Intent(context, MainActivity.class);
+            notifyIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            contentIntent = PendingIntent.getActivity(context, 0, notifyIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        }
+        return contentIntent;
+    }
+
+    private static void registerChannel(Context context, String channelId, String channelName, String channelDescription) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
+            return;
+        String registered = channelName + "\n" + channelDescription;
+        if (registered.equals(registeredChannels.get(channelId)))
+            return;
+        NotificationChannel channel = new NotificationChannel( channelId, channelName, NotificationManager.IMPORTANCE_HIGH );
+        channel.setDescription( channelDescription );
+        context.getSystemService( NotificationManager.class ).createNotificationChannel( channel );
+        registeredChannels.put(channelId, registered);
+    }
+
+    /* Stable per url, never collides with the group summary id. */
+    private static int articleId(String url) {
+        int id = ("article:" + url).hashCode();
+        return id == ARTICLES_GROUP.hashCode() ? id + 1 : id;
+    }
 }
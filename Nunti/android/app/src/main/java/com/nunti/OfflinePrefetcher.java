@@ -0,0 +1,207 @@
+package com.nunti;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Downloads article pages for offline reading with a fixed number of requests in flight.
+ * Urls are taken strictly in the given (priority) order, every page gets its own hard deadline and
+ * no page is started once the run deadline is too close to finish it. Each finished page goes to the
+ * listener right away, so whatever was done before the run is stopped is already handed over.
+ */
+public class OfflinePrefetcher {
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_ARTICLE_TIMEOUT = 10000;
+    private static final int MIN_ARTICLE_TIME = 2000; // don't start a page with less time left than this
+    private static final int MAX_PAGE_CHARS = 4 * 1024 * 1024;
+    private static final int MAX_REDIRECTS = 5;
+
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new FeedDownloader.NamedThreadFactory("OfflinePrefetcher-watchdog"));
+
+    private final int threads;
+    private final int articleTimeout;
+    private volatile boolean cancelled = false;
+
+    // claimed under the lock, so no more than `wanted` pages are ever downloaded or in flight
+    private final Object lock = new Object();
+    private int cursor = 0;
+    private int inFlight = 0;
+    private int succeeded = 0;
+    private int failed = 0;
+    private boolean deadlineReached = false;
+
+    public OfflinePrefetcher(int threads, int articleTimeout) {
+        this.threads = Math.max(1, threads);
+        this.articleTimeout = articleTimeout;
+    }
+
+    /**
+     * Downloads pages of urls (best first) until `wanted` succeeded, the urls run out, the run is
+     * cancelled or the deadline (epoch ms, 0 = none) is near. Blocks until all workers stopped.
+     */
+    public Summary prefetch(final List<String> urls, final int wanted, final long deadline, final Listener listener) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        int workers = Math.min(threads, Math.max(1, Math.min(wanted, urls.size())));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new FeedDownloader.NamedThreadFactory("OfflinePrefetcher"));
+        try {
+            for (int w = 0; w < workers; w++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        work(urls, wanted, deadline, listener);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // workers stop on their own, page deadlines bound how long this can take
+        }
+        synchronized (lock) {
+            return new Summary(succeeded, failed, urls.size() - cursor, deadlineReached, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /** Stops starting new pages, pages in flight finish or time out. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void work(List<String> urls, int wanted, long deadline, Listener listener) {
+        while (true) {
+            String url;
+            int timeout = articleTimeout;
+            synchronized (lock) {
+                if (cancelled || cursor >= urls.size() || succeeded + inFlight >= wanted)
+                    return;
+                if (deadline > 0) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left < MIN_ARTICLE_TIME) {
+                        deadlineReached = true;
+                        return;
+                    }
+                    timeout = (int) Math.min(timeout, left);
+                }
+                url = urls.get(cursor++);
+                inFlight++;
+            }
+
+            Page page;
+            long pageStart = System.currentTimeMillis();
+            try {
+                page = new Page(url, fetch(url, timeout), null, System.currentTimeMillis() - pageStart);
+            } catch (Exception e) {
+                page = new Page(url, null, "Cannot download article " + e, System.currentTimeMillis() - pageStart);
+            }
+            boolean accepted = page.error == null && listener.onPage(page);
+            synchronized (lock) {
+                inFlight--;
+                if (accepted)
+                    succeeded++;
+                else
+                    failed++;
+            }
+        }
+    }
+
+    private static String fetch(String address, int timeout) throws IOException {
+        URL url = new URL(address);
+        final long pageDeadline = System.currentTimeMillis() + timeout;
+        for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            int left = (int) Math.max(1, pageDeadline - System.currentTimeMillis());
+            connection.setInstanceFollowRedirects(false);
+            connection.setConnectTimeout(left);
+            connection.setReadTimeout(left);
+
+            // hard deadline for the whole page, a trickling response never trips the read timeout
+            ScheduledFuture<?> deadline = watchdog.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            }, left, TimeUnit.MILLISECONDS);
+            try {
+                int status = connection.getResponseCode();
+                String location = connection.getHeaderField("Location");
+                if (status >= 300 && status < 400 && location != null) {
+                    connection.disconnect();
+                    url = new URL(url, location);
+                    continue;
+                }
+                if (status != HttpURLConnection.HTTP_OK)
+                    throw new IOException("HTTP Error: " + status + " " + connection.getResponseMessage());
+                return read(connection.getInputStream(), connection.getContentType());
+            } finally {
+                deadline.cancel(false);
+            }
+        }
+        throw new IOException("Too many redirects.");
+    }
+
+    private static String read(InputStream stream, String contentType) throws IOException {
+        Reader reader = FeedCharset.open(stream, contentType);
+        try {
+            StringBuilder page = new StringBuilder(32 * 1024);
+            char[] buffer = new char[8 * 1024];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                if (page.length() + read > MAX_PAGE_CHARS)
+                    throw new IOException("Page is larger than " + MAX_PAGE_CHARS + " characters.");
+                page.append(buffer, 0, read);
+            }
+            return page.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    public static class Page {
+        public final String url;
+        public final String html;
+        public final String error;
+        public final long durationMs;
+
+        Page(String url, String html, String error, long durationMs) {
+            this.url = url;
+            this.html = html;
+            this.error = error;
+            this.durationMs = durationMs;
+        }
+    }
+
+    public static class Summary {
+        public final int succeeded;
+        public final int failed;
+        public final int skipped; // urls never started, because enough pages were done or time ran out
+        public final boolean deadlineReached;
+        public final long durationMs;
+
+        Summary(int succeeded, int failed, int skipped, boolean deadlineReached, long durationMs) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.skipped = skipped;
+            this.deadlineReached = deadlineReached;
+            this.durationMs = durationMs;
+        }
+    }
+
+    public interface Listener {
+        /** Called on a worker thread for every downloaded page, returns false if the page turned out unusable. */
+        boolean onPage(Page page);
+    }
+}
@@ -0,0 +1,205 @@
+package com.nunti;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Readable articles saved for offline reading, one file per article named by the SHA-1 of its url.
+ * The index file lists url, file and size in least recently used order; once the total size exceeds
+ * maxBytes, least recently used articles are deleted. Payloads are opaque (the JS side stores JSON).
+ */
+public class OfflineStore {
+    private static final int VERSION = 1;
+    private static final String INDEX = "index.bin";
+    private static final String EXTENSION = ".art";
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order = LRU
+    private long totalBytes = 0;
+    private boolean dirty = false;
+
+    public OfflineStore(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Reads the index and deletes article files it does not know about (e.g. after a crash mid-write). */
+    public synchronized void load() throws IOException {
+        entries.clear();
+        totalBytes = 0;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        File index = new File(directory, INDEX);
+        if (index.exists()) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+            try {
+                if (input.readInt() == VERSION) {
+                    int count = input.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String url = input.readUTF();
+                        Entry entry = new Entry(input.readUTF(), input.readLong());
+                        if (new File(directory, entry.file).length() == entry.size) {
+                            entries.put(url, entry);
+                            totalBytes += entry.size;
+                        }
+                    }
+                }
+            } finally {
+                input.close();
+            }
+        }
+
+        Set<String> known = new HashSet<>();
+        for (Entry entry : entries.values())
+            known.add(entry.file);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(EXTENSION) && !known.contains(file.getName()))
+                    file.delete();
+            }
+        }
+        dirty = false;
+    }
+
+    /** Returns the stored payload and marks it as most recently used, null if the url is not stored. */
+    public synchronized byte[] get(String url) throws IOException {
+        Entry entry = entries.get(url);
+        if (entry == null)
+            return null;
+        dirty = true;
+        File file = new File(directory, entry.file);
+        byte[] payload = new byte[(int) entry.size];
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            input.readFully(payload);
+        } finally {
+            input.close();
+        }
+        return payload;
+    }
+
+    public synchronized boolean contains(String url) {
+        return entries.containsKey(url);
+    }
+
+    /** Stores the payload and evicts least recently used articles until the store fits into maxBytes again. */
+    public synchronized void put(String url, byte[] payload) throws IOException {
+        String name = fileName(url);
+        File temp = new File(directory, name + ".tmp");
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            output.write(payload);
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(new File(directory, name)))
+            throw new IOException("Cannot write " + name);
+
+        Entry previous = entries.remove(url);
+        if (previous != null)
+            totalBytes -= previous.size;
+        entries.put(url, new Entry(name, payload.length));
+        totalBytes += payload.length;
+        evict();
+        dirty = true;
+        save();
+    }
+
+    public synchronized void clear() throws IOException {
+        for (Entry entry : entries.values())
+            new File(directory, entry.file).delete();
+        entries.clear();
+        totalBytes = 0;
+        dirty = true;
+        save();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized List<String> urls() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /** Writes the index if anything (incl. the LRU order) changed since the last load or save. */
+    public synchronized void save() throws IOException {
+        if (!dirty)
+            return;
+        File temp = new File(directory, INDEX + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(VERSION);
+            output.writeInt(entries.size());
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                output.writeUTF(item.getKey());
+                output.writeUTF(item.getValue().file);
+                output.writeLong(item.getValue().size);
+            }
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(new File(directory, INDEX)))
+            throw new IOException("Cannot replace " + INDEX);
+        dirty = false;
+    }
+
+    /* The newest article is always kept, even if it alone is over the budget. */
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            new File(directory, eldest.file).delete();
+            totalBytes -= eldest.size;
+            iterator.remove();
+        }
+    }
+
+    static String fileName(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + EXTENSION.length());
+            for (byte b : digest)
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return name.append(EXTENSION).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-1 is always available
+        }
+    }
+
+    private static class Entry {
+        final String file;
+        final long size;
+
+        Entry(String file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+}
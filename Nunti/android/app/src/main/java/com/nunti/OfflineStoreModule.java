@@ -0,0 +1,205 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class OfflineStoreModule extends ReactContextBaseJavaModule {
+    private static final long MAX_BYTES = 32 * 1024 * 1024;
+    private static final String TAG = "OfflineStoreModule";
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(); // store calls must not wait for a prefetch run
+    private static OfflineStore store = null;
+    private final Map<String, OfflinePrefetcher> activeRuns = new ConcurrentHashMap<>();
+
+    OfflineStoreModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "OfflineStoreModule";
+    }
+
+    static synchronized OfflineStore getStore(File filesDir) throws IOException {
+        if (store == null) {
+            OfflineStore opened = new OfflineStore(new File(filesDir, "offline"), MAX_BYTES);
+            opened.load();
+            store = opened;
+        }
+        return store;
+    }
+
+    /* Resolves with the stored article (as it was passed to put) or null. */
+    @ReactMethod
+    public void get(final String url, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final OfflineStore articles = getStore(getReactApplicationContext().getFilesDir());
+                    byte[] payload = articles.get(url);
+                    promise.resolve(payload != null ? new String(payload, StandardCharsets.UTF_8) : null);
+                    articles.save(); // new LRU order
+                } catch (Exception e) {
+                    promise.reject("OFFLINE_STORE_FAILED", "Cannot read offline article. " + e, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void has(final String url, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.resolve(getStore(getReactApplicationContext().getFilesDir()).contains(url));
+                } catch (Exception e) {
+                    promise.reject("OFFLINE_STORE_FAILED", "Cannot open offline store. " + e, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void put(final String url, final String article, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getStore(getReactApplicationContext().getFilesDir()).put(url, article.getBytes(StandardCharsets.UTF_8));
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    promise.reject("OFFLINE_STORE_FAILED", "Cannot save offline article. " + e, e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void clear(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getStore(getReactApplicationContext().getFilesDir()).clear();
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    promise.reject("OFFLINE_STORE_FAILED", "Cannot clear offline store. " + e, e);
+                }
+            }
+        });
+    }
+
+    /*
+     * Downloads pages of urls (best first) that are not stored yet until options.wanted articles are available,
+     * with options.threads requests in flight and options.articleTimeout ms per page. Stops starting pages close
+     * to options.deadline (epoch ms). Every page is extracted with options.allowList (HtmlPurifyList) and stored
+     * as soon as it is downloaded, so a run stopped halfway keeps what it finished.
+     * Resolves with {succeeded, failed, skipped, alreadyStored, deadlineReached, durationMs}.
+     */
+    @ReactMethod
+    public void prefetch(final ReadableArray urls, ReadableMap options, final Promise promise) {
+        final String runId = options.hasKey("runId") ? options.getString("runId") : "default";
+        final int wanted = options.hasKey("wanted") ? options.getInt("wanted") : urls.size();
+        final long deadline = options.hasKey("deadline") ? (long) options.getDouble("deadline") : 0;
+        final ReadableExtractor extractor = WebpageParserModule.toExtractor(options.getMap("allowList"));
+        final OfflinePrefetcher prefetcher = new OfflinePrefetcher(
+            options.hasKey("threads") ? options.getInt("threads") : OfflinePrefetcher.DEFAULT_THREADS,
+            options.hasKey("articleTimeout") ? options.getInt("articleTimeout") : OfflinePrefetcher.DEFAULT_ARTICLE_TIMEOUT);
+
+        activeRuns.put(runId, prefetcher);
+        prefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    OfflineStore articles = getStore(getReactApplicationContext().getFilesDir());
+                    List<String> pending = new ArrayList<>(urls.size());
+                    int alreadyStored = 0;
+                    for (int i = 0; i < urls.size(); i++) {
+                        if (articles.contains(urls.getString(i)))
+                            alreadyStored++;
+                        else
+                            pending.add(urls.getString(i));
+                    }
+
+                    OfflinePrefetcher.Summary summary = prefetcher.prefetch(pending, Math.max(0, wanted - alreadyStored), deadline,
+                        new OfflinePrefetcher.Listener() {
+                            @Override
+                            public boolean onPage(OfflinePrefetcher.Page page) {
+                                try {
+                                    ReadableExtractor.Article article = extractor.extract(page.html, page.url);
+                                    if (article == null)
+                                        return false;
+                                    articles.put(page.url, WebpageParserModule.toJson(article).getBytes(StandardCharsets.UTF_8));
+                                    return true;
+                                } catch (Exception e) {
+                                    Log.w(TAG, "Cannot save offline article " + page.url, e);
+                                    return false;
+                                }
+                            }
+                        });
+
+                    WritableMap result = Arguments.createMap();
+                    result.putInt("succeeded", summary.succeeded);
+                    result.putInt("failed", summary.failed);
+                    result.putInt("skipped", summary.skipped);
+                    result.putInt("alreadyStored", alreadyStored);
+                    result.putBoolean("deadlineReached", summary.deadlineReached);
+                    result.putDouble("durationMs", summary.durationMs);
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("PREFETCH_FAILED", "Offline prefetch failed. " + e, e);
+                } finally {
+                    activeRuns.remove(runId);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void cancelPrefetch(String runId) {
+        OfflinePrefetcher prefetcher = activeRuns.get(runId);
+        if (prefetcher != null)
+            prefetcher.cancel();
+    }
+
+    /* Resolves with {count, bytes, maxBytes}. */
+    @ReactMethod
+    public void getStats(final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    OfflineStore articles = getStore(getReactApplicationContext().getFilesDir());
+                    WritableMap result = Arguments.createMap();
+                    result.putInt("count", articles.size());
+                    result.putDouble("bytes", articles.getTotalBytes());
+                    result.putDouble("maxBytes", articles.getMaxBytes());
+                    promise.resolve(result);
+                } catch (Exception e) {
+                    promise.reject("OFFLINE_STORE_FAILED", "Cannot open offline store. " + e, e);
+                }
+            }
+        });
+    }
+}
@@ -34,6 +34,11 @@ import com.facebook.react.bridge.*;
 import com.facebook.react.modules.core.RCTNativeAppEventEmitter;
 import com.transistorsoft.tsbackgroundfetch.BackgroundFetch;
 import com.transistorsoft.tsbackgroundfetch.BackgroundFetchConfig;
+import com.transistorsoft.tsbackgroundfetch.BackgroundThreadPool;
+import com.transistorsoft.tsbackgroundfetch.MetricsRecorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RNBackgroundFetchModule extends ReactContextBaseJavaModule implements ActivityEventListener, LifecycleEventListener {
     public static final String TAG = "RNBackgroundFetch";
@@ -41,6 +46,10 @@ public class RNBackgroundFetchModule extends ReactContextBaseJavaModule implemen
     private static final String EVENT_FETCH = "fetch";
     private static final String JOB_SERVICE_CLASS = HeadlessTask.class.getName();
     private static final String FETCH_TASK_ID                       = "react-native-background-fetch";
+    private static final long RESUME_PAUSE_MS = 1500; // background work waits while the UI resumes
+
+    // spans started from JS by their JS side id
+    private final Map<Integer, MetricsRecorder.Span> spans = new ConcurrentHashMap<>();
 
     private boolean isForceReload = false;
     private boolean initialized = false;
@@ -110,10 +119,92 @@ public class RNBackgroundFetchModule extends ReactContextBaseJavaModule implemen
         success.invoke(adapter.status());
     }
 
+    /** result is one of BackgroundFetch.FETCH_RESULT_*, -1 if the task has none (timeouts). */
     @ReactMethod
-    public void finish(String taskId) {
+    public void finish(String taskId, int result) {
         BackgroundFetch adapter = getAdapter();
-        adapter.finish(taskId);
+        adapter.finish(taskId, result);
+    }
+
+    /**
+     * Success is called with {activeThreads, poolSize, maxThreads, queueLength, queueCapacity, completed, rejected,
+     * waitMs, runMs}, the times as {count, totalMs, maxMs, buckets: [{le, count}]} where le -1 is the open bucket.
+     */
+    @ReactMethod
+    public void getThreadPoolMetrics(Callback success) {
+        BackgroundThreadPool pool = BackgroundFetch.getThreadPool();
+        WritableMap metrics = new WritableNativeMap();
+        metrics.putInt("activeThreads", pool.getActiveCount());
+        metrics.putInt("poolSize", pool.getPoolSize());
+        metrics.putInt("maxThreads", pool.getMaximumPoolSize());
+        metrics.putInt("queueLength", pool.getQueue().size());
+        metrics.putInt("queueCapacity", pool.getQueueCapacity());
+        metrics.putDouble("completed", pool.getCompletedTaskCount());
+        metrics.putDouble("rejected", pool.getRejectedCount());
+        metrics.putMap("waitMs", toMap(pool.getWaitTimes()));
+        metrics.putMap("runMs", toMap(pool.getRunTimes()));
+        success.invoke(metrics);
+    }
+
+    /**
+     * Success is called with phase timings of the last headless tasks (oldest first):
+     * [{taskId, timeout, coldStart, prewarmed, contextReadyMs, jsTaskStartMs, finishMs, totalMs}],
+     * each phase in ms since the previous one, the first since the job started.
+     */
+    @ReactMethod
+    public void getHeadlessTimings(Callback success) {
+        WritableArray timings = new WritableNativeArray();
+        for (HeadlessTask.Timing timing : HeadlessTask.getTimings()) {
+            WritableMap map = new WritableNativeMap();
+            map.putString("taskId", timing.taskId);
+            map.putBoolean("timeout", timing.timeout);
+            map.putBoolean("coldStart", timing.coldStart);
+            map.putBoolean("prewarmed", timing.prewarmed);
+            map.putDouble("contextReadyMs", timing.contextReadyAt - timing.jobStartedAt);
+            map.putDouble("jsTaskStartMs", timing.jsTaskStartedAt - timing.contextReadyAt);
+            map.putDouble("finishMs", timing.finishedAt - timing.jsTaskStartedAt);
+            map.putDouble("totalMs", timing.finishedAt - timing.jobStartedAt);
+            timings.pushMap(map);
+        }
+        success.invoke(timings);
+    }
+
+    /**
+     * Success is called with the recorded spans, oldest first: [{name, detail, startedAt, durationMs}],
+     * startedAt in ms since epoch, detail null when the span has none.
+     */
+    @ReactMethod
+    public void getMetrics(final Callback success) {
+        final MetricsRecorder metrics = MetricsRecorder.getInstance(getReactApplicationContext());
+        BackgroundFetch.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                WritableArray entries = new WritableNativeArray();
+                for (MetricsRecorder.Entry entry : metrics.read()) {
+                    WritableMap map = new WritableNativeMap();
+                    map.putString("name", entry.name);
+                    map.putString("detail", entry.detail);
+                    map.putDouble("startedAt", entry.startedAt);
+                    map.putDouble("durationMs", entry.durationMs);
+                    entries.pushMap(map);
+                }
+                success.invoke(entries);
+            }
+        });
+    }
+
+    /** Starts a span for JS work, id is chosen by JS and passed to endSpan. */
+    @ReactMethod
+    public void beginSpan(int id, String name, String detail) {
+        spans.put(id, MetricsRecorder.getInstance(getReactApplicationContext()).begin(name, detail));
+    }
+
+    @ReactMethod
+    public void endSpan(int id) {
+        MetricsRecorder.Span span = spans.remove(id);
+        if (span != null) {
+            span.end();
+        }
     }
 
     @ReactMethod
@@ -128,6 +219,7 @@ public class RNBackgroundFetchModule extends ReactContextBaseJavaModule implemen
 
     @Override
     public void onHostResume() {
+        BackgroundFetch.getThreadPool().pauseFor(RESUME_PAUSE_MS);
         if (!initialized) {
             initializeBackgroundFetch();
         }
@@ -204,6 +296,22 @@ public class RNBackgroundFetchModule extends ReactContextBaseJavaModule implemen
         initialized = true;
     }
 
+    private static WritableMap toMap(BackgroundThreadPool.Histogram histogram) {
+        WritableMap map = new WritableNativeMap();
+        map.putDouble("count", histogram.getCount());
+        map.putDouble("totalMs", histogram.getTotalMillis());
+        map.putDouble("maxMs", histogram.getMaxMillis());
+        WritableArray buckets = new WritableNativeArray();
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            WritableMap bucket = new WritableNativeMap();
+            bucket.putDouble("le", BackgroundThreadPool.Histogram.getBucketBound(i));
+            bucket.putDouble("count", histogram.getCount(i));
+            buckets.pushMap(bucket);
+        }
+        map.putArray("buckets", buckets);
+        return map;
+    }
+
     private BackgroundFetch getAdapter() {
         return BackgroundFetch.getInstance(getReactApplicationContext());
     }
@@ -0,0 +1,450 @@
+package com.nunti;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.safety.Cleaner;
+import org.jsoup.safety.Safelist;
+import org.jsoup.select.Elements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Reader mode extraction, replaces sanitize-html + linkedom + Mozilla Readability in WebpageParser.
+ *
+ * The page is first cleaned with the HtmlPurifyList allow-list (disallowed tags are dropped, their text kept,
+ * links made absolute), then scored like Readability.js: paragraphs give points to their ancestors,
+ * the best ancestor (after link density) is the article, good siblings are appended and the result
+ * is cleaned of forms, tables and lists which look like navigation. If too little text survives, the
+ * pass is repeated with the heuristics that threw content away turned off.
+ */
+public class ReadableExtractor {
+    private static final int CHAR_THRESHOLD = 500;
+    private static final int SCORE_MIN_LENGTH = 25;
+
+    private static final Pattern UNLIKELY_CANDIDATES = Pattern.compile("-ad-|ai2html|banner|breadcrumbs|combx|comment|community|cover-wrap|disqus|extra|footer|gdpr|header|legends|menu|related|remark|replies|rss|shoutbox|sidebar|skyscraper|social|sponsor|supplemental|ad-break|agegate|pagination|pager|popup|yom-remote", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MAYBE_CANDIDATE = Pattern.compile("and|article|body|column|content|main|shadow", Pattern.CASE_INSENSITIVE);
+    private static final Pattern POSITIVE = Pattern.compile("article|body|content|entry|hentry|h-entry|main|page|pagination|post|text|blog|story", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NEGATIVE = Pattern.compile("-ad-|hidden|^hid$| hid$| hid |^hid |banner|combx|comment|com-|contact|foot|footer|footnote|gdpr|masthead|media|meta|outbrain|promo|related|scroll|share|shoutbox|sidebar|skyscraper|sponsor|shopping|tags|tool|widget", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SHARE = Pattern.compile("(\\b|_)(share|sharedaddy)(\\b|_)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BYLINE = Pattern.compile("byline|author|dateline|writtenby|p-author", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SENTENCE_END = Pattern.compile("\\.( |$)");
+    private static final Pattern TITLE_SEPARATOR = Pattern.compile(" [|\\-\\u2013\\u2014\\\\/>\\u00BB] ");
+
+    private static final Set<String> UNLIKELY_ROLES = set("menu", "menubar", "complementary", "navigation", "alert", "alertdialog", "dialog");
+    private static final Set<String> TAGS_TO_SCORE = set("section", "h2", "h3", "h4", "h5", "h6", "p", "td", "pre");
+    private static final Set<String> BLOCK_ELEMENTS = set("blockquote", "dl", "div", "img", "ol", "p", "pre", "table", "ul");
+    private static final Set<String> KEEP_AS_IS = set("div", "article", "section", "p");
+    private static final Set<String> DOCUMENT_TAGS = set("html", "head", "body"); // the cleaner always produces these itself
+    private static final Set<String> PRESENTATIONAL_ATTRIBUTES = set("align", "background", "bgcolor", "border", "cellpadding", "cellspacing", "frame", "hspace", "rules", "style", "valign", "vspace");
+
+    private final Safelist safelist;
+
+    /** tags and attributes are the HtmlPurifyList allow-list, attributes apply to every tag. */
+    public ReadableExtractor(Collection<String> tags, Collection<String> attributes) {
+        safelist = new Safelist();
+        for (String tag : tags) {
+            if (!DOCUMENT_TAGS.contains(tag))
+                safelist.addTags(tag);
+        }
+        safelist.addAttributes(":all", attributes.toArray(new String[0]));
+        // url schemes of sanitize-html, relative urls are resolved against the page url
+        if (attributes.contains("href"))
+            safelist.addAttributes("a", "href").addProtocols("a", "href", "http", "https", "ftp", "mailto", "tel");
+        if (attributes.contains("src"))
+            safelist.addAttributes("img", "src").addProtocols("img", "src", "http", "https", "ftp");
+    }
+
+    /** Returns the readable article, null if nothing readable was found. */
+    public Article extract(String html, String url) {
+        Document original = Jsoup.parse(html, url);
+        Map<String, String> meta = metadata(original);
+
+        Article best = null;
+        boolean[][] passes = { {true, true}, {false, true}, {false, false} }; // {stripUnlikely, cleanConditionally}
+        for (boolean[] flags : passes) {
+            Document page = new Cleaner(safelist).clean(original);
+            page.outputSettings().prettyPrint(false);
+            Article article = grab(page.body(), flags[0], flags[1]);
+            if (article != null && (best == null || article.length > best.length))
+                best = article;
+            if (best != null && best.length >= CHAR_THRESHOLD)
+                break;
+        }
+        if (best == null || best.length == 0)
+            return null;
+
+        best.title = first(meta, "dc:title", "dcterm:title", "og:title", "weibo:article:title", "weibo:webpage:title", "title", "twitter:title");
+        if (best.title == null)
+            best.title = documentTitle(original);
+        String byline = first(meta, "dc:creator", "dcterm:creator", "author", "article:author");
+        if (byline != null)
+            best.byline = byline;
+        String excerpt = first(meta, "dc:description", "dcterm:description", "og:description", "weibo:article:description", "weibo:webpage:description", "description", "twitter:description");
+        if (excerpt != null)
+            best.excerpt = excerpt;
+        best.siteName = first(meta, "og:site_name");
+        Element root = original.children().size() > 0 ? original.child(0) : null;
+        best.lang = root != null && root.hasAttr("lang") ? root.attr("lang") : null;
+        if (best.dir == null && root != null && root.hasAttr("dir"))
+            best.dir = root.attr("dir");
+        return best;
+    }
+
+    private Article grab(Element body, boolean stripUnlikely, boolean cleanConditionally) {
+        Map<Element, Double> scores = new IdentityHashMap<>();
+        List<Element> toScore = new ArrayList<>();
+        String[] byline = { null };
+        collect(body, stripUnlikely, toScore, byline);
+
+        // paragraphs give their score to up to 5 ancestors, less the further up
+        List<Element> candidates = new ArrayList<>();
+        for (Element element : toScore) {
+            if (element.parent() == null)
+                continue;
+            String text = element.text();
+            if (text.length() < SCORE_MIN_LENGTH)
+                continue;
+            double score = 1 + count(text, ',') + Math.min(text.length() / 100, 3);
+            Element ancestor = element.parent();
+            for (int level = 0; ancestor != null && level < 5; level++, ancestor = ancestor.parent()) {
+                if (ancestor.parent() == null)
+                    break;
+                if (!scores.containsKey(ancestor)) {
+                    scores.put(ancestor, initialScore(ancestor));
+                    candidates.add(ancestor);
+                }
+                double divider = level == 0 ? 1 : level == 1 ? 2 : level * 3;
+                scores.put(ancestor, scores.get(ancestor) + score / divider);
+            }
+        }
+
+        Element top = null;
+        for (Element candidate : candidates) {
+            double score = scores.get(candidate) * (1 - linkDensity(candidate));
+            scores.put(candidate, score);
+            if (top == null || score > scores.get(top))
+                top = candidate;
+        }
+
+        Element article = new Element("div");
+        if (top == null || top == body) {
+            for (Node child : new ArrayList<>(body.childNodes()))
+                article.appendChild(child);
+            top = article;
+        } else {
+            while (top.parent() != body && top.parent() != null && top.parent().children().size() == 1)
+                top = top.parent();
+            double topScore = scores.containsKey(top) ? scores.get(top) : initialScore(top);
+            double threshold = Math.max(10, topScore * 0.2);
+            Element parent = top.parent();
+            for (Element sibling : new ArrayList<>(parent != null ? parent.children() : new Elements(top))) {
+                boolean append = sibling == top;
+                if (!append) {
+                    double bonus = !top.className().isEmpty() && top.className().equals(sibling.className()) ? topScore * 0.2 : 0;
+                    if (scores.containsKey(sibling) && scores.get(sibling) + bonus >= threshold) {
+                        append = true;
+                    } else if (sibling.tagName().equals("p")) {
+                        double density = linkDensity(sibling);
+                        String text = sibling.text();
+                        append = (text.length() > 80 && density < 0.25)
+                            || (text.length() > 0 && text.length() <= 80 && density == 0 && SENTENCE_END.matcher(text).find());
+                    }
+                }
+                if (append) {
+                    if (!KEEP_AS_IS.contains(sibling.tagName()))
+                        sibling.tagName("div");
+                    article.appendChild(sibling);
+                }
+            }
+        }
+
+        prepare(article, cleanConditionally);
+        body.empty(); // page belongs to the document, so it is serialized with its output settings
+        Element page = body.appendElement("div").attr("id", "readability-page-1").addClass("page");
+        for (Node child : new ArrayList<>(article.childNodes()))
+            page.appendChild(child);
+
+        Article result = new Article();
+        result.content = page.outerHtml();
+        result.textContent = page.wholeText();
+        result.length = result.textContent.length();
+        result.byline = byline[0];
+        result.dir = direction(top);
+        Element firstParagraph = page.selectFirst("p");
+        result.excerpt = firstParagraph != null ? firstParagraph.text().trim() : "";
+        return result;
+    }
+
+    /* Depth-first walk which drops unlikely nodes and bylines and turns divs without block children into paragraphs. */
+    private static void collect(Element element, boolean stripUnlikely, List<Element> toScore, String[] byline) {
+        for (Element child : new ArrayList<>(element.children())) {
+            String match = child.className() + " " + child.id();
+            String tag = child.tagName();
+
+            if (byline[0] == null && isByline(child, match)) {
+                byline[0] = child.text().trim();
+                child.remove();
+                continue;
+            }
+            if (stripUnlikely && !tag.equals("body") && !tag.equals("a")) {
+                if ((UNLIKELY_CANDIDATES.matcher(match).find() && !MAYBE_CANDIDATE.matcher(match).find())
+                        || UNLIKELY_ROLES.contains(child.attr("role"))) {
+                    child.remove();
+                    continue;
+                }
+            }
+            if (TAGS_TO_SCORE.contains(tag))
+                toScore.add(child);
+            if (tag.equals("div") && !hasBlockChild(child)) {
+                child.tagName("p");
+                toScore.add(child);
+            }
+            collect(child, stripUnlikely, toScore, byline);
+        }
+    }
+
+    private static boolean isByline(Element element, String match) {
+        boolean looksLikeByline = element.attr("rel").equals("author") || element.attr("itemprop").contains("author") || BYLINE.matcher(match).find();
+        if (!looksLikeByline)
+            return false;
+        int length = element.text().trim().length();
+        return length > 0 && length < 100;
+    }
+
+    private static boolean hasBlockChild(Element element) {
+        for (Element child : element.children()) {
+            if (BLOCK_ELEMENTS.contains(child.tagName()) || hasBlockChild(child))
+                return true;
+        }
+        return false;
+    }
+
+    private static double initialScore(Element element) {
+        double score = classWeight(element);
+        switch (element.tagName()) {
+            case "div":
+                return score + 5;
+            case "pre": case "td": case "blockquote":
+                return score + 3;
+            case "address": case "ol": case "ul": case "dl": case "dd": case "dt": case "li": case "form":
+                return score - 3;
+            case "h1": case "h2": case "h3": case "h4": case "h5": case "h6": case "th":
+                return score - 5;
+            default:
+                return score;
+        }
+    }
+
+    private static int classWeight(Element element) {
+        int weight = 0;
+        for (String value : new String[] { element.className(), element.id() }) {
+            if (value.isEmpty())
+                continue;
+            if (NEGATIVE.matcher(value).find())
+                weight -= 25;
+            if (POSITIVE.matcher(value).find())
+                weight += 25;
+        }
+        return weight;
+    }
+
+    /* Share of the text which is inside links, in-page links count less. */
+    private static double linkDensity(Element element) {
+        int length = element.text().length();
+        if (length == 0)
+            return 0;
+        double linkLength = 0;
+        for (Element link : element.getElementsByTag("a"))
+            linkLength += link.text().length() * (link.attr("href").startsWith("#") ? 0.3 : 1);
+        return linkLength / length;
+    }
+
+    /* Readability._prepArticle, without the parts dealing with scripts and styles the allow-list already removed. */
+    private static void prepare(Element article, boolean cleanConditionally) {
+        for (Element element : article.getAllElements()) {
+            for (String attribute : PRESENTATIONAL_ATTRIBUTES)
+                element.removeAttr(attribute);
+        }
+        if (cleanConditionally) {
+            for (String tag : new String[] { "form", "fieldset", "table", "ul", "div" })
+                cleanConditionally(article, tag);
+        }
+        for (Element element : article.getAllElements()) {
+            if (element != article && element.parent() != null && SHARE.matcher(element.className() + " " + element.id()).find()
+                    && element.text().length() < CHAR_THRESHOLD)
+                element.remove();
+        }
+        for (String tag : new String[] { "object", "embed", "footer", "link", "aside", "button", "input", "select", "textarea" })
+            article.getElementsByTag(tag).remove();
+        for (Element heading : article.getElementsByTag("h1"))
+            heading.tagName("h2");
+        for (Element paragraph : article.getElementsByTag("p")) {
+            if (paragraph.text().trim().isEmpty() && paragraph.select("img, embed, object, iframe, picture").isEmpty())
+                paragraph.remove();
+        }
+        for (Element br : article.getElementsByTag("br")) {
+            Element next = br.nextElementSibling();
+            if (next != null && next.tagName().equals("p") && isWhitespaceBetween(br, next))
+                br.remove();
+        }
+    }
+
+    private static boolean isWhitespaceBetween(Node from, Node to) {
+        for (Node node = from.nextSibling(); node != null && node != to; node = node.nextSibling()) {
+            if (!(node instanceof TextNode) || !((TextNode) node).isBlank())
+                return false;
+        }
+        return true;
+    }
+
+    /* Removes elements of a tag which look like navigation, ads or widgets rather than content. */
+    private static void cleanConditionally(Element article, String tag) {
+        Elements elements = article.getElementsByTag(tag);
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            Element element = elements.get(i);
+            if (element.parent() == null || (tag.equals("table") && isDataTable(element)))
+                continue;
+            boolean isList = tag.equals("ul") || tag.equals("ol");
+            int weight = classWeight(element);
+            if (weight < 0) {
+                element.remove();
+                continue;
+            }
+            String text = element.text();
+            if (count(text, ',') >= 10)
+                continue;
+            int paragraphs = element.getElementsByTag("p").size();
+            int images = element.getElementsByTag("img").size();
+            int listItems = element.getElementsByTag("li").size() - 100;
+            int inputs = element.getElementsByTag("input").size();
+            int embeds = element.select("object, embed, iframe").size();
+            double density = linkDensity(element);
+            int length = text.length();
+            boolean inFigure = hasAncestor(element, "figure");
+
+            boolean remove = (images > 1 && (double) paragraphs / images < 0.5 && !inFigure)
+                || (!isList && listItems > paragraphs)
+                || (inputs > paragraphs / 3)
+                || (!isList && length < SCORE_MIN_LENGTH && (images == 0 || images > 2) && !inFigure)
+                || (!isList && weight < 25 && density > 0.2)
+                || (weight >= 25 && density > 0.5)
+                || (embeds == 1 && length < 75) || embeds > 1;
+            if (remove)
+                element.remove();
+        }
+    }
+
+    private static boolean isDataTable(Element table) {
+        if (table.attr("role").equals("presentation"))
+            return false;
+        if (!table.getElementsByTag("caption").isEmpty() || !table.select("th, thead, tfoot, colgroup, col").isEmpty())
+            return true;
+        if (table.getElementsByTag("table").size() > 1)
+            return false; // tables with nested tables are layout
+        Elements rows = table.getElementsByTag("tr");
+        int columns = rows.isEmpty() ? 0 : rows.first().children().size();
+        return rows.size() >= 10 || columns > 4 || rows.size() * columns > 10;
+    }
+
+    private static boolean hasAncestor(Element element, String tag) {
+        for (Element parent = element.parent(); parent != null; parent = parent.parent()) {
+            if (parent.tagName().equals(tag))
+                return true;
+        }
+        return false;
+    }
+
+    private static String direction(Element top) {
+        for (Element element = top; element != null; element = element.parent()) {
+            if (element.hasAttr("dir"))
+                return element.attr("dir");
+        }
+        return null;
+    }
+
+    /* <meta property|name=... content=...>, keys lowercased with whitespace removed. */
+    private static Map<String, String> metadata(Document document) {
+        Map<String, String> values = new HashMap<>();
+        for (Element meta : document.getElementsByTag("meta")) {
+            String content = meta.attr("content").trim();
+            if (content.isEmpty())
+                continue;
+            for (String key : (meta.attr("property") + " " + meta.attr("name")).toLowerCase(Locale.ROOT).split("\\s+")) {
+                if (!key.isEmpty() && !values.containsKey(key))
+                    values.put(key, content);
+            }
+        }
+        return values;
+    }
+
+    private static String first(Map<String, String> values, String... keys) {
+        for (String key : keys) {
+            if (values.containsKey(key))
+                return values.get(key);
+        }
+        return null;
+    }
+
+    /* Readability._getArticleTitle: "Article | Site" becomes "Article", unless too few words would be left. */
+    private static String documentTitle(Document document) {
+        String title = document.title().trim();
+        Matcher separator = TITLE_SEPARATOR.matcher(title);
+        int firstEnd = -1;
+        int lastStart = -1;
+        while (separator.find()) {
+            if (firstEnd < 0)
+                firstEnd = separator.end();
+            lastStart = separator.start();
+        }
+        if (lastStart < 0)
+            return title;
+        String candidate = title.substring(0, lastStart).trim();
+        if (words(candidate) < 3)
+            candidate = title.substring(firstEnd).trim();
+        return words(candidate) > 4 ? candidate : title;
+    }
+
+    private static int words(String text) {
+        return text.isEmpty() ? 0 : text.split("\\s+").length;
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c)
+                count++;
+        }
+        return count;
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    /* Same fields as ReadabilityArticle in WebpageParser.ts. */
+    public static class Article {
+        public String title = "";
+        public String content = "";
+        public String textContent = "";
+        public int length = 0;
+        public String excerpt = "";
+        public String byline = null;
+        public String dir = null;
+        public String siteName = null;
+        public String lang = null;
+    }
+}
@@ -0,0 +1,92 @@
+package com.nunti;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.Arguments;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class WebpageParserModule extends ReactContextBaseJavaModule {
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    WebpageParserModule(ReactApplicationContext context) {
+        super(context);
+    }
+
+    @Override
+    public String getName() {
+        return "WebpageParserModule";
+    }
+
+    /* allowList is HtmlPurifyList ({tags, attributes}), resolves with a ReadabilityArticle. */
+    @ReactMethod
+    public void parse(final String html, final String url, final ReadableMap allowList, final Promise promise) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ReadableExtractor.Article article = toExtractor(allowList).extract(html, url);
+                    if (article == null) {
+                        promise.reject("EXTRACT_FAILED", "Readability engine extracted nothing.");
+                        return;
+                    }
+                    promise.resolve(toWritableMap(article));
+                } catch (Exception e) {
+                    promise.reject("EXTRACT_FAILED", "Cannot extract article. " + e, e);
+                }
+            }
+        });
+    }
+
+    static ReadableExtractor toExtractor(ReadableMap allowList) {
+        return new ReadableExtractor(toList(allowList.getArray("tags")), toList(allowList.getArray("attributes")));
+    }
+
+    private static List<String> toList(ReadableArray array) {
+        List<String> list = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++)
+            list.add(array.getString(i));
+        return list;
+    }
+
+    private static WritableMap toWritableMap(ReadableExtractor.Article article) {
+        WritableMap map = Arguments.createMap();
+        map.putString("title", article.title);
+        map.putString("content", article.content);
+        map.putString("textContent", article.textContent);
+        map.putInt("length", article.length);
+        map.putString("excerpt", article.excerpt);
+        map.putString("byline", article.byline);
+        map.putString("dir", article.dir);
+        map.putString("siteName", article.siteName);
+        map.putString("lang", article.lang);
+        return map;
+    }
+
+    /* Same shape as toWritableMap, for the offline store which keeps articles as JSON. */
+    static String toJson(ReadableExtractor.Article article) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("title", article.title);
+        json.put("content", article.content);
+        json.put("textContent", article.textContent);
+        json.put("length", article.length);
+        json.put("excerpt", article.excerpt);
+        json.put("byline", article.byline != null ? article.byline : JSONObject.NULL);
+        json.put("dir", article.dir != null ? article.dir : JSONObject.NULL);
+        json.put("siteName", article.siteName != null ? article.siteName : JSONObject.NULL);
+        json.put("lang", article.lang != null ? article.lang : JSONObject.NULL);
+        return json.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the app's live activities (created, not yet destroyed) from lifecycle callbacks, so
+ * BackgroundFetch can tell whether events go to the running app or to a headless task without
+ * asking the ActivityManager. Register it once from Application.onCreate with {@link #install}.
+ * On a configuration change the old activity is destroyed before the new one is created, it is
+ * counted as live until then.
+ */
+public class ActivityTracker implements Application.ActivityLifecycleCallbacks {
+    private static volatile ActivityTracker sInstance = null;
+
+    private final AtomicInteger mLiveActivities = new AtomicInteger(0);
+    // destroyed for a configuration change and still counted live, until the recreated activity takes the place
+    private final AtomicInteger mRecreating = new AtomicInteger(0);
+
+    public static synchronized void install(Application application) {
+        if (sInstance == null) {
+            sInstance = new ActivityTracker();
+            application.registerActivityLifecycleCallbacks(sInstance);
+        }
+    }
+
+    /** Null until installed. */
+    static ActivityTracker getInstance() {
+        return sInstance;
+    }
+
+    boolean hasLiveActivity() {
+        return mLiveActivities.get() > 0;
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        int recreating;
+        while ((recreating = mRecreating.get()) > 0) {
+            if (mRecreating.compareAndSet(recreating, recreating - 1)) {
+                return; // counted since before the old one was destroyed
+            }
+        }
+        mLiveActivities.incrementAndGet();
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        onActivityDestroyed(activity != null && activity.isChangingConfigurations());
+    }
+
+    void onActivityDestroyed(boolean changingConfigurations) {
+        if (changingConfigurations) {
+            mRecreating.incrementAndGet();
+        } else {
+            mLiveActivities.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
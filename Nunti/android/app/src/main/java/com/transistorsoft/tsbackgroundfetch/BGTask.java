@@ -34,6 +34,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.PersistableBundle;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.json.JSONException;
@@ -42,63 +43,77 @@ import org.json.JSONObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class BGTask {
     static int MAX_TIME = 60000;
 
-    private static final List<BGTask> mTasks = new ArrayList<>();
+    /**
+     * SCHEDULED: the job fired and the task is registered, RUNNING: the fetch event was delivered,
+     * TIMED_OUT: the timeout event was delivered, the job is still held until finish,
+     * FINISHED: the job was released. Every transition happens once, whichever thread gets there first.
+     */
+    public enum State { SCHEDULED, RUNNING, TIMED_OUT, FINISHED }
 
-    static BGTask getTask(String taskId) {
-        synchronized (mTasks) {
-            for (BGTask task : mTasks) {
-                if (task.hasTaskId(taskId)) return task;
-            }
-        }
-        return null;
-    }
+    // live tasks by lowercased task id, task ids are matched case-insensitively
+    private static final Map<String, BGTask> mTasks = new ConcurrentHashMap<>();
 
-    static void addTask(BGTask task) {
-        synchronized (mTasks) {
-            mTasks.add(task);
-        }
+    static BGTask getTask(String taskId) {
+        return (taskId != null) ? mTasks.get(key(taskId)) : null;
     }
 
-    static void removeTask(String taskId) {
-        synchronized (mTasks) {
-            BGTask found = null;
-            for (BGTask task : mTasks) {
-                if (task.hasTaskId(taskId)) {
-                    found = task;
-                    break;
-                }
+    /**
+     * Registers the task unless a live task with the same id exists, returns false for such a duplicate.
+     * A timed out task that was never finished does not block its successor, it is finished instead.
+     */
+    static boolean addTask(BGTask task) {
+        String key = key(task.getTaskId());
+        while (true) {
+            BGTask existing = mTasks.putIfAbsent(key, task);
+            if (existing == null) {
+                return true;
+            }
+            if (existing.getState() == State.FINISHED) {
+                mTasks.remove(key, existing);
+                continue;
+            }
+            if (existing.getState() != State.TIMED_OUT) {
+                return false;
             }
-            if (found != null) {
-                mTasks.remove(found);
+            if (mTasks.replace(key, existing, task)) {
+                existing.finish();
+                return true;
             }
         }
     }
 
     static void clear() {
-        synchronized (mTasks) {
-            mTasks.clear();
-        }
+        mTasks.clear();
+    }
+
+    private static String key(String taskId) {
+        return (taskId != null) ? taskId.toLowerCase(Locale.ROOT) : "";
     }
 
-    private FetchJobService.CompletionHandler mCompletionHandler;
+    private volatile FetchJobService.CompletionHandler mCompletionHandler;
     private String mTaskId;
     private int mJobId;
     private Runnable mTimeoutTask;
-    private boolean mTimedout = false;
+    private final AtomicReference<State> mState = new AtomicReference<>(State.SCHEDULED);
+    private volatile boolean mTimedout = false;
+    private volatile boolean mHandledNatively = false;
+    private final long mStartedAt = SystemClock.elapsedRealtime();
+    private final MetricsRecorder.Span mJobSpan;
 
     BGTask(final Context context, String taskId, FetchJobService.CompletionHandler handler, int jobId) {
         mTaskId = taskId;
         mCompletionHandler = handler;
         mJobId = jobId;
+        mJobSpan = MetricsRecorder.getInstance(context).begin(MetricsRecorder.JOB, taskId, mStartedAt);
 
         mTimeoutTask = new Runnable() {
             @Override public void run() {
@@ -108,6 +123,15 @@ public class BGTask {
         BackgroundFetch.getUiHandler().postDelayed(mTimeoutTask, MAX_TIME);
     }
 
+    /** SystemClock.elapsedRealtime() when the job fired. */
+    public long getStartedAt() {
+        return mStartedAt;
+    }
+
+    public State getState() {
+        return mState.get();
+    }
+
     public boolean getTimedOut() {
         return mTimedout;
     }
@@ -120,19 +144,36 @@ public class BGTask {
         return ((mTaskId != null) && mTaskId.equalsIgnoreCase(taskId));
     }
 
+    void setHandledNatively(boolean handledNatively) {
+        mHandledNatively = handledNatively;
+    }
+
     void setCompletionHandler(FetchJobService.CompletionHandler handler) {
         mCompletionHandler = handler;
     }
 
-    void finish() {
-        if (mCompletionHandler != null) {
-            mCompletionHandler.finish();
+    /** SCHEDULED -> RUNNING, false if the task was already started, timed out or finished. */
+    boolean start() {
+        return mState.compareAndSet(State.SCHEDULED, State.RUNNING);
+    }
+
+    /** Releases the job exactly once, true for that call, later calls do nothing and return false. */
+    boolean finish() {
+        if (mState.getAndSet(State.FINISHED) == State.FINISHED) {
+            return false;
         }
         if (mTimeoutTask != null) {
             BackgroundFetch.getUiHandler().removeCallbacks(mTimeoutTask);
         }
+        mTasks.remove(key(mTaskId), this);
+        mJobSpan.end();
+
+        FetchJobService.CompletionHandler handler = mCompletionHandler;
         mCompletionHandler = null;
-        removeTask(mTaskId);
+        if (handler != null) {
+            handler.finish();
+        }
+        return true;
     }
 
     static void reschedule(Context context, BackgroundFetchConfig existing, BackgroundFetchConfig config) {
@@ -148,7 +189,7 @@ public class BGTask {
     static void schedule(Context context, BackgroundFetchConfig config) {
         Log.d(BackgroundFetch.TAG, config.toString());
 
-        long interval = (config.isFetchTask()) ? (TimeUnit.MINUTES.toMillis(config.getMinimumFetchInterval())) : config.getDelay();
+        long interval = IntervalStore.getInstance(context).getInterval(config);
 
         if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && !config.getForceAlarmManager()) {
             // API 21+ uses new JobScheduler API
@@ -204,12 +245,21 @@ public class BGTask {
     }
 
     void onTimeout(Context context) {
+        if (!mState.compareAndSet(State.RUNNING, State.TIMED_OUT) && !mState.compareAndSet(State.SCHEDULED, State.TIMED_OUT)) {
+            return; // already timed out or finished
+        }
         mTimedout = true;
         Log.d(BackgroundFetch.TAG, "[BGTask] timeout: " + mTaskId);
+        MetricsRecorder.getInstance(context).mark(MetricsRecorder.JOB_TIMEOUT, mTaskId);
 
         BackgroundFetch adapter = BackgroundFetch.getInstance(context);
 
-        if (adapter.isMainActivityActive()) {
+        BackgroundFetch.NativeHandler nativeHandler = BackgroundFetch.getNativeHandler();
+        if (mHandledNatively && nativeHandler != null) {
+            // no JS runtime behind this task, a headless timeout event would start one just to finish
+            nativeHandler.onTimeout(context, mTaskId);
+            adapter.finish(mTaskId);
+        } else if (adapter.isMainActivityActive()) {
             BackgroundFetch.Callback callback = adapter.getFetchCallback();
             if (callback != null) {
                 callback.onTimeout(mTaskId);
@@ -294,6 +344,7 @@ public class BGTask {
         Map<String, Object> map = new HashMap<>();
         map.put("taskId", mTaskId);
         map.put("timeout", mTimedout);
+        map.put("state", getState().name());
         return map;
     }
 
@@ -302,6 +353,7 @@ public class BGTask {
         try {
             json.put("taskId", mTaskId);
             json.put("timeout", mTimedout);
+            json.put("state", getState().name());
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -37,11 +37,10 @@ import android.os.Looper;
 
 import android.util.Log;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
 
 /**
  * Created by chris on 2018-01-11.
@@ -61,12 +60,45 @@ public class BackgroundFetch {
 
     public static final int STATUS_AVAILABLE = 2;
 
+    /** Results for #finish(taskId, result), same values as the iOS UIBackgroundFetchResult. */
+    public static final int FETCH_RESULT_NEW_DATA = 0;
+    public static final int FETCH_RESULT_NO_DATA = 1;
+    public static final int FETCH_RESULT_FAILED = 2;
+
     private static BackgroundFetch mInstance = null;
 
-    private static ExecutorService sThreadPool;
+    private static volatile BackgroundThreadPool sThreadPool;
 
     private static Handler uiHandler;
 
+    private static volatile Prewarmer sPrewarmer;
+
+    /**
+     * Optional: called on the UI thread as soon as a job starts, before its config is looked up,
+     * so the app can start expensive setup (e.g. the JS runtime of a headless task) early.
+     */
+    public static void setPrewarmer(Prewarmer prewarmer) {
+        sPrewarmer = prewarmer;
+    }
+
+    static Prewarmer getPrewarmer() {
+        return sPrewarmer;
+    }
+
+    private static volatile NativeHandler sNativeHandler;
+
+    /**
+     * Optional: offered every event that would start a headless task, before the task is started.
+     * A handler that takes the event does the work without JS and calls #finish(taskId) itself.
+     */
+    public static void setNativeHandler(NativeHandler handler) {
+        sNativeHandler = handler;
+    }
+
+    static NativeHandler getNativeHandler() {
+        return sNativeHandler;
+    }
+
     @SuppressWarnings({"WeakerAccess"})
     public static Handler getUiHandler() {
         if (uiHandler == null) {
@@ -76,9 +108,13 @@ public class BackgroundFetch {
     }
 
     @SuppressWarnings({"WeakerAccess"})
-    public static ExecutorService getThreadPool() {
+    public static BackgroundThreadPool getThreadPool() {
         if (sThreadPool == null) {
-            sThreadPool = Executors.newCachedThreadPool();
+            synchronized (BackgroundFetch.class) {
+                if (sThreadPool == null) {
+                    sThreadPool = new BackgroundThreadPool();
+                }
+            }
         }
         return sThreadPool;
     }
@@ -99,7 +135,8 @@ public class BackgroundFetch {
     private Context mContext;
     private BackgroundFetch.Callback mFetchCallback;
 
-    private final Map<String, BackgroundFetchConfig> mConfig = new HashMap<>();
+    // no lock around it, config persistence (SharedPreferences) happens after the map is updated
+    private final Map<String, BackgroundFetchConfig> mConfig = new ConcurrentHashMap<>();
 
     private BackgroundFetch(Context context) {
         mContext = context;
@@ -110,42 +147,31 @@ public class BackgroundFetch {
         Log.d(TAG, "- " + ACTION_CONFIGURE);
         mFetchCallback = callback;
 
-        synchronized (mConfig) {
-            if (mConfig.containsKey(config.getTaskId())) {
-                // Developer called `.configure` again.  Re-configure the plugin by re-scheduling the fetch task.
-                BackgroundFetchConfig existing = mConfig.get(config.getTaskId());
-                Log.d(TAG, "Re-configured existing task");
-                BGTask.reschedule(mContext, existing, config);
-                mConfig.put(config.getTaskId(), config);
-                return;
-            } else {
-                mConfig.put(config.getTaskId(), config);
-            }
+        BackgroundFetchConfig existing = mConfig.put(config.getTaskId(), config);
+        if (existing != null) {
+            // Developer called `.configure` again.  Re-configure the plugin by re-scheduling the fetch task.
+            Log.d(TAG, "Re-configured existing task");
+            BGTask.reschedule(mContext, existing, config);
+            return;
         }
         start(config.getTaskId());
     }
 
     void onBoot() {
-        BackgroundFetchConfig.load(mContext, new BackgroundFetchConfig.OnLoadCallback() {
-            @Override public void onLoad(List<BackgroundFetchConfig> result) {
-                for (BackgroundFetchConfig config : result) {
-                    if (!config.getStartOnBoot() || config.getStopOnTerminate()) {
-                        config.destroy(mContext);
-                        continue;
-                    }
-                    synchronized (mConfig) {
-                        mConfig.put(config.getTaskId(), config);
-                    }
-                    if ((android.os.Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1) || config.getForceAlarmManager()) {
-                        if (config.isFetchTask()) {
-                            start(config.getTaskId());
-                        } else {
-                            scheduleTask(config);
-                        }
-                    }
+        for (BackgroundFetchConfig config : BackgroundFetchConfig.load(mContext)) {
+            if (!config.getStartOnBoot() || config.getStopOnTerminate()) {
+                config.destroy(mContext);
+                continue;
+            }
+            mConfig.put(config.getTaskId(), config);
+            if ((android.os.Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP_MR1) || config.getForceAlarmManager()) {
+                if (config.isFetchTask()) {
+                    start(config.getTaskId());
+                } else {
+                    scheduleTask(config);
                 }
             }
-        });
+        }
     }
 
     @SuppressWarnings({"WeakerAccess"})
@@ -170,61 +196,67 @@ public class BackgroundFetch {
         Log.d(TAG, msg);
 
         if (taskId == null) {
-            synchronized (mConfig) {
-                for (BackgroundFetchConfig config : mConfig.values()) {
-                    BGTask task = BGTask.getTask(config.getTaskId());
-                    if (task != null) {
-                        task.finish();
-                        BGTask.removeTask(config.getTaskId());
-                    }
-                    BGTask.cancel(mContext, config.getTaskId(), config.getJobId());
-                    config.destroy(mContext);
+            for (BackgroundFetchConfig config : mConfig.values()) {
+                BGTask task = BGTask.getTask(config.getTaskId());
+                if (task != null) {
+                    task.finish();
                 }
-                BGTask.clear();
+                BGTask.cancel(mContext, config.getTaskId(), config.getJobId());
+                config.destroy(mContext);
+                IntervalStore.getInstance(mContext).remove(config.getTaskId());
             }
+            BGTask.clear();
         } else {
             BGTask task = BGTask.getTask(taskId);
             if (task != null) {
                 task.finish();
-                BGTask.removeTask(task.getTaskId());
             }
             BackgroundFetchConfig config = getConfig(taskId);
             if (config != null) {
                 config.destroy(mContext);
                 BGTask.cancel(mContext, config.getTaskId(), config.getJobId());
+                IntervalStore.getInstance(mContext).remove(config.getTaskId());
             }
         }
     }
 
     @SuppressWarnings({"WeakerAccess"})
     public void scheduleTask(BackgroundFetchConfig config) {
-        synchronized (mConfig) {
-            if (mConfig.containsKey(config.getTaskId())) {
-                // This BackgroundFetchConfig already exists?  Should we halt any existing Job/Alarm here?
-            }
-            config.save(mContext);
-            mConfig.put(config.getTaskId(), config);
-        }
+        // This BackgroundFetchConfig may already exist?  Should we halt any existing Job/Alarm here?
+        mConfig.put(config.getTaskId(), config);
         String taskId = config.getTaskId();
         registerTask(taskId);
     }
 
+    /** Finishes without a result, the interval of the task stays as it is. */
     @SuppressWarnings({"WeakerAccess"})
     public void finish(String taskId) {
-        Log.d(TAG, "- " + ACTION_FINISH + ": " + taskId);
+        finish(taskId, -1);
+    }
+
+    /**
+     * Finishes with one of the FETCH_RESULT_* results, a periodic task is then rescheduled
+     * if IntervalPolicy gives it a different interval. Other values leave the interval as it is,
+     * and so does the finish of a task that is not running or was already finished.
+     */
+    @SuppressWarnings({"WeakerAccess"})
+    public void finish(String taskId, int result) {
+        Log.d(TAG, "- " + ACTION_FINISH + ": " + taskId + ", result: " + result);
 
         BGTask task = BGTask.getTask(taskId);
-        if (task != null) {
-            task.finish();
-        }
+        boolean finished = (task != null) && task.finish();
 
         BackgroundFetchConfig config = getConfig(taskId);
 
-        if ((config != null) && !config.getPeriodic()) {
+        // after task.finish(): scheduling a job id while that job still runs would stop it
+        if (finished && (config != null) && config.getPeriodic() && IntervalStore.getInstance(mContext).record(config, result)) {
+            Log.d(TAG, "- Rescheduling " + taskId + " every " + IntervalStore.getInstance(mContext).getInterval(config) / 60000 + " min");
+            BGTask.schedule(mContext, config);
+        }
+
+        // only the caller that actually removed the config destroys it
+        if ((config != null) && !config.getPeriodic() && mConfig.remove(taskId, config)) {
             config.destroy(mContext);
-            synchronized (mConfig) {
-                mConfig.remove(taskId);
-            }
         }
     }
 
@@ -236,25 +268,47 @@ public class BackgroundFetch {
         return mFetchCallback;
     }
 
+    /**
+     * For a NativeHandler that took an event and then found it needs JS after all: the event goes
+     * to the headless task as if the handler had declined it. Does nothing once the task finished or timed out.
+     */
+    @SuppressWarnings({"WeakerAccess"})
+    public void handOverToHeadless(final String taskId) {
+        getUiHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                BGTask task = BGTask.getTask(taskId);
+                BackgroundFetchConfig config = getConfig(taskId);
+                if ((task == null) || (config == null) || (task.getState() != BGTask.State.RUNNING)) {
+                    return;
+                }
+                Log.d(TAG, "- Background Fetch event handed over to the headless task: " + taskId);
+                task.setHandledNatively(false);
+                try {
+                    task.fireHeadlessEvent(mContext, config);
+                } catch (BGTask.Error e) {
+                    Log.e(TAG, "Headless task error: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
     void onFetch(final BGTask task) {
-        BGTask.addTask(task);
+        if (!BGTask.addTask(task)) {
+            // the previous event for this task is still running, the job fired twice
+            Log.w(TAG, "- Background Fetch event ignored, task is still running: " + task.getTaskId());
+            task.finish();
+            return;
+        }
         Log.d(TAG, "- Background Fetch event received: " + task.getTaskId());
-        synchronized (mConfig) {
-            if (mConfig.isEmpty()) {
-                BackgroundFetchConfig.load(mContext, new BackgroundFetchConfig.OnLoadCallback() {
-                    @Override
-                    public void onLoad(List<BackgroundFetchConfig> result) {
-                        synchronized (mConfig) {
-                            for (BackgroundFetchConfig config : result) {
-                                mConfig.put(config.getTaskId(), config);
-                            }
-                        }
-                        doFetch(task);
-                    }
-                });
-
-                return;
+        if (mConfig.isEmpty()) {
+            // cold start from a killed process, the config store answers from a single read
+            MetricsRecorder.Span span = MetricsRecorder.getInstance(mContext).begin(MetricsRecorder.CONFIG_LOAD, task.getTaskId());
+            for (BackgroundFetchConfig config : BackgroundFetchConfig.load(mContext)) {
+                mConfig.putIfAbsent(config.getTaskId(), config); // configure() may have run meanwhile
             }
+            span.end();
         }
         doFetch(task);
     }
@@ -277,9 +331,14 @@ public class BackgroundFetch {
         BackgroundFetchConfig config = getConfig(task.getTaskId());
 
         if (config == null) {
+            task.finish();
             BGTask.cancel(mContext, task.getTaskId(), task.getJobId());
             return;
         }
+        if (!task.start()) {
+            Log.d(TAG, "- Background Fetch event dropped, task " + task.getTaskId() + " is already " + task.getState());
+            return;
+        }
 
         if (isMainActivityActive()) {
             if (mFetchCallback != null) {
@@ -289,6 +348,12 @@ public class BackgroundFetch {
             Log.d(TAG, "- Stopping on terminate");
             stop(task.getTaskId());
         } else if (config.getJobService() != null) {
+            NativeHandler nativeHandler = sNativeHandler;
+            if (nativeHandler != null && nativeHandler.onFetch(mContext, task.getTaskId())) {
+                Log.d(TAG, "- Background Fetch event handled natively: " + task.getTaskId());
+                task.setHandledNatively(true);
+                return;
+            }
             try {
                 task.fireHeadlessEvent(mContext, config);
             } catch (BGTask.Error e) {
@@ -303,13 +368,42 @@ public class BackgroundFetch {
         }
     }
 
-    @SuppressWarnings({"WeakerAccess", "deprecation"})
+    /**
+     * Whether events go to the running app (fetch callback) rather than to a headless task.
+     * Answered from the ActivityTracker when the app installed one, which needs no binder call.
+     */
+    @SuppressWarnings({"WeakerAccess"})
     public Boolean isMainActivityActive() {
-        Boolean isActive = false;
+        if (mContext == null) {
+            return false;
+        }
+        return isForeground(mFetchCallback != null, ActivityTracker.getInstance(), new BooleanSupplier() {
+            @Override
+            public boolean getAsBoolean() {
+                return hasRunningTask();
+            }
+        });
+    }
 
-        if (mContext == null || mFetchCallback == null) {
+    /**
+     * The decision behind isMainActivityActive, true for the running app and false for a headless task.
+     * Without a fetch callback nothing in the app listens. A tracker, when installed, answers alone,
+     * runningTask is only asked without one.
+     */
+    static boolean isForeground(boolean hasFetchCallback, ActivityTracker tracker, BooleanSupplier runningTask) {
+        if (!hasFetchCallback) {
             return false;
         }
+        if (tracker != null) {
+            return tracker.hasLiveActivity();
+        }
+        return runningTask.getAsBoolean();
+    }
+
+    /* Fallback for apps without ActivityTracker: looks for a task of this app in the ActivityManager. */
+    @SuppressWarnings({"deprecation"})
+    private boolean hasRunningTask() {
+        boolean isActive = false;
         String launchActivityName = "";
         PackageManager pm = mContext.getPackageManager();
         Intent launchIntent = pm.getLaunchIntentForPackage(mContext.getPackageName());
@@ -343,9 +437,24 @@ public class BackgroundFetch {
     }
 
     BackgroundFetchConfig getConfig(String taskId) {
-        synchronized (mConfig) {
-            return (mConfig.containsKey(taskId)) ? mConfig.get(taskId) : null;
-        }
+        return (taskId != null) ? mConfig.get(taskId) : null;
+    }
+
+    /**
+     * @interface BackgroundFetch.Prewarmer
+     */
+    public interface Prewarmer {
+        void prewarm(Context context);
+    }
+
+    /**
+     * @interface BackgroundFetch.NativeHandler
+     */
+    public interface NativeHandler {
+        /** Returns false to leave the event to the headless task, or hands it over later with #handOverToHeadless. */
+        boolean onFetch(Context context, String taskId);
+        /** The task ran out of time, it is finished right after this returns. */
+        void onTimeout(Context context, String taskId);
     }
 
     /**
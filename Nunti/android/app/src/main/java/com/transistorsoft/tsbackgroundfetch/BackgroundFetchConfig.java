@@ -34,10 +34,10 @@ import android.util.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Created by chris on 2018-01-11.
@@ -234,58 +234,54 @@ public class BackgroundFetchConfig {
     }
 
     void save(Context context) {
-        SharedPreferences preferences = context.getSharedPreferences(BackgroundFetch.TAG, 0);
-        Set<String> taskIds = preferences.getStringSet("tasks", new HashSet<String>());
-        if (taskIds == null) {
-            taskIds = new HashSet<>();
-        }
-        if (!taskIds.contains(config.taskId)) {
-            Set<String> newIds = new HashSet<>(taskIds);
-            newIds.add(config.taskId);
-
-            SharedPreferences.Editor editor = preferences.edit();
-            editor.putStringSet("tasks", newIds);
-            editor.apply();
-        }
-
-        SharedPreferences.Editor editor = context.getSharedPreferences(BackgroundFetch.TAG + ":" + config.taskId, 0).edit();
-
-        editor.putString(FIELD_TASK_ID, config.taskId);
-        editor.putBoolean(FIELD_IS_FETCH_TASK, config.isFetchTask);
-        editor.putInt(FIELD_MINIMUM_FETCH_INTERVAL, config.minimumFetchInterval);
-        editor.putBoolean(FIELD_STOP_ON_TERMINATE, config.stopOnTerminate);
-        editor.putBoolean(FIELD_START_ON_BOOT, config.startOnBoot);
-        editor.putInt(FIELD_REQUIRED_NETWORK_TYPE, config.requiredNetworkType);
-        editor.putBoolean(FIELD_REQUIRES_BATTERY_NOT_LOW, config.requiresBatteryNotLow);
-        editor.putBoolean(FIELD_REQUIRES_CHARGING, config.requiresCharging);
-        editor.putBoolean(FIELD_REQUIRES_DEVICE_IDLE, config.requiresDeviceIdle);
-        editor.putBoolean(FIELD_REQUIRES_STORAGE_NOT_LOW, config.requiresStorageNotLow);
-        editor.putString(FIELD_JOB_SERVICE, config.jobService);
-        editor.putBoolean(FIELD_FORCE_ALARM_MANAGER, config.forceAlarmManager);
-        editor.putBoolean(FIELD_PERIODIC, config.periodic);
-        editor.putLong(FIELD_DELAY, config.delay);
-
-        editor.apply();
+        ConfigStore.getInstance(context).put(this);
     }
 
     void destroy(Context context) {
-        SharedPreferences preferences = context.getSharedPreferences(BackgroundFetch.TAG, 0);
-        Set<String> taskIds = preferences.getStringSet("tasks", new HashSet<String>());
-        if (taskIds == null) {
-            taskIds = new HashSet<>();
-        }
-        if (taskIds.contains(config.taskId)) {
-            Set<String> newIds = new HashSet<>(taskIds);
-            newIds.remove(config.taskId);
-            SharedPreferences.Editor editor = preferences.edit();
-            editor.putStringSet("tasks", newIds);
-            editor.apply();
+        ConfigStore.getInstance(context).remove(config.taskId);
+    }
+
+    /* Record format of ConfigStore, bump ConfigStore.VERSION when changing it. */
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeUTF(config.taskId);
+        output.writeBoolean(config.isFetchTask);
+        output.writeInt(config.minimumFetchInterval);
+        output.writeBoolean(config.stopOnTerminate);
+        output.writeBoolean(config.startOnBoot);
+        output.writeInt(config.requiredNetworkType);
+        output.writeBoolean(config.requiresBatteryNotLow);
+        output.writeBoolean(config.requiresCharging);
+        output.writeBoolean(config.requiresDeviceIdle);
+        output.writeBoolean(config.requiresStorageNotLow);
+        output.writeBoolean(config.jobService != null);
+        if (config.jobService != null) {
+            output.writeUTF(config.jobService);
         }
-        if (!config.isFetchTask) {
-            SharedPreferences.Editor editor = context.getSharedPreferences(BackgroundFetch.TAG + ":" + config.taskId, 0).edit();
-            editor.clear();
-            editor.apply();
+        output.writeBoolean(config.forceAlarmManager);
+        output.writeBoolean(config.periodic);
+        output.writeLong(config.delay);
+    }
+
+    static BackgroundFetchConfig readFrom(DataInputStream input) throws IOException {
+        Builder builder = new Builder()
+                .setTaskId(input.readUTF())
+                .setIsFetchTask(input.readBoolean())
+                .setMinimumFetchInterval(input.readInt())
+                .setStopOnTerminate(input.readBoolean())
+                .setStartOnBoot(input.readBoolean())
+                .setRequiredNetworkType(input.readInt())
+                .setRequiresBatteryNotLow(input.readBoolean())
+                .setRequiresCharging(input.readBoolean())
+                .setRequiresDeviceIdle(input.readBoolean())
+                .setRequiresStorageNotLow(input.readBoolean());
+        if (input.readBoolean()) {
+            builder.setJobService(input.readUTF());
         }
+        return builder
+                .setForceAlarmManager(input.readBoolean())
+                .setPeriodic(input.readBoolean())
+                .setDelay(input.readLong())
+                .build();
     }
 
     static int FETCH_JOB_ID = 999;
@@ -358,30 +354,10 @@ public class BackgroundFetchConfig {
         }
     }
 
-    static void load(final Context context, final OnLoadCallback callback) {
-        BackgroundFetch.getThreadPool().execute(new Runnable() {
-            @Override
-            public void run() {
-                final List<BackgroundFetchConfig> result = new ArrayList<>();
-
-                SharedPreferences preferences = context.getSharedPreferences(BackgroundFetch.TAG, 0);
-                Set<String> taskIds = preferences.getStringSet("tasks", new HashSet<String>());
-
-                if (taskIds != null) {
-                    for (String taskId : taskIds) {
-                        result.add(new BackgroundFetchConfig.Builder().load(context, taskId));
-                    }
-                }
-                BackgroundFetch.getUiHandler().post(new Runnable() {
-                    @Override public void run() {
-                        callback.onLoad(result);
-                    }
-                });
-            }
-        });
-    }
-
-    interface OnLoadCallback {
-        void onLoad(List<BackgroundFetchConfig>config);
+    /**
+     * All persisted configs. The first call in a process reads them (one file), later calls answer from memory.
+     */
+    static List<BackgroundFetchConfig> load(Context context) {
+        return ConfigStore.getInstance(context).getAll();
     }
 }
@@ -0,0 +1,332 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executor behind BackgroundFetch.getThreadPool(): a few named threads at background priority and a bounded queue.
+ * A task that does not fit into the queue goes to a single overflow thread, also at background priority,
+ * so neither the submitting thread runs it nor is it dropped.
+ * While the pool is paused (app resume) the queue hands out no task, and wait and run times are recorded.
+ */
+public class BackgroundThreadPool extends ThreadPoolExecutor {
+    static final int MAX_THREADS = 2;
+    static final int QUEUE_CAPACITY = 32;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final Histogram mWaitTimes = new Histogram();
+    private final Histogram mRunTimes = new Histogram();
+    private final AtomicLong mRejected = new AtomicLong();
+    private final ThreadPoolExecutor mOverflow;
+
+    BackgroundThreadPool() {
+        super(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PausableQueue(QUEUE_CAPACITY), new BackgroundThreadFactory(BackgroundFetch.TAG), new Overflow());
+        allowCoreThreadTimeOut(true);
+        mOverflow = new ThreadPoolExecutor(0, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory(BackgroundFetch.TAG + "-overflow"));
+    }
+
+    /**
+     * Every task goes through the queue: ThreadPoolExecutor would hand a task to a new worker directly,
+     * past the pause.
+     */
+    @Override
+    public void execute(Runnable command) {
+        Runnable task = new TimedRunnable(command);
+        if (isShutdown() || !getQueue().offer(task)) {
+            getRejectedExecutionHandler().rejectedExecution(task, this);
+            return;
+        }
+        prestartCoreThread(); // no-op once MAX_THREADS workers run
+    }
+
+    /** The queue hands out no task for the next `millis` ms, tasks already running are not interrupted. */
+    public void pauseFor(long millis) {
+        ((PausableQueue) getQueue()).pauseFor(millis);
+    }
+
+    public Histogram getWaitTimes() { return mWaitTimes; }
+
+    public Histogram getRunTimes() { return mRunTimes; }
+
+    public long getRejectedCount() { return mRejected.get(); }
+
+    public int getQueueCapacity() { return QUEUE_CAPACITY; }
+
+    /** Wait time counts from submission until a worker picks the task up, pause time included. */
+    private class TimedRunnable implements Runnable {
+        private final Runnable mTask;
+        private final long mSubmittedAt = System.nanoTime();
+
+        TimedRunnable(Runnable task) {
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            mWaitTimes.record(TimeUnit.NANOSECONDS.toMillis(startedAt - mSubmittedAt));
+            try {
+                mTask.run();
+            } finally {
+                mRunTimes.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+        }
+    }
+
+    private static class Overflow implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            BackgroundThreadPool pool = (BackgroundThreadPool) executor;
+            if (pool.mRejected.incrementAndGet() == 1) {
+                Log.w(BackgroundFetch.TAG, "Background queue is full (" + QUEUE_CAPACITY + "), running tasks on the overflow thread");
+            }
+            pool.mOverflow.execute(runnable);
+        }
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        BackgroundThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Bounded FIFO whose take and poll wait out a pause before they dequeue, a task submitted
+     * during the pause stays queued even when a worker is already waiting for one.
+     */
+    static class PausableQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+        private final int mCapacity;
+        private final ArrayDeque<Runnable> mItems;
+        private final ReentrantLock mLock = new ReentrantLock();
+        // signalled on every offer, waiters re-check the pause themselves
+        private final Condition mChanged = mLock.newCondition();
+        private long mPausedUntil = 0;
+
+        PausableQueue(int capacity) {
+            mCapacity = capacity;
+            mItems = new ArrayDeque<>(capacity);
+        }
+
+        void pauseFor(long millis) {
+            mLock.lock();
+            try {
+                mPausedUntil = Math.max(mPausedUntil, System.currentTimeMillis() + millis);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            if (runnable == null) {
+                throw new NullPointerException();
+            }
+            mLock.lock();
+            try {
+                if (mItems.size() >= mCapacity) {
+                    return false;
+                }
+                mItems.add(runnable);
+                mChanged.signal();
+                return true;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean offer(Runnable runnable, long timeout, TimeUnit unit) {
+            return offer(runnable); // the pool never waits for room
+        }
+
+        @Override
+        public void put(Runnable runnable) {
+            if (!offer(runnable)) {
+                throw new IllegalStateException("Queue full");
+            }
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            mLock.lockInterruptibly();
+            try {
+                while (true) {
+                    long paused = TimeUnit.MILLISECONDS.toNanos(mPausedUntil - System.currentTimeMillis());
+                    if (paused <= 0 && !mItems.isEmpty()) {
+                        return mItems.poll();
+                    }
+                    if (nanos <= 0) {
+                        return null;
+                    }
+                    long wait = (paused > 0) ? Math.min(paused, nanos) : nanos;
+                    nanos -= wait - mChanged.awaitNanos(wait);
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        /* Does not wait and ignores the pause, ThreadPoolExecutor uses it only to drain on shutdown. */
+        @Override
+        public Runnable poll() {
+            mLock.lock();
+            try {
+                return mItems.poll();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public Runnable peek() {
+            mLock.lock();
+            try {
+                return mItems.peek();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            mLock.lock();
+            try {
+                return mItems.remove(o);
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            mLock.lock();
+            try {
+                return mItems.size();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public int remainingCapacity() {
+            return mCapacity - size();
+        }
+
+        /* A copy, ThreadPoolExecutor iterates only to purge and to report. */
+        @Override
+        public Iterator<Runnable> iterator() {
+            mLock.lock();
+            try {
+                return new ArrayDeque<>(mItems).iterator();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> collection) {
+            return drainTo(collection, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+            mLock.lock();
+            try {
+                int count = 0;
+                while (count < maxElements && !mItems.isEmpty()) {
+                    collection.add(mItems.poll());
+                    count++;
+                }
+                return count;
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    /** Millisecond durations in power of two buckets: <= 1, 2, 4 ... 16384 ms and one for anything longer. */
+    public static class Histogram {
+        static final int BUCKETS = 16;
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mTotal = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long millis) {
+            int bucket = 0;
+            while (bucket < BUCKETS - 1 && millis > (1L << bucket)) {
+                bucket++;
+            }
+            mCounts.incrementAndGet(bucket);
+            mTotal.addAndGet(millis);
+            long max;
+            while (millis > (max = mMax.get()) && !mMax.compareAndSet(max, millis)) {
+                // retry
+            }
+        }
+
+        /** Upper bound of the bucket in ms, -1 for the last, unbounded one. */
+        public static long getBucketBound(int bucket) {
+            return (bucket < BUCKETS - 1) ? (1L << bucket) : -1;
+        }
+
+        public int getBucketCount() { return BUCKETS; }
+
+        public long getCount(int bucket) { return mCounts.get(bucket); }
+
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += mCounts.get(i);
+            }
+            return count;
+        }
+
+        public long getTotalMillis() { return mTotal.get(); }
+
+        public long getMaxMillis() { return mMax.get(); }
+    }
+}
@@ -0,0 +1,225 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * All task configs in one versioned file, read once per process and kept in memory.
+ * Changes update the snapshot right away and are written on the background thread pool;
+ * any number of changes before that write goes out are written together, unchanged configs not at all.
+ * Configs persisted by older versions (one SharedPreferences file per task) are migrated on the first load.
+ */
+class ConfigStore {
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "background-fetch-configs.bin";
+
+    private static ConfigStore sInstance = null;
+
+    static synchronized ConfigStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ConfigStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final File mFile;
+    // task id -> serialized config, insertion ordered so the file keeps the scheduling order
+    private final Map<String, Entry> mEntries = new LinkedHashMap<>();
+    private final AtomicBoolean mWriteScheduled = new AtomicBoolean(false);
+    private final Object mWriteLock = new Object();
+    private boolean mLoaded = false;
+
+    private ConfigStore(Context context) {
+        mContext = context;
+        mFile = new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    List<BackgroundFetchConfig> getAll() {
+        synchronized (mEntries) {
+            ensureLoaded();
+            List<BackgroundFetchConfig> result = new ArrayList<>(mEntries.size());
+            for (Entry entry : mEntries.values()) {
+                result.add(entry.config);
+            }
+            return result;
+        }
+    }
+
+    void put(BackgroundFetchConfig config) {
+        Entry entry = new Entry(config, serialize(config));
+        synchronized (mEntries) {
+            ensureLoaded();
+            Entry previous = mEntries.put(config.getTaskId(), entry);
+            if (previous != null && Arrays.equals(previous.bytes, entry.bytes)) {
+                return; // same values, nothing to write
+            }
+        }
+        scheduleWrite();
+    }
+
+    void remove(String taskId) {
+        synchronized (mEntries) {
+            ensureLoaded();
+            if (mEntries.remove(taskId) == null) {
+                return;
+            }
+        }
+        scheduleWrite();
+    }
+
+    /* Called with mEntries held. */
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (mFile.exists()) {
+            try {
+                read();
+                return;
+            } catch (IOException e) {
+                Log.e(BackgroundFetch.TAG, "Cannot read " + mFile + ", configs are lost: " + e);
+                mEntries.clear();
+            }
+        }
+        migrateSharedPreferences();
+    }
+
+    private void read() throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        try {
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unknown version " + version);
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                BackgroundFetchConfig config = BackgroundFetchConfig.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+                mEntries.put(config.getTaskId(), new Entry(config, bytes));
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private void migrateSharedPreferences() {
+        SharedPreferences preferences = mContext.getSharedPreferences(BackgroundFetch.TAG, 0);
+        Set<String> taskIds = preferences.getStringSet("tasks", new HashSet<String>());
+        if (taskIds == null || taskIds.isEmpty()) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>();
+        for (String taskId : taskIds) {
+            BackgroundFetchConfig config = new BackgroundFetchConfig.Builder().load(mContext, taskId);
+            Entry entry = new Entry(config, serialize(config));
+            mEntries.put(config.getTaskId(), entry);
+            records.add(entry.bytes);
+        }
+        // written right away, the old preferences are only cleared once the file is in place;
+        // no write can be scheduled yet, every change waits for this first load
+        try {
+            writeFile(records);
+        } catch (IOException e) {
+            Log.e(BackgroundFetch.TAG, "Cannot save migrated task configs, keeping the old ones: " + e);
+            return;
+        }
+        for (String taskId : taskIds) {
+            mContext.getSharedPreferences(BackgroundFetch.TAG + ":" + taskId, 0).edit().clear().apply();
+        }
+        preferences.edit().remove("tasks").apply();
+        Log.i(BackgroundFetch.TAG, "Migrated " + taskIds.size() + " task configs to " + FILE_NAME);
+    }
+
+    private void scheduleWrite() {
+        if (!mWriteScheduled.compareAndSet(false, true)) {
+            return; // the pending write picks this change up
+        }
+        BackgroundFetch.getThreadPool().execute(new Runnable() {
+            @Override public void run() {
+                mWriteScheduled.set(false);
+                write();
+            }
+        });
+    }
+
+    private void write() {
+        synchronized (mWriteLock) {
+            // snapshot under the write lock, so an older snapshot can never overwrite a newer one
+            List<byte[]> records = new ArrayList<>();
+            synchronized (mEntries) {
+                for (Entry entry : mEntries.values()) {
+                    records.add(entry.bytes);
+                }
+            }
+            try {
+                writeFile(records);
+            } catch (IOException e) {
+                Log.e(BackgroundFetch.TAG, "Cannot save task configs: " + e);
+            }
+        }
+    }
+
+    /* Writes to a temporary file first, mFile holds either the old or the new records. */
+    private void writeFile(List<byte[]> records) throws IOException {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(VERSION);
+            output.writeInt(records.size());
+            for (byte[] record : records) {
+                output.writeInt(record.length);
+                output.write(record);
+            }
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Cannot replace " + mFile);
+        }
+    }
+
+    private static byte[] serialize(BackgroundFetchConfig config) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream output = new DataOutputStream(bytes);
+            config.writeTo(output);
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+    }
+
+    private static class Entry {
+        final BackgroundFetchConfig config;
+        final byte[] bytes;
+
+        Entry(BackgroundFetchConfig config, byte[] bytes) {
+            this.config = config;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -50,6 +50,11 @@ public class FetchJobService extends JobService {
 
         final String taskId = extras.getString(BackgroundFetchConfig.FIELD_TASK_ID);
 
+        BackgroundFetch.Prewarmer prewarmer = BackgroundFetch.getPrewarmer();
+        if (prewarmer != null) {
+            prewarmer.prewarm(getApplicationContext());
+        }
+
         CompletionHandler completionHandler = new CompletionHandler() {
             @Override
             public void finish() {
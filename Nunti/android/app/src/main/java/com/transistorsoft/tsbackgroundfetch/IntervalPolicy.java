@@ -0,0 +1,65 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+/**
+ * Interval of a periodic task, adapted to the results its runs finish with:
+ * - no data: from the second no-data run in a row on, every run stretches the interval by STRETCH,
+ * - new data: the interval shrinks by SHRINK back toward the configured minimum,
+ * - failed: exponential backoff, every failure in a row doubles the interval, the next success drops it again.
+ * The interval never goes below the configured one, nor above MAX_FACTOR times it or MAX_INTERVAL.
+ * Pure state transitions, no clock and no Android, IntervalStore keeps the state per task.
+ */
+final class IntervalPolicy {
+    static final int NO_DATA_RUNS_BEFORE_STRETCH = 2;
+    static final double STRETCH = 1.5;
+    static final double SHRINK = 0.5;
+    static final int MAX_FACTOR = 8;
+    static final long MAX_INTERVAL = 24L * 60 * 60 * 1000;
+    private static final int MAX_FAILURES = 16; // far past any cap, keeps the shift in range
+
+    static final State INITIAL = new State(1, 0, 0);
+
+    private IntervalPolicy() {}
+
+    static State next(State state, int result) {
+        switch (result) {
+            case BackgroundFetch.FETCH_RESULT_NEW_DATA:
+                return new State(Math.max(1, state.stretch * SHRINK), 0, 0);
+            case BackgroundFetch.FETCH_RESULT_NO_DATA:
+                int noDataRuns = state.noDataRuns + 1;
+                double stretch = (noDataRuns >= NO_DATA_RUNS_BEFORE_STRETCH) ? Math.min(MAX_FACTOR, state.stretch * STRETCH) : state.stretch;
+                return new State(stretch, noDataRuns, 0);
+            case BackgroundFetch.FETCH_RESULT_FAILED:
+                return new State(state.stretch, state.noDataRuns, Math.min(MAX_FAILURES, state.failures + 1));
+            default:
+                return state;
+        }
+    }
+
+    /** The interval for a task configured with minimum (ms), rounded to whole minutes. */
+    static long interval(State state, long minimum) {
+        long max = Math.max(minimum, Math.min(minimum * MAX_FACTOR, MAX_INTERVAL));
+        double interval = minimum * state.stretch * (1L << state.failures);
+        if (interval >= max) {
+            return max;
+        }
+        long minutes = Math.round(interval / 60000);
+        return Math.max(minimum, minutes * 60000);
+    }
+
+    static final class State {
+        final double stretch; // >= 1, multiplies the configured interval
+        final int noDataRuns; // in a row
+        final int failures; // in a row
+
+        State(double stretch, int noDataRuns, int failures) {
+            this.stretch = stretch;
+            this.noDataRuns = noDataRuns;
+            this.failures = failures;
+        }
+
+        @Override
+        public String toString() {
+            return "[stretch=" + stretch + ", noDataRuns=" + noDataRuns + ", failures=" + failures + "]";
+        }
+    }
+}
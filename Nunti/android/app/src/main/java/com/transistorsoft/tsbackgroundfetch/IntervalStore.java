@@ -0,0 +1,166 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * IntervalPolicy state of every periodic task in one versioned file, read once per process.
+ * Like ConfigStore, changes are written on the background thread pool and coalesced.
+ */
+class IntervalStore {
+    private static final int VERSION = 1;
+    private static final String FILE_NAME = "background-fetch-intervals.bin";
+
+    private static IntervalStore sInstance = null;
+
+    static synchronized IntervalStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new IntervalStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    private final File mFile;
+    private final Map<String, IntervalPolicy.State> mStates = new HashMap<>();
+    private final AtomicBoolean mWriteScheduled = new AtomicBoolean(false);
+    private final Object mWriteLock = new Object();
+    private boolean mLoaded = false;
+
+    private IntervalStore(File file) {
+        mFile = file;
+    }
+
+    /** The interval to schedule the task with: adapted for periodic tasks, as configured for the rest. */
+    long getInterval(BackgroundFetchConfig config) {
+        long configured = getConfiguredInterval(config);
+        if (!config.getPeriodic()) {
+            return configured;
+        }
+        synchronized (mStates) {
+            ensureLoaded();
+            return IntervalPolicy.interval(getState(config.getTaskId()), configured);
+        }
+    }
+
+    /** Applies the result of a run, returns true if the interval of the task changed. */
+    boolean record(BackgroundFetchConfig config, int result) {
+        long configured = getConfiguredInterval(config);
+        IntervalPolicy.State previous;
+        IntervalPolicy.State next;
+        synchronized (mStates) {
+            ensureLoaded();
+            previous = getState(config.getTaskId());
+            next = IntervalPolicy.next(previous, result);
+            if (next == previous) {
+                return false;
+            }
+            mStates.put(config.getTaskId(), next);
+        }
+        scheduleWrite();
+        return IntervalPolicy.interval(previous, configured) != IntervalPolicy.interval(next, configured);
+    }
+
+    void remove(String taskId) {
+        synchronized (mStates) {
+            ensureLoaded();
+            if (mStates.remove(taskId) == null) {
+                return;
+            }
+        }
+        scheduleWrite();
+    }
+
+    private static long getConfiguredInterval(BackgroundFetchConfig config) {
+        return (config.isFetchTask()) ? TimeUnit.MINUTES.toMillis(config.getMinimumFetchInterval()) : config.getDelay();
+    }
+
+    /* Called with mStates held. */
+    private IntervalPolicy.State getState(String taskId) {
+        IntervalPolicy.State state = mStates.get(taskId);
+        return (state != null) ? state : IntervalPolicy.INITIAL;
+    }
+
+    /* Called with mStates held. A missing or unreadable file starts every task at its configured interval. */
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        if (!mFile.exists()) {
+            return;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            try {
+                if (input.readInt() != VERSION) {
+                    return;
+                }
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    String taskId = input.readUTF();
+                    mStates.put(taskId, new IntervalPolicy.State(input.readDouble(), input.readInt(), input.readInt()));
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            Log.e(BackgroundFetch.TAG, "Cannot read " + mFile + ", intervals are reset: " + e);
+            mStates.clear();
+        }
+    }
+
+    private void scheduleWrite() {
+        if (!mWriteScheduled.compareAndSet(false, true)) {
+            return; // the pending write picks this change up
+        }
+        BackgroundFetch.getThreadPool().execute(new Runnable() {
+            @Override public void run() {
+                mWriteScheduled.set(false);
+                write();
+            }
+        });
+    }
+
+    private void write() {
+        synchronized (mWriteLock) {
+            Map<String, IntervalPolicy.State> states;
+            synchronized (mStates) {
+                states = new HashMap<>(mStates);
+            }
+            File temp = new File(mFile.getPath() + ".tmp");
+            try {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+                try {
+                    output.writeInt(VERSION);
+                    output.writeInt(states.size());
+                    for (Map.Entry<String, IntervalPolicy.State> entry : states.entrySet()) {
+                        output.writeUTF(entry.getKey());
+                        output.writeDouble(entry.getValue().stretch);
+                        output.writeInt(entry.getValue().noDataRuns);
+                        output.writeInt(entry.getValue().failures);
+                    }
+                } finally {
+                    output.close();
+                }
+                if (!temp.renameTo(mFile)) {
+                    throw new IOException("Cannot replace " + mFile);
+                }
+            } catch (IOException e) {
+                Log.e(BackgroundFetch.TAG, "Cannot save task intervals: " + e);
+            }
+        }
+    }
+}
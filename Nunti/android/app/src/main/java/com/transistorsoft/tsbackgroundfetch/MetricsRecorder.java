@@ -0,0 +1,236 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spans of background work (the job, config load, React context, sync phases) in a fixed-size ring buffer file,
+ * so they outlive the process that recorded them. The file holds the last CAPACITY spans, older ones are overwritten.
+ * Every span is also an android.os.Trace async section (API 29+) while it runs, visible in system traces.
+ * Spans are written on the background thread pool, recording never touches the disk on the calling thread.
+ */
+public class MetricsRecorder {
+    /** The job, from JobScheduler starting it until it is finished. */
+    public static final String JOB = "job";
+    /** Zero length, the job ran out of time. */
+    public static final String JOB_TIMEOUT = "job:timeout";
+    public static final String CONFIG_LOAD = "config:load";
+    /** From the job start until the React context of a headless task is ready. */
+    public static final String REACT_CONTEXT = "react:context";
+    /** The headless JS task, from its start until JS finished it. */
+    public static final String HEADLESS_JS = "headless:js";
+    public static final String SYNC_DOWNLOAD = "sync:download";
+    public static final String SYNC_KEYWORDS = "sync:keywords";
+    public static final String SYNC_NOTIFICATION = "sync:notification";
+    public static final String SYNC_BACKUP = "sync:backup";
+    public static final String SYNC_OFFLINE = "sync:offline";
+
+    static final int CAPACITY = 512;
+    private static final int MAGIC = 0x4E4D4554; // "NMET"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16; // magic, version, long spans written so far
+    private static final int RECORD_BYTES = 96;
+    private static final int MAX_NAME_BYTES = 31;
+    private static final int MAX_DETAIL_BYTES = 47;
+    private static final String FILE_NAME = "background-fetch-metrics.bin";
+
+    private static MetricsRecorder sInstance = null;
+
+    public static synchronized MetricsRecorder getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MetricsRecorder(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    private final File mFile;
+    private final AtomicInteger mCookies = new AtomicInteger(0);
+    private long mWritten = -1; // spans written to the file so far, -1 until the header was read
+
+    private MetricsRecorder(File file) {
+        mFile = file;
+    }
+
+    /** Starts a span now, detail (e.g. the task id) may be null. */
+    public Span begin(String name, String detail) {
+        return begin(name, detail, SystemClock.elapsedRealtime());
+    }
+
+    /** Starts a span that began at startedAt (SystemClock.elapsedRealtime()), its trace section starts now. */
+    public Span begin(String name, String detail, long startedAt) {
+        return new Span(name, detail, startedAt, mCookies.incrementAndGet());
+    }
+
+    /** Records a span of zero length. */
+    public void mark(String name, String detail) {
+        record(name, detail, System.currentTimeMillis(), 0);
+    }
+
+    /** Spans in the file, oldest first. */
+    public List<Entry> read() {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (this) {
+            try {
+                RandomAccessFile file = open();
+                try {
+                    int count = (int) Math.min(mWritten, CAPACITY);
+                    byte[] records = new byte[count * RECORD_BYTES];
+                    file.seek(HEADER_BYTES);
+                    file.readFully(records);
+                    ByteBuffer view = ByteBuffer.wrap(records);
+                    for (int i = 0; i < count; i++) {
+                        view.position(i * RECORD_BYTES);
+                        entries.add(readEntry(view));
+                    }
+                } finally {
+                    file.close();
+                }
+            } catch (IOException e) {
+                Log.w(BackgroundFetch.TAG, "Cannot read metrics: " + e);
+            }
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                return Long.compare(first.startedAt, second.startedAt);
+            }
+        });
+        return entries;
+    }
+
+    private void record(final String name, final String detail, final long startedAt, final long durationMs) {
+        BackgroundFetch.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                write(name, detail, startedAt, durationMs);
+            }
+        });
+    }
+
+    private synchronized void write(String name, String detail, long startedAt, long durationMs) {
+        try {
+            RandomAccessFile file = open();
+            try {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+                record.putLong(startedAt);
+                record.putInt((int) Math.min(durationMs, Integer.MAX_VALUE));
+                putString(record, name, MAX_NAME_BYTES);
+                putString(record, detail, MAX_DETAIL_BYTES);
+                file.seek(HEADER_BYTES + (mWritten % CAPACITY) * RECORD_BYTES);
+                file.write(record.array());
+                mWritten++;
+                file.seek(8);
+                file.writeLong(mWritten);
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            Log.w(BackgroundFetch.TAG, "Cannot record " + name + ": " + e);
+        }
+    }
+
+    /* Called with this held. A missing, foreign or damaged file starts a new, empty buffer. */
+    private RandomAccessFile open() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        if (mWritten < 0) {
+            boolean valid = file.length() == HEADER_BYTES + (long) CAPACITY * RECORD_BYTES
+                    && file.readInt() == MAGIC && file.readInt() == VERSION;
+            mWritten = valid ? file.readLong() : 0;
+            if (!valid) {
+                file.setLength(HEADER_BYTES + (long) CAPACITY * RECORD_BYTES);
+                file.seek(0);
+                file.writeInt(MAGIC);
+                file.writeInt(VERSION);
+                file.writeLong(0);
+            }
+        }
+        return file;
+    }
+
+    private static void putString(ByteBuffer record, String value, int maxBytes) {
+        byte[] bytes = (value != null) ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = Math.min(bytes.length, maxBytes);
+        record.put((byte) length);
+        record.put(bytes, 0, length);
+        record.position(record.position() + maxBytes - length);
+    }
+
+    private static String getString(ByteBuffer record, int maxBytes) {
+        int length = Math.min(record.get() & 0xFF, maxBytes);
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + maxBytes);
+        return value;
+    }
+
+    private static Entry readEntry(ByteBuffer record) {
+        long startedAt = record.getLong();
+        long durationMs = record.getInt();
+        String name = getString(record, MAX_NAME_BYTES);
+        String detail = getString(record, MAX_DETAIL_BYTES);
+        return new Entry(name, detail.isEmpty() ? null : detail, startedAt, durationMs);
+    }
+
+    /** A running span, end() records it, once. */
+    public class Span {
+        private final String mName;
+        private final String mDetail;
+        private final long mStartedAt;
+        private final int mCookie;
+        private final AtomicBoolean mEnded = new AtomicBoolean(false);
+
+        Span(String name, String detail, long startedAt, int cookie) {
+            mName = name;
+            mDetail = detail;
+            mStartedAt = startedAt;
+            mCookie = cookie;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(getSectionName(), mCookie);
+            }
+        }
+
+        public void end() {
+            if (!mEnded.compareAndSet(false, true)) {
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(getSectionName(), mCookie);
+            }
+            long durationMs = SystemClock.elapsedRealtime() - mStartedAt;
+            record(mName, mDetail, System.currentTimeMillis() - durationMs, durationMs);
+        }
+
+        private String getSectionName() {
+            return (mDetail != null) ? mName + " " + mDetail : mName;
+        }
+    }
+
+    /** A recorded span, startedAt in ms since epoch. */
+    public static class Entry {
+        public final String name;
+        public final String detail;
+        public final long startedAt;
+        public final long durationMs;
+
+        Entry(String name, String detail, long startedAt, long durationMs) {
+            this.name = name;
+            this.detail = detail;
+            this.startedAt = startedAt;
+            this.durationMs = durationMs;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.nunti;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/* Against a local stand-in server: connection reuse, redirects, the hard deadline and draining unread bodies. */
+public class FeedDownloaderTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private HttpServer otherServer;
+    private ExecutorService serverThreads;
+    private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final AtomicInteger requests = new AtomicInteger(0);
+
+    @Before
+    public void setUp() throws IOException {
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/feed", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                count(exchange);
+                int items = exchange.getRequestURI().getQuery() != null ? Integer.parseInt(exchange.getRequestURI().getQuery()) : 3;
+                send(exchange, 200, rss(items));
+            }
+        });
+        server.createContext("/delay", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                count(exchange);
+                try {
+                    Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery()));
+                } catch (InterruptedException e) {
+                    // server stopping
+                }
+                send(exchange, 200, rss(3));
+            }
+        });
+        server.createContext("/hop", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                count(exchange);
+                // /hop/N redirects to /hop/N-1, /hop/0 to the feed on the other server
+                int hops = Integer.parseInt(exchange.getRequestURI().getPath().substring("/hop/".length()));
+                exchange.getResponseHeaders().set("Location", hops > 0 ? "/hop/" + (hops - 1) : otherUrl("/feed"));
+                send(exchange, hops % 2 == 0 ? 301 : 307, "");
+            }
+        });
+        server.createContext("/loop", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                count(exchange);
+                exchange.getResponseHeaders().set("Location", "/loop");
+                send(exchange, 302, "redirect body that has to be drained");
+            }
+        });
+        server.createContext("/trickle", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                count(exchange);
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                try {
+                    body.write("<rss><channel><item><title>".getBytes(StandardCharsets.UTF_8));
+                    // a byte every 200 ms never trips the read timeout, only the deadline stops it
+                    for (int i = 0; i < 100; i++) {
+                        body.write(' ');
+                        body.flush();
+                        Thread.sleep(200);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // client went away
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+
+        otherServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        otherServer.setExecutor(serverThreads);
+        otherServer.createContext("/feed", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, rss(2));
+            }
+        });
+        otherServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        otherServer.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void count(HttpExchange exchange) {
+        requests.incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/rss+xml; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+        if (bytes.length > 0) {
+            OutputStream output = exchange.getResponseBody();
+            output.write(bytes);
+            output.close();
+        }
+        exchange.close();
+    }
+
+    private static String rss(int items) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rss version=\"2.0\"><channel><title>Test</title>");
+        for (int i = 0; i < items; i++) {
+            xml.append("<item><title>Item ").append(i).append("</title><link>https://example.com/").append(i)
+                    .append("</link><description>").append(new String(new char[200]).replace('\0', 'x')).append("</description></item>");
+        }
+        return xml.append("</channel></rss>").toString();
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private String otherUrl(String path) {
+        return "http://127.0.0.1:" + otherServer.getAddress().getPort() + path;
+    }
+
+    private static FeedDownloader.Request request(String url, int failedAttempts, int maxArticles) {
+        return new FeedDownloader.Request(url, failedAttempts, maxArticles, false, "test");
+    }
+
+    private static List<FeedDownloader.Result> download(int threads, FeedDownloader.Request... requests) throws InterruptedException {
+        List<FeedDownloader.Request> list = new ArrayList<>();
+        Collections.addAll(list, requests);
+        return new FeedDownloader(threads).download(list, null);
+    }
+
+    @Test
+    public void reusesKeptAliveConnections() throws Exception {
+        List<FeedDownloader.Request> list = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            list.add(request(url("/feed"), 0, 100));
+        List<FeedDownloader.Result> results = new FeedDownloader(2).download(list, null);
+
+        for (FeedDownloader.Result result : results) {
+            assertNull(result.error);
+            assertEquals(3, result.articles.size());
+        }
+        assertEquals(12, requests.get());
+        assertTrue("connections: " + clientPorts.size(), clientPorts.size() <= 2);
+    }
+
+    @Test
+    public void totalTimeTracksTheSlowestFeedNotTheSumOfBatches() throws Exception {
+        // the JS downloader went in batches of 6 and waited for the slowest feed of each batch
+        final int batch = 6;
+        final long slow = 2000;
+        final long fast = 400;
+        List<FeedDownloader.Request> list = new ArrayList<>();
+        list.add(request(url("/delay?" + slow), 0, 100));
+        for (int i = 0; i < 3 * batch - 1; i++)
+            list.add(request(url("/delay?" + fast), 0, 100));
+
+        long start = System.currentTimeMillis();
+        List<FeedDownloader.Result> results = new FeedDownloader(batch).download(list, null);
+        long elapsed = System.currentTimeMillis() - start;
+
+        for (FeedDownloader.Result result : results)
+            assertNull(result.error);
+        // the other 5 slots get through the 17 fast feeds while the slow one is in flight
+        long batchedSum = slow + 2 * fast;
+        assertTrue("elapsed " + elapsed, elapsed >= slow);
+        assertTrue("elapsed " + elapsed + ", batches would take " + batchedSum, elapsed < batchedSum - fast);
+    }
+
+    @Test
+    public void drainsBodiesTheParserDidNotFinish() throws Exception {
+        // the parser stops after the first item, Response.close skips the rest so the connection is reused
+        assertTrue(rss(100).length() < FeedDownloader.MAX_DRAIN_BYTES);
+        List<FeedDownloader.Result> results = download(1, request(url("/feed?100"), 0, 1), request(url("/feed?100"), 0, 1));
+
+        assertEquals(1, results.get(0).articles.size());
+        assertEquals(1, results.get(1).articles.size());
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void dropsConnectionsWithALongUnreadRest() throws Exception {
+        assertTrue(rss(2000).length() > 2 * FeedDownloader.MAX_DRAIN_BYTES);
+        List<FeedDownloader.Result> results = download(1, request(url("/feed?2000"), 0, 1), request(url("/feed?2000"), 0, 1));
+
+        assertEquals(1, results.get(0).articles.size());
+        assertEquals(1, results.get(1).articles.size());
+        assertEquals(2, clientPorts.size());
+    }
+
+    @Test
+    public void followsRedirectsAcrossOriginsUpToTheCap() throws Exception {
+        // 4 hops on this server, the 5th to the other one
+        FeedDownloader.Result result = download(1, request(url("/hop/4"), 0, 100)).get(0);
+        assertNull(result.error);
+        assertEquals(2, result.articles.size());
+        assertEquals(5, requests.get());
+
+        requests.set(0);
+        result = download(1, request(url("/hop/5"), 0, 100)).get(0);
+        assertEquals("Cannot read RSS java.io.IOException: Too many redirects.", result.error);
+        assertEquals(6, requests.get());
+    }
+
+    @Test
+    public void stopsARedirectLoop() throws Exception {
+        FeedDownloader.Result result = download(1, request(url("/loop"), 0, 100)).get(0);
+
+        assertTrue(result.error, result.error.endsWith("Too many redirects."));
+        assertEquals(6, requests.get()); // the first request and 5 redirects
+        assertEquals(1, clientPorts.size()); // redirect bodies were drained, one connection throughout
+    }
+
+    @Test
+    public void skipsFeedsNotDueOnlyWhenTheScheduleIsRespected() throws Exception {
+        FeedValidatorStore validators = new FeedValidatorStore(folder.newFile());
+        FeedSchedule schedule = new FeedSchedule(folder.newFile());
+        new FeedDownloader(1, validators, schedule, false).download(Collections.singletonList(request(url("/feed"), 0, 100)), null);
+        assertEquals(1, requests.get());
+
+        // a refresh in the app right after still requests the feed, and records the download
+        FeedDownloader.Result result = new FeedDownloader(1, validators, schedule, false).download(Collections.singletonList(request(url("/feed"), 0, 100)), null).get(0);
+        assertFalse(result.skipped);
+        assertEquals(2, requests.get());
+        assertFalse(schedule.isDue(url("/feed"), 0, System.currentTimeMillis()));
+
+        // a background sync skips it and reuses the articles
+        result = new FeedDownloader(1, validators, schedule, true).download(Collections.singletonList(request(url("/feed"), 0, 100)), null).get(0);
+        assertTrue(result.skipped);
+        assertEquals(3, result.articles.size());
+        assertEquals(2, requests.get());
+        assertEquals(1, schedule.getSkipped());
+    }
+
+    @Test
+    public void deadlineStopsATricklingBody() throws Exception {
+        // failing feeds get a 2 s timeout, so the deadline is at 4 s
+        long start = System.currentTimeMillis();
+        FeedDownloader.Result result = download(1, request(url("/trickle"), 2, 100)).get(0);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(String.valueOf(result.error), result.error != null && result.error.startsWith("Cannot read RSS"));
+        assertTrue("elapsed " + elapsed, elapsed >= 2 * FeedDownloader.timeoutFor(2) - 100);
+        assertTrue("elapsed " + elapsed, elapsed < 2 * FeedDownloader.timeoutFor(2) + 3000);
+    }
+}
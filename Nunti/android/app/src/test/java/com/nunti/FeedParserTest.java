@@ -0,0 +1,113 @@
+package com.nunti;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/* Saved feeds in src/test/resources/feeds, checked against the extraction rules of the JS Downloader. */
+public class FeedParserTest {
+    private static List<FeedArticle> parse(String resource, int maxArticles, boolean noImages) throws Exception {
+        Reader reader = new InputStreamReader(FeedParserTest.class.getResourceAsStream("/feeds/" + resource), StandardCharsets.UTF_8);
+        try {
+            return FeedParser.parse(reader, maxArticles, noImages);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    @Test
+    public void decodesEntitiesOfTheWholeHtml5Set() throws Exception {
+        List<FeedArticle> articles = parse("rss.xml", 100, false);
+        assertEquals("Caf\u00E9 & cr\u00E8me", articles.get(0).title);
+        assertEquals("Le caf\u00E9 est l\u00E0", articles.get(0).description);
+        assertEquals("\u201CQuoted\u201D \u2014 Stra\u00DFe", articles.get(1).title);
+        assertEquals("Stra\u00DFe \u20AC 5 \u2026 \u00A0\u00D6l", articles.get(1).description);
+    }
+
+    @Test
+    public void decodeEntitiesLeavesUnknownNamesAndPlainText() {
+        assertEquals("a &notanentity; b", FeedParser.decodeEntities("a &notanentity; b"));
+        assertEquals("no entities", FeedParser.decodeEntities("no entities"));
+        assertEquals("\uD83D\uDE00", FeedParser.decodeEntities("&#x1F600;"));
+        assertNull(FeedParser.decodeEntities(null));
+    }
+
+    @Test
+    public void skipsItemsWithoutTitleAndStopsAtMaxArticles() throws Exception {
+        List<FeedArticle> articles = parse("rss.xml", 100, false);
+        assertEquals(3, articles.size());
+        assertEquals("https://example.com/dc", articles.get(2).url);
+        assertEquals(1, parse("rss.xml", 1, false).size());
+    }
+
+    @Test
+    public void parsesRfc822AndIsoDates() throws Exception {
+        List<FeedArticle> rss = parse("rss.xml", 100, false);
+        assertEquals(millis("2003-06-10T04:00:00Z"), (long) rss.get(0).date);
+        assertEquals(millis("2003-06-11T07:30:00Z"), (long) rss.get(1).date);
+        assertEquals(millis("2003-06-12T00:00:00Z"), (long) rss.get(2).date);
+
+        List<FeedArticle> atom = parse("atom.xml", 100, false);
+        assertEquals(millis("2003-12-13T18:30:02Z"), (long) atom.get(0).date);
+        assertEquals(millis("2003-12-13T17:30:02Z"), (long) atom.get(1).date);
+
+        assertEquals(millis("2023-11-14T22:13:20Z"), (long) FeedParser.parseDate(" Tue, 14 Nov 2023   22:13:20 +0000 "));
+        assertEquals(millis("2023-11-14T22:13:00Z"), (long) FeedParser.parseDate("14 Nov 2023 22:13 GMT"));
+        assertNull(FeedParser.parseDate("yesterday"));
+        assertNull(FeedParser.parseDate(""));
+    }
+
+    @Test
+    public void takesRssLinkTextAndAtomAlternateLink() throws Exception {
+        List<FeedArticle> rss = parse("rss.xml", 100, false);
+        assertEquals("https://example.com/cafe", rss.get(0).url);
+        assertEquals("https://example.com/quoted", rss.get(1).url);
+
+        List<FeedArticle> atom = parse("atom.xml", 100, false);
+        assertEquals("Several <links>", atom.get(0).title);
+        assertEquals("https://blog.example.com/first", atom.get(0).url);
+        assertEquals("https://blog.example.com/second", atom.get(1).url);
+    }
+
+    @Test
+    public void findsCoversAndUpgradesThemToHttps() throws Exception {
+        List<FeedArticle> rss = parse("rss.xml", 100, false);
+        assertEquals("https://example.com/cafe.jpg", rss.get(0).cover); // enclosure with an image type
+        assertEquals("https://cdn.example.com/image?id=4", rss.get(1).cover); // media:content medium="image"
+        assertEquals("https://example.com/inside.png", rss.get(2).cover); // <img> in content:encoded
+
+        List<FeedArticle> atom = parse("atom.xml", 100, false);
+        assertEquals("https://img.example.com/first.jpg", atom.get(0).cover); // <img> in escaped Atom content
+        assertEquals("Body of the first entry", atom.get(0).description);
+        assertNull(atom.get(1).cover);
+    }
+
+    @Test
+    public void noImagesLeavesCoversOut() throws Exception {
+        for (FeedArticle article : parse("rss.xml", 100, true))
+            assertNull(article.cover);
+    }
+
+    @Test
+    public void rdfKeepsItemsOutsideTheChannel() throws Exception {
+        String rdf = "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" xmlns=\"http://purl.org/rss/1.0/\">"
+                + "<channel><title>RDF</title></channel>"
+                + "<item><title>One</title><link>https://example.com/one</link></item>"
+                + "</rdf:RDF>";
+        List<FeedArticle> articles = FeedParser.parse(new StringReader(rdf), 100, false);
+        assertEquals(1, articles.size());
+        assertEquals("https://example.com/one", articles.get(0).url);
+    }
+}
@@ -0,0 +1,111 @@
+package com.nunti;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/* New items are item urls the previous download did not have, quiet downloads stretch the interval. */
+public class FeedScheduleTest {
+    private static final String FEED = "https://example.com/feed";
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<FeedArticle> items(String... urls) {
+        List<FeedArticle> articles = new ArrayList<>();
+        for (String url : urls) {
+            FeedArticle article = new FeedArticle();
+            article.url = url;
+            articles.add(article);
+        }
+        return articles;
+    }
+
+    @Test
+    public void reorderedOrDroppedItemsAreNotNew() {
+        FeedSchedule schedule = new FeedSchedule(new File(folder.getRoot(), "schedule.bin"));
+        assertTrue(schedule.recordDownload(FEED, items("a", "b", "c"), false, 0)); // first download
+
+        assertFalse(schedule.recordDownload(FEED, items("c", "a", "b"), false, HOUR));
+        assertFalse(schedule.recordDownload(FEED, items("a", "b"), false, 2 * HOUR)); // c dropped off the end
+        assertTrue(schedule.recordDownload(FEED, items("d", "a", "b"), false, 3 * HOUR));
+        assertTrue(schedule.recordDownload(FEED, items("c", "d"), false, 4 * HOUR)); // c is gone since two downloads
+    }
+
+    @Test
+    public void quietDownloadsBackOffUntilANewItem() {
+        FeedSchedule schedule = new FeedSchedule(new File(folder.getRoot(), "schedule.bin"));
+        schedule.recordDownload(FEED, items("a", "b"), false, 0);
+        assertEquals(FeedSchedule.MIN_INTERVAL, schedule.getInterval(FEED, 0));
+
+        schedule.recordDownload(FEED, items("b", "a"), false, HOUR);
+        schedule.recordDownload(FEED, items("a"), true, 2 * HOUR); // 304 Not Modified
+        schedule.recordDownload(FEED, items("a"), false, 3 * HOUR);
+        assertEquals(4 * FeedSchedule.MIN_INTERVAL, schedule.getInterval(FEED, 0)); // 3 quiet downloads
+
+        schedule.recordDownload(FEED, items("new", "a"), false, 4 * HOUR);
+        assertEquals(FeedSchedule.MIN_INTERVAL, schedule.getInterval(FEED, 0));
+    }
+
+    @Test
+    public void notModifiedKeepsTheItemsOfTheLastFullResponse() {
+        FeedSchedule schedule = new FeedSchedule(new File(folder.getRoot(), "schedule.bin"));
+        schedule.recordDownload(FEED, items("a", "b"), false, 0);
+        schedule.recordFailure(FEED, HOUR);
+        assertFalse(schedule.recordDownload(FEED, items(), true, 2 * HOUR));
+        assertFalse(schedule.recordDownload(FEED, items("b", "a"), false, 3 * HOUR));
+    }
+
+    @Test
+    public void itemsSurviveSaveAndLoad() throws Exception {
+        File file = new File(folder.getRoot(), "schedule.bin");
+        FeedSchedule schedule = new FeedSchedule(file);
+        schedule.recordDownload(FEED, items("a", "b", "c"), false, 0);
+        schedule.recordDownload(FEED, items("a", "b", "c"), false, HOUR);
+        schedule.recordFailure("https://example.com/broken", HOUR);
+        schedule.save();
+
+        FeedSchedule loaded = new FeedSchedule(file);
+        loaded.load();
+        assertEquals(schedule.getInterval(FEED, 0), loaded.getInterval(FEED, 0));
+        assertFalse(loaded.recordDownload(FEED, items("b", "c"), false, 2 * HOUR));
+        assertTrue(loaded.recordDownload(FEED, items("b", "c", "d"), false, 3 * HOUR));
+        assertFalse(loaded.isDue("https://example.com/broken", 0, HOUR + 60 * 1000));
+        assertTrue(loaded.isDue("https://example.com/broken", 0, HOUR + FeedSchedule.MIN_INTERVAL));
+    }
+
+    @Test
+    public void failedSaveIsRetried() throws Exception {
+        File dir = new File(folder.getRoot(), "later");
+        FeedSchedule schedule = new FeedSchedule(new File(dir, "schedule.bin"));
+        schedule.recordDownload(FEED, items("a"), false, 0);
+        try {
+            schedule.save();
+            fail();
+        } catch (IOException e) {
+            // no directory yet
+        }
+
+        assertTrue(dir.mkdir());
+        schedule.save();
+        assertTrue(new File(dir, "schedule.bin").exists());
+    }
+
+    @Test
+    public void hashesDifferForSimilarUrls() {
+        long[] hashes = FeedSchedule.itemHashes(items("https://example.com/1", "https://example.com/2", "https://example.com/12", "https://example.com/21", null));
+        for (int i = 1; i < hashes.length; i++)
+            assertTrue(hashes[i - 1] < hashes[i]); // sorted, no two equal
+    }
+}
@@ -0,0 +1,99 @@
+package com.nunti;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/* Saved pages in src/test/resources/pages, extracted with the allow-list the app passes in (src/HtmlPurifyList.ts). */
+public class ReadableExtractorTest {
+    private static final String PAGE_URL = "https://news.example.com/2023/bridge";
+    private static ReadableExtractor extractor;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        // tests run in android/app
+        String list = new String(Files.readAllBytes(Paths.get("../../src/HtmlPurifyList.ts")), StandardCharsets.UTF_8);
+        int attributesAt = list.indexOf("attributes:");
+        extractor = new ReadableExtractor(quoted(list.substring(0, attributesAt)), quoted(list.substring(attributesAt)));
+    }
+
+    private static List<String> quoted(String source) {
+        List<String> values = new ArrayList<>();
+        Matcher matcher = Pattern.compile("'([^']+)'").matcher(source);
+        while (matcher.find())
+            values.add(matcher.group(1));
+        return values;
+    }
+
+    private static ReadableExtractor.Article extract(String page) throws IOException {
+        InputStream input = ReadableExtractorTest.class.getResourceAsStream("/pages/" + page);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1)
+            bytes.write(buffer, 0, read);
+        input.close();
+        return extractor.extract(new String(bytes.toByteArray(), StandardCharsets.UTF_8), PAGE_URL);
+    }
+
+    @Test
+    public void extractsTheStoryOfANewsPage() throws Exception {
+        ReadableExtractor.Article article = extract("news.html");
+
+        assertEquals("Harbour bridge reopens after two years of repairs", article.title); // og:title over <title>
+        assertEquals("Alex Rivera", article.byline);
+        assertEquals("City News", article.siteName);
+        assertEquals("The bridge carries traffic again from Monday.", article.excerpt);
+        assertEquals("en", article.lang);
+
+        assertTrue(article.textContent.contains("Crews replaced all 48 suspension cables"));
+        assertTrue(article.textContent.contains("sensors installed on the new cables"));
+        assertEquals(article.textContent.length(), article.length);
+        for (String clutter : new String[] { "World", "Advertisement", "Tunnel plans shelved", "Comment from reader", "All rights reserved", "window.ads" })
+            assertFalse(clutter, article.textContent.contains(clutter));
+    }
+
+    @Test
+    public void resolvesRelativeLinksAgainstThePage() throws Exception {
+        ReadableExtractor.Article article = extract("news.html");
+
+        assertTrue(article.content, article.content.startsWith("<div id=\"readability-page-1\" class=\"page\">"));
+        assertTrue(article.content, article.content.contains("<a href=\"https://news.example.com/transport/ferry-timetable\">"));
+        assertFalse(article.content, article.content.contains("<script"));
+    }
+
+    @Test
+    public void turnsTextDivsIntoParagraphsAndKeepsImages() throws Exception {
+        ReadableExtractor.Article article = extract("blog.html");
+
+        assertEquals("Sourdough starters, feeding schedules and patience", article.title); // "| Crumb Blog" dropped
+        assertEquals("By Sam Baker", article.byline);
+        assertEquals("ltr", article.dir);
+        assertNull(article.siteName);
+        assertTrue(article.excerpt, article.excerpt.startsWith("A sourdough starter is only flour"));
+        assertTrue(article.content, article.content.contains("<p>Feed it twice a day"));
+        assertTrue(article.content, article.content.contains("<img src=\"https://news.example.com/images/starter.jpg\""));
+        assertFalse(article.textContent.contains("By Sam Baker"));
+        assertFalse(article.textContent.contains("Archives"));
+    }
+
+    @Test
+    public void returnsNullWithoutReadableContent() throws Exception {
+        assertNull(extract("empty.html"));
+    }
+}
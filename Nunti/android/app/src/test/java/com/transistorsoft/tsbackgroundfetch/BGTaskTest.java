@@ -0,0 +1,211 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Races on the task registry and the task states: whichever of finish, onTimeout and a second
+ * firing of the job gets there first, the job is released exactly once.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BGTaskTest {
+    private static final int ROUNDS = 200;
+    private static final int THREADS = 4;
+
+    private Context context;
+    private ExecutorService threads;
+
+    /** Headless task that never finishes, the timed out task stays held like while JS is still running. */
+    public static class IgnoringHeadlessTask {
+        public IgnoringHeadlessTask(Context context, BGTask task) {
+        }
+    }
+
+    private static class CountingHandler implements FetchJobService.CompletionHandler {
+        final AtomicInteger calls = new AtomicInteger(0);
+
+        @Override
+        public void finish() {
+            calls.incrementAndGet();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.getApplication();
+        threads = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        BGTask.clear();
+        threads.shutdownNow();
+    }
+
+    /* Releases all actions at once from different threads, returns their results in order. */
+    private <T> List<T> race(List<Callable<T>> actions) throws Exception {
+        final CountDownLatch ready = new CountDownLatch(actions.size());
+        final AtomicBoolean go = new AtomicBoolean(false);
+        List<Future<T>> futures = new ArrayList<>();
+        for (final Callable<T> action : actions) {
+            futures.add(threads.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    ready.countDown();
+                    while (!go.get()) {
+                        // spin, waking up from a latch staggers the threads more than the races last
+                    }
+                    return action.call();
+                }
+            }));
+        }
+        ready.await();
+        go.set(true);
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures)
+            results.add(future.get(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private Callable<Boolean> finishing(final BGTask task) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return task.finish();
+            }
+        };
+    }
+
+    private Callable<Boolean> timingOut(final BGTask task) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                task.onTimeout(context);
+                return true;
+            }
+        };
+    }
+
+    private static Callable<Boolean> adding(final BGTask task) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return BGTask.addTask(task);
+            }
+        };
+    }
+
+    @Test
+    public void finishAndTimeoutReleaseTheJobOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            CountingHandler handler = new CountingHandler();
+            BGTask task = new BGTask(context, "race", handler, 1);
+            assertTrue(BGTask.addTask(task));
+            assertTrue(task.start());
+
+            List<Callable<Boolean>> actions = new ArrayList<>();
+            actions.add(finishing(task));
+            actions.add(timingOut(task)); // no config for "race", the timeout finishes the task itself
+            actions.add(finishing(task));
+            actions.add(timingOut(task));
+            List<Boolean> results = race(actions);
+
+            assertEquals("round " + round, 1, handler.calls.get());
+            assertTrue("round " + round + ", both finish calls released the job", !(results.get(0) && results.get(2)));
+            assertEquals(BGTask.State.FINISHED, task.getState());
+            assertNull(BGTask.getTask("race"));
+        }
+    }
+
+    @Test
+    public void onlyOneOfConcurrentFiringsIsRegistered() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            List<CountingHandler> handlers = new ArrayList<>();
+            List<BGTask> tasks = new ArrayList<>();
+            List<Callable<Boolean>> actions = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                CountingHandler handler = new CountingHandler();
+                BGTask task = new BGTask(context, i % 2 == 0 ? "Duplicate" : "duplicate", handler, 1); // ids match case-insensitively
+                handlers.add(handler);
+                tasks.add(task);
+                actions.add(adding(task));
+            }
+            List<Boolean> added = race(actions);
+
+            int registered = -1;
+            for (int i = 0; i < added.size(); i++) {
+                if (added.get(i)) {
+                    assertEquals("round " + round + ", two tasks registered", -1, registered);
+                    registered = i;
+                }
+            }
+            assertTrue("round " + round + ", no task registered", registered >= 0);
+            assertSame(tasks.get(registered), BGTask.getTask("DUPLICATE"));
+
+            tasks.get(registered).finish();
+            for (CountingHandler handler : handlers)
+                assertTrue(handler.calls.get() <= 1);
+            assertEquals(1, handlers.get(registered).calls.get());
+            assertNull(BGTask.getTask("duplicate"));
+        }
+    }
+
+    @Test
+    public void successorReplacesATimedOutTaskWhileItFinishes() throws Exception {
+        BackgroundFetch.getInstance(context).scheduleTask(new BackgroundFetchConfig.Builder()
+                .setTaskId("held")
+                .setDelay(60000)
+                .setStopOnTerminate(false)
+                .setJobService(IgnoringHeadlessTask.class.getName())
+                .build());
+
+        for (int round = 0; round < ROUNDS; round++) {
+            CountingHandler oldHandler = new CountingHandler();
+            BGTask old = new BGTask(context, "held", oldHandler, 2);
+            assertTrue(BGTask.addTask(old));
+            assertTrue(old.start());
+            old.onTimeout(context); // headless timeout event, the task stays held until JS finishes it
+            assertEquals(BGTask.State.TIMED_OUT, old.getState());
+            assertEquals(0, oldHandler.calls.get());
+
+            CountingHandler successorHandler = new CountingHandler();
+            BGTask successor = new BGTask(context, "held", successorHandler, 2);
+            List<Callable<Boolean>> actions = new ArrayList<>();
+            actions.add(finishing(old)); // JS finishes late
+            actions.add(adding(successor)); // the job fires again meanwhile
+            actions.add(timingOut(old));
+            List<Boolean> results = race(actions);
+
+            assertTrue("round " + round + ", successor rejected", results.get(1));
+            assertEquals("round " + round, 1, oldHandler.calls.get());
+            assertEquals(BGTask.State.FINISHED, old.getState());
+            assertSame(successor, BGTask.getTask("held"));
+            assertEquals(0, successorHandler.calls.get());
+
+            successor.finish();
+            assertEquals(1, successorHandler.calls.get());
+        }
+    }
+}
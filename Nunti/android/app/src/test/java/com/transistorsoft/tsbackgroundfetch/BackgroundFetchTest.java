@@ -0,0 +1,88 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import org.junit.Test;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/* Whether a fetch event goes to the running app or to a headless task, from the activity lifecycle the tracker saw. */
+public class BackgroundFetchTest {
+    private static class Fallback implements BooleanSupplier {
+        final boolean running;
+        int asked = 0;
+
+        Fallback(boolean running) {
+            this.running = running;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            asked++;
+            return running;
+        }
+    }
+
+    @Test
+    public void headlessWithoutAFetchCallback() {
+        ActivityTracker tracker = new ActivityTracker();
+        tracker.onActivityCreated(null, null);
+        Fallback fallback = new Fallback(true);
+
+        assertFalse(BackgroundFetch.isForeground(false, tracker, fallback));
+        assertFalse(BackgroundFetch.isForeground(false, null, fallback));
+        assertEquals(0, fallback.asked);
+    }
+
+    @Test
+    public void followsLiveActivitiesOfTheTracker() {
+        ActivityTracker tracker = new ActivityTracker();
+        Fallback fallback = new Fallback(true);
+        assertFalse(BackgroundFetch.isForeground(true, tracker, fallback)); // process started for the job
+
+        tracker.onActivityCreated(null, null);
+        assertTrue(BackgroundFetch.isForeground(true, tracker, fallback));
+
+        tracker.onActivityStopped(null); // in the background, still alive
+        assertTrue(BackgroundFetch.isForeground(true, tracker, fallback));
+
+        tracker.onActivityCreated(null, null); // e.g. a share sheet on top
+        tracker.onActivityDestroyed(null);
+        assertTrue(BackgroundFetch.isForeground(true, tracker, fallback));
+
+        tracker.onActivityDestroyed(null); // back pressed out of the app
+        assertFalse(BackgroundFetch.isForeground(true, tracker, fallback));
+
+        assertEquals(0, fallback.asked);
+    }
+
+    @Test
+    public void recreatedActivityStaysForeground() {
+        // on a configuration change (rotation) the old activity is destroyed before the new one is created
+        ActivityTracker tracker = new ActivityTracker();
+        Fallback fallback = new Fallback(false);
+        tracker.onActivityCreated(null, null);
+
+        tracker.onActivityDestroyed(true);
+        assertTrue(BackgroundFetch.isForeground(true, tracker, fallback)); // no headless task in between
+        tracker.onActivityCreated(null, null);
+        assertTrue(BackgroundFetch.isForeground(true, tracker, fallback));
+
+        tracker.onActivityDestroyed(false); // the recreated one is counted once
+        assertFalse(BackgroundFetch.isForeground(true, tracker, fallback));
+        assertEquals(0, fallback.asked);
+    }
+
+    @Test
+    public void asksTheRunningTasksWithoutATracker() {
+        Fallback running = new Fallback(true);
+        assertTrue(BackgroundFetch.isForeground(true, null, running));
+        assertEquals(1, running.asked);
+
+        Fallback notRunning = new Fallback(false);
+        assertFalse(BackgroundFetch.isForeground(true, null, notRunning));
+        assertEquals(1, notRunning.asked);
+    }
+}
@@ -0,0 +1,71 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/* The pause is kept by the queue, so a worker already waiting for a task cannot start one early. */
+public class BackgroundThreadPoolTest {
+    private static final Runnable TASK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Test
+    public void waitingWorkerGetsNoTaskDuringThePause() throws Exception {
+        final BackgroundThreadPool.PausableQueue queue = new BackgroundThreadPool.PausableQueue(4);
+        final AtomicReference<Runnable> taken = new AtomicReference<>();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(queue.take());
+                } catch (InterruptedException e) {
+                    // the test fails below
+                }
+            }
+        });
+        worker.start();
+        Thread.sleep(100); // blocked in take
+
+        long pause = 500;
+        long start = System.nanoTime();
+        queue.pauseFor(pause);
+        assertTrue(queue.offer(TASK));
+        worker.join(5000);
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertSame(TASK, taken.get());
+        assertTrue("took the task after " + elapsed + " ms", elapsed >= pause - 50);
+    }
+
+    @Test
+    public void pollTimesOutDuringThePauseAndKeepsTheTask() throws Exception {
+        BackgroundThreadPool.PausableQueue queue = new BackgroundThreadPool.PausableQueue(4);
+        queue.pauseFor(60 * 1000);
+        queue.offer(TASK);
+
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void fullQueueRefusesInsteadOfWaiting() throws Exception {
+        BackgroundThreadPool.PausableQueue queue = new BackgroundThreadPool.PausableQueue(2);
+        assertTrue(queue.offer(TASK));
+        assertTrue(queue.offer(TASK));
+        assertFalse(queue.offer(TASK, 1, TimeUnit.SECONDS));
+        assertEquals(0, queue.remainingCapacity());
+
+        assertSame(TASK, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.size());
+    }
+}
@@ -0,0 +1,105 @@
+package com.transistorsoft.tsbackgroundfetch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/* The policy keeps no clock, runs are fed in as results and the intervals read back in minutes. */
+public class IntervalPolicyTest {
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long MINIMUM = 15 * MINUTE;
+
+    private IntervalPolicy.State state = IntervalPolicy.INITIAL;
+
+    private long run(int result, long minimum) {
+        state = IntervalPolicy.next(state, result);
+        return IntervalPolicy.interval(state, minimum) / MINUTE;
+    }
+
+    private long run(int result) {
+        return run(result, MINIMUM);
+    }
+
+    @Test
+    public void startsAtTheConfiguredInterval() {
+        assertEquals(15, IntervalPolicy.interval(IntervalPolicy.INITIAL, MINIMUM) / MINUTE);
+    }
+
+    @Test
+    public void noDataStreakStretchesFromTheSecondRunUpToEightTimes() {
+        assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(23, run(BackgroundFetch.FETCH_RESULT_NO_DATA)); // 22.5 rounded
+        assertEquals(34, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(51, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(76, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(114, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(120, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        for (int i = 0; i < 20; i++)
+            assertEquals(120, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+    }
+
+    @Test
+    public void singleNoDataRunsBetweenNewDataDoNotStretch() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+            assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NEW_DATA));
+        }
+    }
+
+    @Test
+    public void newDataHalvesBackToTheMinimum() {
+        for (int i = 0; i < 10; i++)
+            run(BackgroundFetch.FETCH_RESULT_NO_DATA);
+        assertEquals(60, run(BackgroundFetch.FETCH_RESULT_NEW_DATA));
+        assertEquals(30, run(BackgroundFetch.FETCH_RESULT_NEW_DATA));
+        assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NEW_DATA));
+        assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NEW_DATA));
+
+        // the no-data streak starts over
+        assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(23, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+    }
+
+    @Test
+    public void failuresDoubleUpToTheCapAndASuccessDropsThem() {
+        assertEquals(30, run(BackgroundFetch.FETCH_RESULT_FAILED));
+        assertEquals(60, run(BackgroundFetch.FETCH_RESULT_FAILED));
+        assertEquals(120, run(BackgroundFetch.FETCH_RESULT_FAILED));
+        for (int i = 0; i < 100; i++)
+            assertEquals(120, run(BackgroundFetch.FETCH_RESULT_FAILED)); // no overflow of the shift
+
+        assertEquals(15, run(BackgroundFetch.FETCH_RESULT_NEW_DATA));
+    }
+
+    @Test
+    public void failuresBackOffFromTheStretchedInterval() {
+        run(BackgroundFetch.FETCH_RESULT_NO_DATA);
+        assertEquals(23, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+        assertEquals(45, run(BackgroundFetch.FETCH_RESULT_FAILED));
+        assertEquals(90, run(BackgroundFetch.FETCH_RESULT_FAILED));
+
+        // a no-data run ends the failures and keeps counting the streak the failures interrupted
+        assertEquals(34, run(BackgroundFetch.FETCH_RESULT_NO_DATA));
+    }
+
+    @Test
+    public void neverAboveADayNorBelowTheMinimum() {
+        long twelveHours = 12 * HOUR;
+        assertEquals(24 * 60, run(BackgroundFetch.FETCH_RESULT_FAILED, twelveHours));
+        assertEquals(24 * 60, run(BackgroundFetch.FETCH_RESULT_FAILED, twelveHours));
+
+        state = IntervalPolicy.INITIAL;
+        long twoDays = 48 * HOUR; // configured above the cap, it is kept as it is
+        assertEquals(48 * 60, run(BackgroundFetch.FETCH_RESULT_FAILED, twoDays));
+        assertEquals(48 * 60, run(BackgroundFetch.FETCH_RESULT_NEW_DATA, twoDays));
+    }
+
+    @Test
+    public void otherResultsLeaveTheStateAsItIs() {
+        run(BackgroundFetch.FETCH_RESULT_FAILED);
+        IntervalPolicy.State before = state;
+        assertSame(before, IntervalPolicy.next(before, -1));
+    }
+}
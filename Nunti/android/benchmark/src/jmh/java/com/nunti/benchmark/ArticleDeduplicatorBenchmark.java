@@ -0,0 +1,50 @@
+package com.nunti.benchmark;
+
+import com.nunti.ArticleDeduplicator;
+import com.nunti.ArticleStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/* Cleaning a download: every 20th article already rated, 7 days max age (the default setting). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArticleDeduplicatorBenchmark {
+    private static final long MAX_AGE_MS = 7 * FeedCorpus.DAY_MS;
+
+    @Param({ "1000", "10000" })
+    public int articles;
+
+    private List<ArticleDeduplicator.Item> items;
+    private Set<String> seenUrls;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(articles);
+        seenUrls = new HashSet<>();
+        for (ArticleStore.Record article : new FeedCorpus(FeedCorpus.SEED).articles(articles, 50)) {
+            items.add(new ArticleDeduplicator.Item(article.url, article.title, article.date));
+            if (items.size() % 20 == 0)
+                seenUrls.add(article.url);
+        }
+    }
+
+    @Benchmark
+    public ArticleDeduplicator.Result clean() {
+        return ArticleDeduplicator.clean(items, seenUrls, MAX_AGE_MS, FeedCorpus.NOW, new Random(FeedCorpus.SEED));
+    }
+}
@@ -0,0 +1,70 @@
+package com.nunti.benchmark;
+
+import com.nunti.ArticleIndex;
+import com.nunti.ArticleStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Building the filter index over the article list and the queries ArticlesFilter sends. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArticleIndexBenchmark {
+    private static final int FEEDS = 50;
+
+    @Param({ "1000", "10000" })
+    public int articles;
+
+    private List<ArticleIndex.Entry> entries;
+    private ArticleIndex index;
+    private String search;
+    private List<String> feedUrls;
+    private List<String> tagFeedUrls;
+
+    @Setup
+    public void setUp() {
+        FeedCorpus corpus = new FeedCorpus(FeedCorpus.SEED);
+        entries = new ArrayList<>(articles);
+        for (ArticleStore.Record article : corpus.articles(articles, FEEDS))
+            entries.add(new ArticleIndex.Entry(article.title, article.description, article.sourceUrl));
+        index = ArticleIndex.build(entries);
+        search = corpus.commonWord() + " " + corpus.rareWord();
+        feedUrls = new ArrayList<>();
+        for (int feed = 0; feed < 5; feed++)
+            feedUrls.add(FeedCorpus.feedUrl(feed));
+        tagFeedUrls = new ArrayList<>();
+        for (int feed = 0; feed < FEEDS; feed += 3)
+            tagFeedUrls.add(FeedCorpus.feedUrl(feed));
+    }
+
+    @Benchmark
+    public ArticleIndex build() {
+        return ArticleIndex.build(entries);
+    }
+
+    @Benchmark
+    public int[] search() {
+        return index.query(search, null, null);
+    }
+
+    @Benchmark
+    public int[] feedsAndTags() {
+        return index.query(null, feedUrls, tagFeedUrls);
+    }
+
+    @Benchmark
+    public int[] allFilters() {
+        return index.query(search, feedUrls, tagFeedUrls);
+    }
+}
@@ -0,0 +1,80 @@
+package com.nunti.benchmark;
+
+import com.nunti.ArticleRanker;
+import com.nunti.ArticleStore;
+import com.nunti.KeywordExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Ranking with the default settings (10 % discover, 20 per page). Learned weights are random ones
+ * for the keywords of the first 500 articles, the rest of the terms weigh nothing, as for a fresh profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArticleRankerBenchmark {
+    private static final double DISCOVER_RATIO = 0.1;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "1000", "10000" })
+    public int articles;
+
+    private List<KeywordExtractor.Keywords> keywords;
+    private ArticleRanker.WeightTable weights;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        List<KeywordExtractor.Document> documents = new ArrayList<>(articles);
+        for (ArticleStore.Record article : new FeedCorpus(FeedCorpus.SEED).articles(articles, 50))
+            documents.add(new KeywordExtractor.Document(article.sourceUrl, article.title, article.description));
+        keywords = new KeywordExtractor(pool).extract(documents);
+
+        Random random = new Random(FeedCorpus.SEED);
+        Map<String, Double> learned = new HashMap<>();
+        for (KeywordExtractor.Keywords article : keywords.subList(0, Math.min(500, keywords.size()))) {
+            for (String word : article.words)
+                learned.put(word, random.nextGaussian() * 10);
+        }
+        weights = new ArticleRanker.WeightTable(learned);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /* What opening the feed costs, only the first page is ordered. */
+    @Benchmark
+    public int[] firstPage() {
+        return rank().range(0, PAGE_SIZE);
+    }
+
+    /* Scrolling through everything. */
+    @Benchmark
+    public int[] allPages() {
+        return rank().range(0, articles);
+    }
+
+    private ArticleRanker.Ranking rank() {
+        return new ArticleRanker(pool).rank(keywords, weights, DISCOVER_RATIO, PAGE_SIZE, new Random(FeedCorpus.SEED));
+    }
+}
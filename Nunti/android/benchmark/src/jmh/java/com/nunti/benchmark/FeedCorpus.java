@@ -0,0 +1,175 @@
+package com.nunti.benchmark;
+
+import com.nunti.ArticleStore;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/*
+ * Synthetic feeds, the same seed always gives the same corpus.
+ * Words are drawn from a generated vocabulary with a Zipf-like distribution, so a few terms are in most
+ * articles and many in only one, like in real feeds, which is what TF-IDF, the index and the ranker are sensitive to.
+ * Articles also carry what the deduplicator removes: repeated urls, repeated titles and articles past the age limit.
+ */
+public class FeedCorpus {
+    public static final long SEED = 20231018;
+    public static final long NOW = 1700000000000L;
+    public static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ze", "bra", "cho", "dri", "fen", "gul", "hav",
+        "jor", "kle", "mar", "nis", "pol", "qua", "ste", "tor", "ung", "vel", "wir", "xan", "yor", "zel",
+    };
+    private static final double DUPLICATE_URL_RATIO = 0.03;
+    private static final double DUPLICATE_TITLE_RATIO = 0.05;
+    private static final double UNDATED_RATIO = 0.02;
+    private static final int MAX_AGE_DAYS = 10; // dedup benchmarks use 7 days, the rest is old
+    private static final DateTimeFormatter RFC822 = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
+
+    private final Random random;
+    private final String[] vocabulary;
+    private final double[] cumulative; // Zipf CDF over vocabulary ranks
+
+    public FeedCorpus(long seed) {
+        random = new Random(seed);
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY_SIZE) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(4);
+            for (int i = 0; i < syllables; i++)
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            words.add(word.toString());
+        }
+        vocabulary = words.toArray(new String[0]);
+
+        cumulative = new double[VOCABULARY_SIZE];
+        double sum = 0;
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < VOCABULARY_SIZE; rank++)
+            cumulative[rank] /= sum;
+    }
+
+    public static String feedUrl(int feed) {
+        return "https://feed" + feed + ".example.com/rss";
+    }
+
+    /** The most common word, matches many articles in searches. */
+    public String commonWord() {
+        return vocabulary[0];
+    }
+
+    /** A word that only few articles contain. */
+    public String rareWord() {
+        return vocabulary[VOCABULARY_SIZE / 2];
+    }
+
+    /** count articles spread round robin over feeds, keywords are not set. */
+    public List<ArticleStore.Record> articles(int count, int feeds) {
+        List<ArticleStore.Record> articles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int feed = i % feeds;
+            ArticleStore.Record article = new ArticleStore.Record();
+            article.source = "Feed " + feed;
+            article.sourceUrl = feedUrl(feed);
+            if (i > 0 && random.nextDouble() < DUPLICATE_URL_RATIO)
+                article.url = articles.get(random.nextInt(i)).url;
+            else
+                article.url = "https://feed" + feed + ".example.com/articles/" + i;
+            if (i > 0 && random.nextDouble() < DUPLICATE_TITLE_RATIO)
+                article.title = articles.get(random.nextInt(i)).title.toUpperCase(Locale.ROOT);
+            else
+                article.title = sentence(6 + random.nextInt(7));
+            article.description = sentence(30 + random.nextInt(51));
+            article.cover = random.nextBoolean() ? "https://img.example.com/" + i + ".jpg" : null;
+            article.date = random.nextDouble() < UNDATED_RATIO ? null : NOW - (long) (random.nextDouble() * MAX_AGE_DAYS * DAY_MS);
+            articles.add(article);
+        }
+        return articles;
+    }
+
+    /** An RSS 2.0 document, descriptions are HTML in CDATA with entities and an inline image. */
+    public String rss(int feed, int items) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<rss version=\"2.0\" xmlns:media=\"http://search.yahoo.com/mrss/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n");
+        xml.append("<channel>\n<title>Feed ").append(feed).append("</title>\n<link>").append(feedUrl(feed)).append("</link>\n");
+        for (ArticleStore.Record article : articles(items, 1)) {
+            xml.append("<item>\n<title>").append(escape(article.title)).append("</title>\n");
+            xml.append("<link>").append(article.url).append("</link>\n");
+            if (article.date != null)
+                xml.append("<pubDate>").append(RFC822.format(Instant.ofEpochMilli(article.date).atOffset(ZoneOffset.UTC))).append("</pubDate>\n");
+            xml.append("<description><![CDATA[").append(html(article)).append("]]></description>\n");
+            if (article.cover != null)
+                xml.append("<media:content url=\"").append(article.cover).append("\" medium=\"image\"/>\n");
+            xml.append("</item>\n");
+        }
+        xml.append("</channel>\n</rss>\n");
+        return xml.toString();
+    }
+
+    /** An Atom document, entries have several links of which the alternate one is the article. */
+    public String atom(int feed, int items) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<feed xmlns=\"http://www.w3.org/2005/Atom\">\n<title>Feed ").append(feed).append("</title>\n");
+        for (ArticleStore.Record article : articles(items, 1)) {
+            xml.append("<entry>\n<title>").append(escape(article.title)).append("</title>\n");
+            xml.append("<link rel=\"replies\" href=\"").append(article.url).append("#comments\"/>\n");
+            xml.append("<link rel=\"alternate\" href=\"").append(article.url).append("\"/>\n");
+            if (article.date != null)
+                xml.append("<updated>").append(Instant.ofEpochMilli(article.date)).append("</updated>\n");
+            xml.append("<content type=\"html\">").append(escape(html(article))).append("</content>\n");
+            xml.append("</entry>\n");
+        }
+        xml.append("</feed>\n");
+        return xml.toString();
+    }
+
+    private String html(ArticleStore.Record article) {
+        StringBuilder html = new StringBuilder("<p>");
+        if (article.cover != null)
+            html.append("<img src=\"").append(article.cover).append("\" alt=\"\"/>");
+        html.append(article.description.replace(" " + vocabulary[1] + " ", " &amp; ")).append("</p>");
+        return html.toString();
+    }
+
+    private String sentence(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0)
+                text.append(' ');
+            text.append(word());
+        }
+        text.setCharAt(0, Character.toUpperCase(text.charAt(0)));
+        return text.toString();
+    }
+
+    private String word() {
+        double sample = random.nextDouble();
+        int low = 0;
+        int high = VOCABULARY_SIZE - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < sample)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return vocabulary[low];
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
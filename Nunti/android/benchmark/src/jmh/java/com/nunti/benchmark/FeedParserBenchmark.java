@@ -0,0 +1,45 @@
+package com.nunti.benchmark;
+
+import com.nunti.FeedArticle;
+import com.nunti.FeedCharset;
+import com.nunti.FeedParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* One feed response from bytes to articles, charset detection included, as FeedDownloader does it. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FeedParserBenchmark {
+    @Param({ "rss", "atom" })
+    public String format;
+
+    @Param({ "20", "200" })
+    public int items;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        FeedCorpus corpus = new FeedCorpus(FeedCorpus.SEED);
+        String xml = format.equals("atom") ? corpus.atom(0, items) : corpus.rss(0, items);
+        body = xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<FeedArticle> parse() throws Exception {
+        return FeedParser.parse(FeedCharset.open(new ByteArrayInputStream(body), "application/xml"), items, false);
+    }
+}
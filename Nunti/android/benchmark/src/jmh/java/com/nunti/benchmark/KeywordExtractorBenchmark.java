@@ -0,0 +1,131 @@
+package com.nunti.benchmark;
+
+import com.nunti.ArticleStore;
+import com.nunti.KeywordExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * TF-IDF keywords of a whole download, on a pool sized like KeywordExtractorModule's.
+ * naive is the former ArticlesUtils.ExtractKeywords on one thread, it scans every article of the feed
+ * for every word to count documents containing it, for the speedup of extract over it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KeywordExtractorBenchmark {
+    @Param({ "1000", "5000", "10000" })
+    public int articles;
+
+    @Param({ "50" })
+    public int feeds;
+
+    private List<KeywordExtractor.Document> documents;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        documents = new ArrayList<>(articles);
+        for (ArticleStore.Record article : new FeedCorpus(FeedCorpus.SEED).articles(articles, feeds))
+            documents.add(new KeywordExtractor.Document(article.sourceUrl, article.title, article.description));
+        pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<KeywordExtractor.Keywords> extract() throws InterruptedException {
+        return new KeywordExtractor(pool).extract(documents);
+    }
+
+    @Benchmark
+    public List<Map<String, Double>> naive() {
+        Map<String, List<KeywordExtractor.Document>> feeds = new LinkedHashMap<>();
+        for (KeywordExtractor.Document document : documents) {
+            List<KeywordExtractor.Document> feed = feeds.get(document.source);
+            if (feed == null) {
+                feed = new ArrayList<>();
+                feeds.put(document.source, feed);
+            }
+            feed.add(document);
+        }
+
+        // pass 1 - word sets and term counts per article
+        Map<KeywordExtractor.Document, Set<String>> wordSets = new HashMap<>();
+        Map<KeywordExtractor.Document, Map<String, Integer>> termCounts = new HashMap<>();
+        for (KeywordExtractor.Document document : documents) {
+            Set<String> set = new HashSet<>();
+            Map<String, Integer> counts = new HashMap<>();
+            for (String word : document.text.split(" ")) {
+                if (word.isEmpty())
+                    continue;
+                set.add(word);
+                Integer count = counts.get(word);
+                counts.put(word, count == null ? 1 : count + 1);
+            }
+            wordSets.put(document, set);
+            termCounts.put(document, counts);
+        }
+
+        // pass 2 - tf-idf, documents containing a term are counted again for every occurrence of it
+        List<Map<String, Double>> results = new ArrayList<>(documents.size());
+        for (List<KeywordExtractor.Document> feed : feeds.values()) {
+            for (KeywordExtractor.Document document : feed) {
+                Map<String, Integer> counts = termCounts.get(document);
+                int totalTermCount = 0;
+                for (int count : counts.values())
+                    totalTermCount += count;
+
+                Map<String, Double> keywords = new LinkedHashMap<>();
+                for (String word : document.text.split(" ")) {
+                    if (word.isEmpty())
+                        continue;
+                    double tf = (double) counts.get(word) / totalTermCount;
+                    int documentsContainingTerm = 0;
+                    for (KeywordExtractor.Document other : feed) {
+                        if (wordSets.get(other).contains(word))
+                            documentsContainingTerm++;
+                    }
+                    double idf = Math.log((double) feed.size() / (1 + documentsContainingTerm)) + 1;
+                    keywords.put(word, tf * idf * 1000);
+                }
+
+                List<Map.Entry<String, Double>> items = new ArrayList<>(keywords.entrySet());
+                Collections.sort(items, new Comparator<Map.Entry<String, Double>>() {
+                    @Override
+                    public int compare(Map.Entry<String, Double> first, Map.Entry<String, Double> second) {
+                        return Double.compare(second.getValue(), first.getValue());
+                    }
+                });
+                Map<String, Double> top = new LinkedHashMap<>();
+                for (int i = 0; i < Math.min(KeywordExtractor.MAX_KEYWORDS, items.size()); i++)
+                    top.put(items.get(i).getKey(), items.get(i).getValue());
+                results.add(top);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,127 @@
+package com.nunti.benchmark;
+
+import com.nunti.ArticleStore;
+import com.nunti.FeedArticle;
+import com.nunti.FeedDownloader;
+import com.nunti.FeedValidatorStore;
+import com.nunti.KeywordExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * What is persisted after every download: the article cache (with keywords) and the per-feed validators
+ * with their parsed articles, written and read back from a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StoreBenchmark {
+    private static final int FEEDS = 50;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "1000", "10000" })
+    public int articles;
+
+    private File directory;
+    private List<ArticleStore.Record> records;
+    private ArticleStore articleStore;
+    private FeedValidatorStore validatorStore;
+    private FeedDownloader.Request request;
+    private List<FeedArticle> requestArticles;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        directory = Files.createTempDirectory("nunti-benchmark").toFile();
+        records = new FeedCorpus(FeedCorpus.SEED).articles(articles, FEEDS);
+        List<KeywordExtractor.Document> documents = new ArrayList<>(articles);
+        for (ArticleStore.Record record : records)
+            documents.add(new KeywordExtractor.Document(record.sourceUrl, record.title, record.description));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        List<KeywordExtractor.Keywords> keywords = new KeywordExtractor(pool).extract(documents);
+        pool.shutdown();
+        for (int i = 0; i < records.size(); i++)
+            records.get(i).keywords = keywords.get(i);
+
+        articleStore = new ArticleStore(new File(directory, "articles.bin"));
+        articleStore.write(FeedCorpus.NOW, records);
+
+        // articles split into their feeds, the way they come out of FeedDownloader
+        validatorStore = new FeedValidatorStore(new File(directory, "validators.bin"));
+        for (int feed = 0; feed < FEEDS; feed++) {
+            List<FeedArticle> feedArticles = new ArrayList<>();
+            for (int i = feed; i < records.size(); i += FEEDS)
+                feedArticles.add(toFeedArticle(records.get(i)));
+            request = new FeedDownloader.Request(FeedCorpus.feedUrl(feed), 0, feedArticles.size(), false, null);
+            requestArticles = feedArticles;
+            validatorStore.put(request, "\"etag-" + feed + "\"", "Tue, 14 Nov 2023 22:13:20 GMT", feedArticles);
+        }
+        validatorStore.save();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public ArticleStore writeArticles() throws IOException {
+        articleStore.write(FeedCorpus.NOW, records);
+        return articleStore;
+    }
+
+    /* Opening the cache and decoding the first page, what a cold start reads. */
+    @Benchmark
+    public List<ArticleStore.Record> openFirstPage() throws IOException {
+        ArticleStore store = new ArticleStore(new File(directory, "articles.bin"));
+        store.open();
+        return store.read(0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<ArticleStore.Record> readAllArticles() {
+        return articleStore.read(0, articles);
+    }
+
+    /* One feed changed, the whole store is rewritten. */
+    @Benchmark
+    public FeedValidatorStore saveValidators() throws IOException {
+        validatorStore.put(request, "\"etag-changed\"", null, requestArticles);
+        validatorStore.save();
+        return validatorStore;
+    }
+
+    @Benchmark
+    public FeedValidatorStore loadValidators() throws IOException {
+        FeedValidatorStore store = new FeedValidatorStore(new File(directory, "validators.bin"));
+        store.load();
+        return store;
+    }
+
+    private static FeedArticle toFeedArticle(ArticleStore.Record record) {
+        FeedArticle article = new FeedArticle();
+        article.title = record.title;
+        article.description = record.description;
+        article.url = record.url;
+        article.cover = record.cover;
+        article.date = record.date;
+        return article;
+    }
+}
@@ -40,9 +40,9 @@ let MyHeadlessTask = async (event) => {
         return;
     }
     log.info('start: ', taskId);
-    await Background.RunBackgroundTask(taskId, true);
-    log.info('finishing now: ', taskId);
-    BackgroundFetch.finish(taskId);
+    const result = await Background.RunBackgroundTask(taskId, true);
+    log.info('finishing now: ', taskId, result);
+    BackgroundFetch.finish(taskId, result);
 };
 
 BackgroundFetch.registerHeadlessTask(MyHeadlessTask);
@@ -10,6 +10,7 @@ import {
     View,
     TouchableWithoutFeedback,
     NativeEventSubscription,
+    NativeEventEmitter,
 } from 'react-native';
 
 import {
@@ -73,7 +74,12 @@ type NavigationParamList = {
 
 const NavigationDrawer = createDrawerNavigator<NavigationParamList>();
 const MaterialYouModule = NativeModules.MaterialYouModule;
+const MaterialYouEvents = new NativeEventEmitter(MaterialYouModule);
+// palettes are module constants, updated by the module when the wallpaper or system colors change
+const materialYouPalette: { dark: Accent | null, light: Accent | null } = {
+    dark: MaterialYouModule.dark, light: MaterialYouModule.light };
 const AccessibilityModule = NativeModules.AccessibilityModule;
+const AccessibilityEvents = new NativeEventEmitter(AccessibilityModule);
 const NotificationsModule = NativeModules.Notifications;
 
 export const modalRef = React.createRef<ModalRef>();
@@ -120,7 +126,7 @@ function App(props: AppProps) {
     const fabLog = useRef(log.current.context('Fab'));
 
     // animations
-    const [animationsEnabled, setAnimationsEnabled] = useState<boolean | undefined>(undefined);
+    const [animationsEnabled, setAnimationsEnabled] = useState<boolean>(AccessibilityModule.animationsEnabled);
     const snackAnim = useSharedValue(0);
     const modalAnim = useSharedValue(0);
 
@@ -199,8 +205,8 @@ function App(props: AppProps) {
             /* set up background task */
             const onEvent = async (taskId: string) => {
                 log.current.context('BackgroundFetch').debug('Task: ', taskId);
-                await Background.RunBackgroundTask(taskId, false);
-                BackgroundFetch.finish(taskId);
+                const result = await Background.RunBackgroundTask(taskId, false);
+                BackgroundFetch.finish(taskId, result);
             };
             const onTimeout = async (taskId: string) => {
                 log.current.context('BackgroundFetch').warn('TIMEOUT task: ', taskId);
@@ -238,7 +244,6 @@ function App(props: AppProps) {
                 Backend.UserSettings.Save();
             }
 
-            setAnimationsEnabled(await AccessibilityModule.areAnimationsEnabled());
             await reloadGlobalStates();
         })();
 
@@ -259,11 +264,26 @@ function App(props: AppProps) {
         const dimensionsSubscription = Dimensions.addEventListener('change', ({ window }) =>
             dimensionsUpdate(window.height, window.width));
 
+        const animationsSubscription = AccessibilityEvents.addListener('animationsEnabledChanged',
+            (event: { animationsEnabled: boolean }) => setAnimationsEnabled(event.animationsEnabled));
+
+        const paletteSubscription = MaterialYouEvents.addListener('materialYouPaletteChanged',
+            (palette: { dark: Accent, light: Accent }) => {
+                materialYouPalette.dark = palette.dark;
+                materialYouPalette.light = palette.light;
+                if (Backend.UserSettings.Accent == 'material_you') {
+                    log.current.debug('Material You palette changed, reapplying theme');
+                    updateTheme(Backend.UserSettings.Theme, Backend.UserSettings.Accent);
+                }
+            });
+
         // splash screen will hide when navigator has finished loading
 
         return () => {
             backHandler.remove();
             dimensionsSubscription.remove();
+            paletteSubscription.remove();
+            animationsSubscription.remove();
             appearanceSubscription.current?.remove();
 
             clearInterval(snackTimer.current);
@@ -345,7 +365,7 @@ function App(props: AppProps) {
         else
             newTheme.dark = true;
 
-        newTheme.colors = await getAccent(accentName, newTheme.dark);
+        newTheme.colors = getAccent(accentName, newTheme.dark);
 
         // override background colours when using black theme
         // otherwise identical to dark theme
@@ -374,12 +394,13 @@ function App(props: AppProps) {
         StatusBar.setBackgroundColor(statusBarColor);
     }
 
-    const getAccent = async (accentName: AccentName, isDarkTheme: boolean) => {
+    const getAccent = (accentName: AccentName, isDarkTheme: boolean) => {
         let accent: Accent;
-        if (accentName == 'material_you' && isDarkTheme)
-            accent = patchMaterialYouPalette(await MaterialYouModule.getMaterialYouPalette('dark'), true);
+        const palette = isDarkTheme ? materialYouPalette.dark : materialYouPalette.light;
+        if (accentName == 'material_you' && palette != null)
+            accent = patchMaterialYouPalette({ ...palette }, isDarkTheme); // copy, patching must not touch the cached palette
         else if (accentName == 'material_you')
-            accent = patchMaterialYouPalette(await MaterialYouModule.getMaterialYouPalette('light'), false);
+            throw new Error('Material you is not supported on this device');
         else
             accent = isDarkTheme ? { ...Accents[accentName].dark } : { ...Accents[accentName].light };
 
@@ -7,12 +7,13 @@ import { Downloader } from './Backend/Downloader';
 import { UserSettings } from './Backend/UserSettings';
 import { Utils } from './Backend/Utils';
 import { Storage } from './Backend/Storage';
-import { ArticlesUtils } from './Backend/ArticlesUtils';
+import { ArticlesUtils, RankedArticles } from './Backend/ArticlesUtils';
 import { ArticlesFilter } from './Backend/ArticlesFilter';
 import { Current } from './Backend/Current';
 import { Tag } from './Backend/Tag';
 import { Feed } from './Backend/Feed';
 import { OfflineCache } from './Backend/OfflineCache';
+import { Background } from './Backend/Background';
 import { ReadabilityArticle, WebpageParser } from './Backend/WebpageParser';
 import { ArticleSource, LearningStatus, TopicName, SortType } from './Props';
 
@@ -24,11 +25,16 @@ export class Backend {
     }
 
     public static StatusUpdateCallback: ((context: 'feed', percentageFloat: number) => void) | null = null;
+    /* Pages the feed will have once LoadRemainingFeedPages() ranked the rest, null when all pages are there. */
+    public static FeedPageCount: number | null = null;
+    /* Ranking of the last GetArticlesPaginated('feed') until its remaining pages are loaded. */
+    private static PendingFeedRanking: RankedArticles | null = null;
 
     /* Init some stuff like locale, meant to be called only once at app startup. */
     public static async Init(): Promise<void> {
         this.log.info('Init.');
         await UserSettings.RefreshUserSettings();
+        await Background.InitNativeSync();
     }
 
     /* Wrapper around GetArticles(), returns articles in pages. */
@@ -38,21 +44,72 @@ export class Backend {
         abort: AbortController | null = null
     ): Promise<Article[][]> {
 
+        const pageSize = this.UserSettings.FeedPageSize;
+        let pages: Article[][];
+        if (articleSource == 'feed') {
+            // only the first page is ranked up front, the rest of the order once a later page is opened
+            this.PendingFeedRanking?.release();
+            this.PendingFeedRanking = null;
+            this.FeedPageCount = null;
+            const ranked = await this.GetFeedArticles({ sortType: filter.sortType }, filter, abort);
+            ranked.firstPage.forEach((art: Article, i: number) => { art.id = i; });
+            pages = Utils.PaginateArticles(ranked.firstPage.slice(), pageSize);
+            if (ranked.total > ranked.firstPage.length) {
+                this.PendingFeedRanking = ranked;
+                this.FeedPageCount = Math.ceil(ranked.total / pageSize);
+            } else {
+                ranked.release();
+            }
+            Current.CurrentArticles[articleSource] = pages;
+            return pages;
+        }
+
         const arts = await this.GetArticles(articleSource, filter, abort);
 
         const timeBegin = Date.now();
-        const pages = Utils.PaginateArticles(arts, this.UserSettings.FeedPageSize);
+        pages = Utils.PaginateArticles(arts, pageSize);
         Current.CurrentArticles[articleSource] = pages;
         const timeEnd = Date.now();
 
         this.log.context('Pagination').debug(`Finished in ${timeEnd - timeBegin} ms`);
         return pages;
     }
-    /* Serves as a waypoint for frontend to grab rss,history,bookmarks, etc. */
+    /* Fills in the feed pages after the first one, the first call after GetArticlesPaginated('feed') ranks the rest. */
+    public static async LoadRemainingFeedPages(): Promise<void> {
+        const ranked = this.PendingFeedRanking;
+        if (ranked == null)
+            return;
+        let rest: Article[];
+        try {
+            rest = await ranked.rest();
+        } catch (err) {
+            // e.g. the native ranking was dropped, the feed then ends after the first page
+            this.log.context('LoadRemainingFeedPages').error('Cannot rank the rest of the feed.', err);
+            rest = [];
+        }
+        if (ranked != this.PendingFeedRanking) // loaded by an earlier call, or a refresh replaced it meanwhile
+            return;
+
+        // articles rated away from the pages shown so far stay away
+        const pages = Current.CurrentArticles['feed'];
+        const shown = new Set<Article>();
+        pages.forEach((page: Article[]) => page.forEach((art: Article) => shown.add(art)));
+        const arts = ranked.firstPage.filter((art: Article) => shown.has(art)).concat(rest);
+        for (let i = 0; i < arts.length; i++)
+            arts[i].id = i;
+        pages.splice(0, pages.length, ...Utils.PaginateArticles(arts, this.UserSettings.FeedPageSize));
+        this.PendingFeedRanking = null;
+        this.FeedPageCount = null;
+    }
+    /*
+    * Serves as a waypoint for frontend to grab rss,history,bookmarks, etc.
+    * respectSchedule lets a feed download skip feeds that are not due, only background syncs set it.
+    */
     public static async GetArticles(
         articleSource: ArticleSource,
         filter: ArticlesFilter = ArticlesFilter.Empty,
-        abort: AbortController | null = null
+        abort: AbortController | null = null,
+        respectSchedule = false
     ): Promise<Article[]> {
 
         const log = this.log.context('GetArticles');
@@ -60,9 +117,11 @@ export class Backend {
 
         let articles: Article[];
         switch (articleSource) {
-        case 'feed':
-            articles = await this.GetFeedArticles({ sortType: filter.sortType }, abort);
+        case 'feed': {
+            const ranked = await this.GetFeedArticles({ sortType: filter.sortType, respectSchedule: respectSchedule }, filter, abort);
+            articles = ranked.firstPage.concat(await ranked.rest());
             break;
+        }
         case 'bookmarks':
             articles = (await Storage.GetSavedArticles()).reverse();
             break;
@@ -72,11 +131,13 @@ export class Backend {
         }
         articles.forEach(Article.Fix);
 
-        const filterStartTime = Date.now();
-        const newarts = ArticlesFilter.Apply(articles, filter);
-        const filterEndTime = Date.now();
-        log.info(`Filtering complete in ${(filterEndTime - filterStartTime)} ms, ${newarts.length}/${articles.length} passed.`);
-        articles = newarts;
+        if (articleSource != 'feed') { // feed is filtered before ranking
+            const filterStartTime = Date.now();
+            const newarts = ArticlesFilter.Apply(articles, filter);
+            const filterEndTime = Date.now();
+            log.info(`Filtering complete in ${(filterEndTime - filterStartTime)} ms, ${newarts.length}/${articles.length} passed.`);
+            articles = newarts;
+        }
 
         // repair article ids, frontend will crash if index doesnt match up with id.
         for (let i = 0; i < articles.length; i++)
@@ -84,11 +145,12 @@ export class Backend {
 
         return articles;
     }
-    /* Retrieves sorted articles to show in feed. */
+    /* Retrieves ranked articles to show in feed, filter is applied before ranking. */
     public static async GetFeedArticles(
-        overrides: { sortType?: SortType } = { sortType: undefined },
+        overrides: { sortType?: SortType, respectSchedule?: boolean } = { sortType: undefined },
+        filter: ArticlesFilter = ArticlesFilter.Empty,
         abort: AbortController | null = null
-    ): Promise<Article[]> {
+    ): Promise<RankedArticles> {
 
         const log = this.log.context('GetFeedArticles');
 
@@ -102,65 +164,84 @@ export class Backend {
 
         await Storage.CheckDB();
 
-        const cache = await Storage.GetArticleCache();
+        const cache = await Storage.GetArticleCacheHeader();
         let arts: Article[];
+        let indexVersion = `cache:${cache.timestamp}`;
 
-        const cacheAgeMinutes = (Date.now() - parseInt(cache.timestamp.toString())) / 60000;
+        const cacheAgeMinutes = (Date.now() - cache.timestamp) / 60000;
 
         if (await Utils.IsDoNotDownloadActive()) {
             log.info('DoNotDownload active, will use cache.');
-            arts = cache.articles;
+            arts = await Storage.GetCachedArticles();
         } else if (cacheAgeMinutes >= this.UserSettings.ArticleCacheTime) {
             const result = await Downloader.DownloadArticles(abort, (percent: number) => {
                 statusUpdateCallback(percent * 0.6);
-            });
+            }, overrides.respectSchedule);
             arts = result.articles;
-            if (arts.length > 0 && result.saveToCache)
-                await Storage.FSStore.setItem('cache', JSON.stringify({ 'timestamp': Date.now(), 'articles': arts }));
-            else
+            if (arts.length > 0 && result.saveToCache) {
+                const timestamp = Date.now();
+                await Storage.SetArticleCache(arts, timestamp);
+                indexVersion = `cache:${timestamp}`;
+            } else {
+                indexVersion = `download:${Date.now()}`;
                 log.warn(`Downloaded articles will NOT be saved to cache. (${(arts.length > 0 ? 'many feeds unexpectedly failed' : 'no articles were loaded')})`);
+            }
         } else {
             log.info(`Using cached articles. (${cacheAgeMinutes} minutes old)`);
-            arts = cache.articles;
+            arts = await Storage.GetCachedArticles();
         }
+        await ArticlesFilter.IndexArticles(arts, indexVersion);
         if (abort?.signal.aborted)
             throw new Error('Aborted by AbortController.');
         statusUpdateCallback(0.8);
 
-        arts = await ArticlesUtils.SortArticles(arts, overrides);
-        if (abort?.signal.aborted)
-            throw new Error('Aborted by AbortController.');
-        statusUpdateCallback(0.9);
-
+        // cleaning and filtering do not depend on order, so only the survivors get ranked
+        let lastArt: Article | null = null;
         if (!this.UserSettings.DisableBackgroundTasks && this.UserSettings.EnableNotifications) {
             // force inject last notification's article to the top of the feed
             const notifCache = await Storage.StorageGet('notifications-cache');
             if (notifCache.seen_urls.length > 1) {
-                const lastArt: Article | null = notifCache.seen_urls[notifCache.seen_urls.length - 1];
-                if (lastArt?.url != null || lastArt?.url != undefined) {
-                    const i = Utils.FindArticleByUrl(lastArt.url, arts);
-                    if (i >= 0)
-                        arts.splice(i, 1);
-                    arts.unshift(lastArt);
-                    log.info(`Inserted '${lastArt.title}' (last notification) at the start of feed.`);
+                const notifArt: Article | null = notifCache.seen_urls[notifCache.seen_urls.length - 1];
+                if (notifArt?.url != null || notifArt?.url != undefined) {
+                    arts.unshift(notifArt);
+                    lastArt = notifArt;
                 }
             }
         }
-
+        arts.forEach(Article.Fix);
+        arts = await ArticlesUtils.CleanArticles(arts);
+        arts = await ArticlesFilter.ApplyIndexed(arts, filter);
+        if (lastArt != null) {
+            const i = arts.indexOf(lastArt);
+            if (i >= 0)
+                arts.splice(i, 1);
+            else
+                lastArt = null;
+        }
         if (abort?.signal.aborted)
             throw new Error('Aborted by AbortController.');
-        statusUpdateCallback(0.95);
-        arts = await ArticlesUtils.CleanArticles(arts);
+        statusUpdateCallback(0.9);
+
+        const ranked = await ArticlesUtils.SortArticles(arts, overrides);
+        if (lastArt != null) {
+            ranked.firstPage.unshift(lastArt);
+            ranked.total += 1;
+            log.info(`Inserted '${lastArt.title}' (last notification) at the start of feed.`);
+        }
         statusUpdateCallback(1);
 
         const timeEnd = Date.now();
-        log.info(`Loaded feed in ${((timeEnd - timeBegin) / 1000)} seconds (${arts.length} articles total).`);
-        if (abort?.signal.aborted)
+        log.info(`Loaded first page of feed in ${((timeEnd - timeBegin) / 1000)} seconds (${ranked.total} articles total).`);
+        if (abort?.signal.aborted) {
+            ranked.release();
             throw new Error('Aborted by AbortController.');
+        }
 
-        OfflineCache.TryDoOfflineSave(arts);
+        // the offline save wants the whole order, so it is only produced when a save will actually run
+        if (await OfflineCache.IsOfflineSaveDue())
+            ranked.rest().then((rest: Article[]) => OfflineCache.TryDoOfflineSave(ranked.firstPage.concat(rest)));
 
-        return arts;
+        return ranked;
     }
     /* Sends push notification to user, returns true on success, false on fail. */
     public static async SendNotification(message: string, channel: 'new_articles' | 'other'): Promise<boolean> {
@@ -193,6 +274,23 @@ export class Backend {
         }
     }
 
+    /* Sends articles as one grouped notification, an article notified again replaces its previous notification */
+    public static async SendArticlesNotification(arts: Article[]): Promise<boolean> {
+        const log = this.log.context('SendArticlesNotification');
+        const locale = Utils.GetLocale();
+        const channelName = locale.notifications_new_articles;
+        const channelDescription = locale.notifications_new_articles_description;
+        const articles = arts.map(art => ({ url: art.url, title: art.title, source: art.source }));
+        const result: true | string = await NotificationsModule.notifyBatch(articles, channelName, null, channelName, channelDescription);
+        if (result === true) {
+            log.info(`succesfully sent ${arts.length} articles`);
+            return true;
+        } else {
+            log.error(`Failed to send ${arts.length} articles, reason: ${result}`);
+            return false;
+        }
+    }
+
     /* Change RSS topics */
     public static async ChangeDefaultTopics(topicName: TopicName, localisedName: string, enable: boolean): Promise<void> {
         const log = this.log.context('ChangeDefaultTopics');
@@ -3,6 +3,9 @@ import { Article } from './Article';
 import { Tag } from './Tag';
 import { UserSettings } from './UserSettings';
 import { Utils } from './Utils';
+import Log from '../Log';
+import { NativeModules } from 'react-native';
+const ArticleIndexModule = NativeModules.ArticleIndexModule;
 
 export class ArticlesFilter {
     public sortType: SortType | undefined;
@@ -12,6 +15,59 @@ export class ArticlesFilter {
 
     public static Empty: ArticlesFilter = {sortType: undefined, search: undefined, tags: undefined, feeds: undefined};
 
+    private static log = Log.BE.context('ArticlesFilter');
+    // positions of the currently loaded articles in the native index, see ArticleIndex.java
+    private static indexVersion: string | null = null;
+    private static indexOrdinals: WeakMap<Article, number> = new WeakMap();
+
+    /* Registers freshly loaded articles with the native index, the index is only rebuilt when version changes. */
+    public static async IndexArticles(articles: Article[], version: string): Promise<void> {
+        const timeBegin = Date.now();
+        if (await ArticleIndexModule.getVersion() != version) {
+            await ArticleIndexModule.build(articles.map((art: Article) => {
+                return { title: art.title, description: art.description, sourceUrl: art.sourceUrl };
+            }), version);
+            this.log.context('IndexArticles').debug(`Index for '${version}' built in ${Date.now() - timeBegin} ms (${articles.length} articles)`);
+        }
+        const ordinals: WeakMap<Article, number> = new WeakMap();
+        for (let i = 0; i < articles.length; i++)
+            ordinals.set(articles[i], i);
+        this.indexOrdinals = ordinals;
+        this.indexVersion = version;
+    }
+
+    /* Same result as Apply, answered by the native index. Articles which are not indexed go through Apply. */
+    public static async ApplyIndexed(articles: Article[], filter: ArticlesFilter): Promise<Article[]> {
+        const query: {search?: string, feeds?: string[], tagFeeds?: string[]} = {};
+        if (filter.feeds != undefined && filter.feeds.length > 0 && !(filter.feeds.length == 1 && filter.feeds[0] == 'all_rss'))
+            query.feeds = filter.feeds;
+        if (filter.search != undefined && filter.search != '' && filter.search != null)
+            query.search = filter.search;
+        if (filter.tags != undefined && filter.tags != null && filter.tags.length > 0) {
+            const tagNames = filter.tags.map((tag: Tag) => tag.name);
+            query.tagFeeds = UserSettings.Instance.FeedList.filter((feed) => {
+                return feed.tags.some((tag: Tag) => tagNames.indexOf(tag.name) >= 0);
+            }).map((feed) => feed.url);
+        }
+        if (Object.keys(query).length == 0)
+            return articles;
+        if (this.indexVersion == null)
+            return this.Apply(articles, filter);
+
+        let ordinals: number[];
+        try {
+            ordinals = await ArticleIndexModule.query(this.indexVersion, query);
+        } catch (err) {
+            this.log.context('ApplyIndexed').warn('Index query failed, filtering without index.', err);
+            return this.Apply(articles, filter);
+        }
+        const matched: Set<number> = new Set(ordinals);
+        return articles.filter((art: Article) => {
+            const ordinal = this.indexOrdinals.get(art);
+            return ordinal === undefined ? this.Apply([art], filter).length > 0 : matched.has(ordinal);
+        });
+    }
+
     public static Apply(articles: Article[], filter: ArticlesFilter): Article[] {
         const newarts: Article[] = [];
         articles.forEach((art: Article) => {
@@ -1,4 +1,4 @@
-import { AppState } from 'react-native';
+import { AppState, NativeEventSubscription, NativeModules } from 'react-native';
 import Log from '../Log';
 import { Storage } from './Storage';
 import { UserSettings } from './UserSettings';
@@ -7,26 +7,35 @@ import { Article } from './Article';
 import * as ScopedStorage from 'react-native-scoped-storage';
 import { Backup } from './Backup';
 import { OfflineCache } from './OfflineCache';
+import { Downloader } from './Downloader';
+import { Utils } from './Utils';
+import BackgroundFetch, { FetchResult } from '../BackgroundFetch';
+const BackgroundSyncModule = NativeModules.BackgroundSyncModule;
 
 export class Background {
     private static log = Log.BE.context('Background');
 
     public static BackgroundLock = false; //prevents running multiple background task instances
+    private static TaskTimeBudget = 50 * 1000; // BGTask times out after 60 s, leave some for cleanup
+    private static NotificationBatchSize = 5; // articles per grouped notification
+    private static AppStateSubscription: NativeEventSubscription | null = null;
 
     /* Does background task work, can be even called before Backend.Init() */
     /* Is run for ALL background tasks (both sync and notification) */
-    public static async RunBackgroundTask(taskId: string, isHeadless: boolean): Promise<void> {
+    /* Returns the result to finish the task with, undefined if the task did not run. */
+    public static async RunBackgroundTask(taskId: string, isHeadless: boolean): Promise<FetchResult | undefined> {
         const log = this.log.context('BackgroundTask:' + parseInt((Math.random() * 100).toString()));
         log.info(`Gained control over backgroundTask, id:${taskId}, isHeadless:${isHeadless}`);
+        const deadline = Date.now() + this.TaskTimeBudget;
         if (AppState.currentState != 'background') {
             log.info(`App is not in background (state = ${AppState.currentState}), exiting background task.`);
-            return;
+            return undefined;
         }
 
         // lock mechanism
         if (this.BackgroundLock) {
             log.warn('Another background task already running, exiting now..');
-            return;
+            return undefined;
         }
         this.BackgroundLock = true;
         log.info('BackgroundLock locked.');
@@ -35,35 +44,136 @@ export class Background {
             await BackendAPI.Init();
             if (UserSettings.Instance.DisableBackgroundTasks) {
                 log.info('DisableBackgroundTasks enabled, exiting...');
-                return;
+                return BackgroundFetch.FETCH_RESULT_NO_DATA;
             }
 
+            const startedAt = Date.now();
             const arts = await this.TryDoBackgroundSyncAsync();
-            await this.TryDoNotificationAsync(arts);
-            await this.TryDoAutoBackupAsync();
-            await OfflineCache.TryDoOfflineSave(arts);
+            await this.Traced('sync:notification', () => this.TryDoNotificationAsync(arts));
+            await this.Traced('sync:backup', () => this.TryDoAutoBackupAsync());
+            await this.Traced('sync:offline', () => OfflineCache.TryDoOfflineSave(arts, deadline));
+            await this.WriteNativeSyncProfile();
+            return this.GetFetchResult(startedAt);
         } catch (err) {
             log.error(`Exception on backgroundTask, id:${taskId}, error:`, err);
+            return BackgroundFetch.FETCH_RESULT_FAILED;
         } finally {
             log.info('Unlocking BackgroundLock now.');
             this.BackgroundLock = false;
         }
     }
 
+    /* New data if this run downloaded feeds with new items, no data if it used the cache or nothing changed. */
+    private static GetFetchResult(startedAt: number): FetchResult {
+        const download = Downloader.LastDownload;
+        if (download == null || download.finishedAt < startedAt)
+            return BackgroundFetch.FETCH_RESULT_NO_DATA;
+        if (download.failed)
+            return BackgroundFetch.FETCH_RESULT_FAILED;
+        return download.feedsWithNewItems > 0 ? BackgroundFetch.FETCH_RESULT_NEW_DATA : BackgroundFetch.FETCH_RESULT_NO_DATA;
+    }
+
+    /* Runs a phase of the background task inside a recorded span, see MetricsRecorder.java. */
+    private static async Traced<T>(name: string, phase: () => Promise<T>): Promise<T> {
+        const span = BackgroundFetch.beginSpan(name, 'Background');
+        try {
+            return await phase();
+        } finally {
+            BackgroundFetch.endSpan(span);
+        }
+    }
+
+    /*
+     * Periodic jobs that need no JS are run natively (BackgroundSync.java) from a profile written here.
+     * Merges what those runs changed, then keeps the profile current whenever the app goes to background.
+     */
+    public static async InitNativeSync(): Promise<void> {
+        await this.MergeNativeSyncState();
+        await this.WriteNativeSyncProfile();
+        if (this.AppStateSubscription == null) {
+            this.AppStateSubscription = AppState.addEventListener('change', (state) => {
+                if (state == 'background')
+                    this.WriteNativeSyncProfile();
+            });
+        }
+    }
+
+    /** Hands settings and data needed by native background runs over, they fall back to this JS task without it. */
+    public static async WriteNativeSyncProfile(): Promise<void> {
+        const log = this.log.context('NativeSyncProfile');
+        try {
+            const settings = UserSettings.Instance;
+            const learning_db = await Storage.StorageGet('learning_db');
+            const seen: Article[] = await Storage.StorageGet('seen');
+            const notifcache = await Storage.StorageGet('notifications-cache');
+            const locale = Utils.GetLocale();
+            await BackgroundSyncModule.setProfile(JSON.stringify({
+                version: 1,
+                disableBackgroundTasks: settings.DisableBackgroundTasks,
+                backgroundSync: settings.EnableBackgroundSync,
+                notifications: settings.EnableNotifications,
+                offlineReading: settings.EnableOfflineReading,
+                wifiOnly: settings.WifiOnly,
+                sortingEnabled: learning_db['upvotes'] + learning_db['downvotes'] >= settings.NoSortUntil,
+                nextBackupAt: settings.EnableAutomaticBackups ? settings.LastBackupTimestamp + settings.AutomaticBackupPeriod * 60 * 60 * 1000 : 0,
+                notificationPeriod: settings.NewArticlesNotificationPeriod,
+                articleCacheTime: settings.ArticleCacheTime,
+                maxArticlesPerChannel: settings.MaxArticlesPerChannel,
+                maxArticleAgeDays: settings.MaxArticleAgeDays,
+                discoverRatio: settings.DiscoverRatio,
+                feedPageSize: settings.FeedPageSize,
+                userAgent: Downloader.GetRandomUA(),
+                channelName: locale.notifications_new_articles,
+                channelDescription: locale.notifications_new_articles_description,
+                feeds: settings.FeedList.map(feed => ({
+                    url: feed.url, name: feed.name, enabled: feed.enabled, noImages: feed.noImages, failedAttempts: feed.failedAttempts,
+                })),
+                keywords: learning_db['keywords'],
+                seenUrls: seen.map(art => art.url),
+                notificationsCache: {
+                    seen_urls: notifcache.seen_urls.filter((url: unknown) => typeof url == 'string'),
+                    timestamp: parseInt(notifcache.timestamp.toString()),
+                },
+            }));
+        } catch (err) {
+            log.warn('Cannot write native sync profile, background tasks will run in JS.', err);
+        }
+    }
+
+    /** Applies feed failedAttempts and notifications-cache left by native background runs. */
+    private static async MergeNativeSyncState(): Promise<void> {
+        const log = this.log.context('NativeSyncState');
+        try {
+            const json: string | null = await BackgroundSyncModule.takeState();
+            if (json == null)
+                return;
+            const state: {ranAt: number, failedAttempts: {[url: string]: number}, notifications: {seen_urls: string[], timestamp: number}} = JSON.parse(json);
+            for (const feed of UserSettings.Instance.FeedList) {
+                if (state.failedAttempts[feed.url] !== undefined)
+                    feed.failedAttempts = state.failedAttempts[feed.url];
+            }
+            await UserSettings.Save();
+            await Storage.StorageSave('notifications-cache', state.notifications);
+            log.info(`Merged state of native background run from ${new Date(state.ranAt).toISOString()}.`);
+        } catch (err) {
+            log.error('Cannot merge native sync state.', err);
+        }
+    }
+
     /** Attempts to perform background sync according to user settings, returns fresh articles */
     private static async TryDoBackgroundSyncAsync(): Promise<Article[]> {
         if (UserSettings.Instance.EnableBackgroundSync) {
             const log = Background.log.context('BackgroundSync');
             log.debug('BackgroundSync is enabled, checking cache...');
-            const cache = await Storage.GetArticleCache();
-            const cacheAgeMinutes = (Date.now() - parseInt(cache.timestamp.toString())) / 60000;
+            const cache = await Storage.GetArticleCacheHeader();
+            const cacheAgeMinutes = (Date.now() - cache.timestamp) / 60000;
             if (cacheAgeMinutes >= UserSettings.Instance.ArticleCacheTime * 0.75) {
                 log.info('Cache will expire soon, invalidating cache to force re-sync...');
-                cache.timestamp = 0;
-                await Storage.FSStore.setItem('cache', JSON.stringify(cache));
+                await Storage.ExpireArticleCache();
             }
         }
-        return await BackendAPI.GetArticles('feed');
+        // unlike a refresh in the app, feeds that are not due are skipped
+        return await BackendAPI.GetArticles('feed', undefined, null, true);
     }
 
     private static async TryDoNotificationAsync(arts: Article[]): Promise<void> {
@@ -73,19 +183,17 @@ export class Background {
             const lastNotificationBeforeMins = (Date.now() - parseInt(notifcache.timestamp.toString())) / 60000;
             if (lastNotificationBeforeMins >= UserSettings.Instance.NewArticlesNotificationPeriod) {
                 notifcache.timestamp = Date.now();
-                let art: Article | null = null;
-                for (let i = 0; i < arts.length; i++) {
-                    if (notifcache.seen_urls.indexOf(arts[i].url) < 0) {
-                        art = arts[i];
-                        notifcache.seen_urls.push(art.url);
-                        notifcache.seen_urls.splice(0, notifcache.seen_urls.length - 20); //keep only last 20
-                        break;
-                    }
+                const unseen: Article[] = [];
+                for (let i = 0; i < arts.length && unseen.length < Background.NotificationBatchSize; i++) {
+                    if (notifcache.seen_urls.indexOf(arts[i].url) < 0)
+                        unseen.push(arts[i]);
                 }
-                if (art == null)
+                if (unseen.length == 0)
                     log.context('Notifications').warn('No available article to show.');
                 else {
-                    if (!await BackendAPI.SendNotification(art.title, 'new_articles'))
+                    notifcache.seen_urls.push(...unseen.map(art => art.url));
+                    notifcache.seen_urls.splice(0, notifcache.seen_urls.length - 20); //keep only last 20
+                    if (!await BackendAPI.SendArticlesNotification(unseen))
                         throw new Error('Failed to send notification.');
                 }
                 await Storage.StorageSave('notifications-cache', notifcache);
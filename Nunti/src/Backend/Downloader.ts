@@ -1,27 +1,68 @@
 import { Feed } from './Feed';
 import { Article } from './Article';
 import Log from '../Log';
-import iconv from 'iconv-lite';
 import { UserSettings } from './UserSettings';
 import { ArticlesUtils } from './ArticlesUtils';
-const DOMParser = require('@xmldom/xmldom').DOMParser; //eslint-disable-line
-const XMLSerializer = require('@xmldom/xmldom').XMLSerializer; //eslint-disable-line
-import { decode } from 'html-entities';
-import { Buffer } from 'buffer';
+import { NativeEventEmitter, NativeModules } from 'react-native';
+import BackgroundFetch from '../BackgroundFetch';
+const FeedDownloaderModule = NativeModules.FeedDownloaderModule;
+const FeedDownloaderEvents = new NativeEventEmitter(FeedDownloaderModule);
+
+/* Article record as returned by the native FeedParser. */
+type NativeFeedArticle = {
+    title: string;
+    description: string;
+    url: string;
+    cover: string | null;
+    date: number | null;
+}
+type NativeFeedResult = {
+    url: string;
+    articles: NativeFeedArticle[];
+    error: string | null;
+    durationMs: number;
+    notModified: boolean; // server answered 304, articles are reused from the previous download
+    skipped: boolean; // feed not due yet (native FeedSchedule), not requested, articles are from the previous download
+    newItems: boolean; // full download with item urls the previous download of the feed did not have
+}
+type NativeFeedProgress = {
+    runId: string;
+    url: string;
+    finished: number;
+    total: number;
+    articles: number;
+    error: string | null;
+}
 
 /* Collection of methods for downloading and extracting articles from RSS feeds. */
 export class Downloader {
     private static log = Log.BE.context('Downloader');
 
+    /* Outcome of the last DownloadArticles, background tasks finish with a result derived from it. */
+    /* failed when the articles would not be saved to cache (none loaded or many feeds unexpectedly failed). */
+    public static LastDownload: {finishedAt: number, feedsWithNewItems: number, failed: boolean} | null = null;
+
+    /* Conditional GET statistics since app start, hits are feeds answered with 304 Not Modified, skipped are feeds not due. */
+    public static async GetCacheStats(): Promise<{hits: number, misses: number, feeds: number, skipped: number}> {
+        return await FeedDownloaderModule.getCacheStats();
+    }
+
+    /* Forgets stored ETag/Last-Modified validators and learned feed schedules, so next download of every feed is a full one. */
+    public static async ResetCache(): Promise<void> {
+        await FeedDownloaderModule.clearCache();
+    }
+
     /* 
     * Downloads articles from all feeds in feedlist.
     * returns articles and saveToCache, which is false if articles were loaded,
     * but shall not be saved to cache (many feeds unexpectedly failed),
     * for more info see issue #72.
+    * Requests are always conditional, respectSchedule also skips feeds that are not due (background syncs).
     */
     public static async DownloadArticles(
         abort: AbortController | null = null,
-        statusUpdateCallback: ((perctFloat: number) => void) | null = null
+        statusUpdateCallback: ((perctFloat: number) => void) | null = null,
+        respectSchedule = false
     ): Promise<{articles: Article[], saveToCache: boolean}> {
 
         const THREADS = 6;
@@ -30,47 +71,96 @@ export class Downloader {
         log.info('Downloading articles..');
         const timeBegin = Date.now();
         const feedList = UserSettings.Instance.FeedList.slice();
+        const enabledFeeds = feedList.filter((feed: Feed) => feed.enabled);
 
         const arts: Article[] = [];
-        
-        let feeds_processed = 0;
 
         let unexpected_fails = 0;
         let total_fails = 0;
-
-        const statusUpdateWrapper = async (feed: Feed, maxArts: number): Promise<Article[]> => {
-            const x = await this.SingleFeed(feed, maxArts);
-            feeds_processed += 1;
+        let not_modified = 0;
+        let skipped = 0;
+        let new_items = 0;
+
+        if (abort?.signal.aborted)
+            throw new Error('Aborted by AbortController.');
+
+        // native downloader keeps THREADS requests in flight, reports progress after every finished feed
+        const runId = `DownloadArticles:${timeBegin}`;
+        const progressSubscription = FeedDownloaderEvents.addListener('feedDownloadProgress', (event: NativeFeedProgress) => {
+            if (event.runId != runId)
+                return;
+            if (abort?.signal.aborted)
+                FeedDownloaderModule.cancel(runId);
+            const percentage = ((event.finished + feedList.length - enabledFeeds.length) / feedList.length);
+            if (statusUpdateCallback) statusUpdateCallback(0.75 * percentage);
+        });
+        let results: NativeFeedResult[];
+        const downloadSpan = BackgroundFetch.beginSpan('sync:download', 'Downloader');
+        try {
+            results = await FeedDownloaderModule.downloadFeeds(enabledFeeds.map((feed: Feed) => {
+                return {
+                    url: feed.url,
+                    failedAttempts: feed.failedAttempts,
+                    maxArticles: UserSettings.Instance.MaxArticlesPerChannel,
+                    noImages: feed.noImages,
+                    userAgent: this.GetRandomUA(),
+                };
+            }), { runId: runId, threads: THREADS, respectSchedule: respectSchedule });
+        } finally {
+            progressSubscription.remove();
+            BackgroundFetch.endSpan(downloadSpan);
+        }
+        if (abort?.signal.aborted)
+            throw new Error('Aborted by AbortController.');
+
+        let resultIndex = 0;
+        for (let i = 0; i < feedList.length; i++) {
+            const feed = feedList[i];
+            const feedLog = this.log.context('SingleFeed').context(feed.url);
+            let x: Article[] = [];
+            if (!feed.enabled) {
+                feedLog.debug('(skipped, feed disabled)');
+            } else {
+                const result = results[resultIndex++];
+                if (result.error != null) {
+                    feedLog.error('Faulty RSS feed: ', result.error);
+                    if (feed.failedAttempts < 9999)
+                        feed.failedAttempts += 1;
+                    feedLog.info(`increased failedAttempts to ${feed.failedAttempts}`);
+                } else {
+                    x = this.ToArticles(feed, result.articles);
+                    if (result.skipped) {
+                        skipped++;
+                        feedLog.debug(`Not due, reused ${x.length} articles`);
+                    } else if (result.notModified) {
+                        not_modified++;
+                        feedLog.info(`Not modified, reused ${x.length} articles, took ${result.durationMs} ms`);
+                    } else {
+                        if (result.newItems)
+                            new_items++;
+                        feedLog.info(`Finished download, got ${x.length} articles, took ${result.durationMs} ms`);
+                    }
+                    if (!result.skipped && feed.failedAttempts != 0) {
+                        feed.failedAttempts = 0;
+                        feedLog.info(`reset failedAttempts to ${feed.failedAttempts}`);
+                    }
+                }
+            }
             if (x.length <= 0) { // feed probably failed
                 if (feed.failedAttempts < 4) { // is not marked as faulty
                     unexpected_fails++;
                 }
                 total_fails++;
             }
-            const percentage = (feeds_processed / UserSettings.Instance.FeedList.length);
-            if (statusUpdateCallback) statusUpdateCallback(0.75 * percentage);
-            return x;
-        };
-
-        while (feedList.length > 0) {
-            if (abort?.signal.aborted)
-                throw new Error('Aborted by AbortController.');
-            const promises: Promise<Article[]>[] = [];
-            for (let i = 0; i < THREADS; i++) {
-                if (feedList.length > 0) {
-                    promises.push(statusUpdateWrapper(feedList.splice(0,1)[0],UserSettings.Instance.MaxArticlesPerChannel));
-                }
-            }
-            const results: Article[][] = await Promise.all(promises);
-            for (let i = 0; i < results.length; i++) {
-                for(let y = 0; y < results[i].length; y++) {
-                    arts.push(results[i][y]);
-                }
-            }
+            for (let y = 0; y < x.length; y++)
+                arts.push(x[y]);
         }
+        await UserSettings.Save();
 
         const timeEnd = Date.now();
-        log.info(`Finished in ${((timeEnd - timeBegin)/1000)} seconds, got ${arts.length} articles, ${unexpected_fails} unexpected fails.`);
+        log.info(`Finished in ${((timeEnd - timeBegin)/1000)} seconds, got ${arts.length} articles, ${unexpected_fails} unexpected fails, ${not_modified} feeds not modified, ${skipped} feeds not due, ${new_items} feeds with new items.`);
+        const cacheStats = await this.GetCacheStats();
+        log.debug(`Conditional GET since app start: ${cacheStats.hits} hits, ${cacheStats.misses} misses, validators for ${cacheStats.feeds} feeds, ${cacheStats.skipped} skipped as not due.`);
 
         if (total_fails >= 0.9 * UserSettings.Instance.FeedList.length) {
             // more than 90% feeds failed, treat this as a nonfunctioning network and revert failed attempts
@@ -84,10 +174,17 @@ export class Downloader {
             await UserSettings.Save();
         }
 
-        ArticlesUtils.ExtractKeywords(arts, (perctFloat: number) => {
-            if (statusUpdateCallback) statusUpdateCallback(0.75 + 0.25 * perctFloat);
-        }, abort);
-        return {articles: arts, saveToCache: unexpected_fails/UserSettings.Instance.FeedList.length <= 0.25};
+        const keywordsSpan = BackgroundFetch.beginSpan('sync:keywords', 'Downloader');
+        try {
+            await ArticlesUtils.ExtractKeywords(arts, (perctFloat: number) => {
+                if (statusUpdateCallback) statusUpdateCallback(0.75 + 0.25 * perctFloat);
+            }, abort);
+        } finally {
+            BackgroundFetch.endSpan(keywordsSpan);
+        }
+        const saveToCache = unexpected_fails/UserSettings.Instance.FeedList.length <= 0.25;
+        this.LastDownload = {finishedAt: Date.now(), feedsWithNewItems: new_items, failed: arts.length == 0 || !saveToCache};
+        return {articles: arts, saveToCache: saveToCache};
     }
 
     /** Downloads article from a single feed, does not throw errors unless throwError is enabled. */
@@ -101,65 +198,19 @@ export class Downloader {
 
         const startTime = Date.now();
         const arts: Article[] = [];
-        let response: string;
         try {
-            try {
-                response = await this.Get(feed.url, log, feed.failedAttempts < 2 ? 5000 : 2000); //reduce timeout for feeds which tend to fail anyway
-            } catch(err) {
-                throw new Error('Cannot read RSS ' + err);
-            }
-            log.info(`Response in ${Date.now() - startTime} ms.`);
-
-            const parser = new DOMParser({
-                locator:{},
-                errorHandler:{warning:() => {},error:() => {},fatalError:(e:any) => { throw e; }} //eslint-disable-line
-            });
-            const serializer = new XMLSerializer();
-
-            const xml = parser.parseFromString(response);
-
-            let items: any = null; //eslint-disable-line
-            try { if (items === null || items.length == 0) items = xml.getElementsByTagName('channel')[0].getElementsByTagName('item'); } catch { /* dontcare */ } //traditional RSS
-            try { if (items === null || items.length == 0) items = xml.getElementsByTagName('feed')[0].getElementsByTagName('entry'); } catch { /* dontcare */ } //atom feeds
-            try { if (items === null || items.length == 0) items = xml.getElementsByTagName('item'); } catch { /* dontcare */ } //RDF feeds (https://validator.w3.org/feed/docs/rss1.html)
-            
-            if (items === null)
-                throw new Error('Cannot parse feed, don\'t know where to find articles. (unsupported feed format?)');
-
-            for (let y = 0; y < items.length; y++) {
-                if (y >= maxperfeed)
-                    break;
-                const item = items[y];
-                try {
-                    const art = new Article(Math.floor(Math.random() * 1e16));
-                    art.source = feed.name;
-                    art.sourceUrl = feed.url;
-                    art.title = item.getElementsByTagName('title')[0].childNodes[0].nodeValue.substr(0,256);
-                    art.title = decode(art.title, {scope: 'strict'});
-
-                    // fallback for CDATA retards
-                    if (art.title.trim() === '') {
-                        art.title = serializer.serializeToString(item).match(/title>.*CDATA\[(.*)\]\].*\/title/s)[1].trim();
-                        if (art.title.trim() == '')
-                            throw new Error(`Got empty title. ${item}`);
-                    }
-
-                    this.ParseArticleDescription(art, item, serializer);
-                    
-                    if (!feed.noImages) {
-                        if (art.cover === undefined)
-                            this.ParseArticleImage(art, item, serializer);
-                    } else
-                        art.cover = undefined;
-                    
-                    this.ParseArticleUrl(art, item);
-                    this.ParseArticleDate(art, item);
-
-                    arts.push(art);
-                } catch(err) {
-                    log.error(`Cannot process article, err: ${err}`);
-                }
-            }
+            // charset is detected and decoded natively while parsing, validators are not used for one-off checks
+            const results: NativeFeedResult[] = await FeedDownloaderModule.downloadFeeds([{
+                url: feed.url,
+                failedAttempts: feed.failedAttempts,
+                maxArticles: maxperfeed,
+                noImages: feed.noImages,
+                userAgent: this.GetRandomUA(),
+            }], { runId: `SingleFeed:${feed.url}:${startTime}`, threads: 1, conditional: false });
+            if (results[0].error != null)
+                throw new Error(results[0].error);
+
+            arts.push(...this.ToArticles(feed, results[0].articles));
             log.info(`Finished download, got ${arts.length} articles, took ${Date.now() - startTime} ms`);
 
             if (arts.length == 0 && throwError)
@@ -184,153 +235,24 @@ export class Downloader {
         }
     }
 
-    /* sends simple GET request to url, retrieving data as a string. */
-    public static Get(url: string, _log: Log, timeout = 5000): Promise<string> {
-        const log = _log.context('Get');
-        return new Promise((resolve, reject) => {
-            const request = new XMLHttpRequest();
-            let isFinished = false;
-
-            request.onload = () => {
-                isFinished = true;
-                if (request.status === 200) {
-                    let text = iconv.decode(Buffer.from(request.response), 'utf-8');
-                    if (text.indexOf('\uFFFD') >= 0) //detect replacement character
-                        text = iconv.decode(Buffer.from(request.response), 'iso-8859-1');
-                    resolve(text);
-                } else {
-                    reject(new Error(`Server returned ${request.status}, statustext: ${request.statusText}`));
-                }
-            };
-            request.ontimeout = () => {
-                isFinished = true;
-                reject(new Error(request.statusText));
-            };
-            request.onerror = () => {
-                isFinished = true;
-                log.warn(`request errored, status '${JSON.stringify(request)}'`);
-                reject(new Error('Timeout! ' + request.statusText));
-            };
-
-            request.responseType = 'arraybuffer';
-            request.timeout = timeout;
-            setTimeout(() => {
-                /* 10s max-timeout because sometimes feeds connect SSL but then hang for a long time,
-                * which "cheats" the request.timeout.*/
-                if (!isFinished) {
-                    reject(new Error('Timeout: answer took too long'));
-                }
-            }, timeout * 2);
-            request.open('GET', url);
-            request.setRequestHeader('Cache-Control', 'no-cache, no-store, must-revalidate');
-            request.setRequestHeader('User-Agent', this.GetRandomUA());
-            request.send();
-        });
-    }
-
-    private static ParseArticleDescription(art: Article, item: any, serializer: any) { //eslint-disable-line
-        try { art.description = item.getElementsByTagName('description')[0].childNodes[0].nodeValue; } catch { /* dontcare */ } 
-        try { art.description = item.getElementsByTagName('content')[0].childNodes[0].nodeValue; } catch { /* dontcare */ }
-        try {
-            //fallback for CDATA retards
-            if (art.description.trim() === '')
-                art.description = serializer.serializeToString(item).match(/description>.*CDATA\[(.*)\]\].*<\/description/s)[1];
-        } catch { /* dontcare */ }
-
-        art.description = decode(art.description, {scope: 'strict'});
-        art.description = art.description.trim();
-
-        try { art.description = art.description.replace(/<([^>]*)>/g,'').replace(/&[\S]+;/g,'').replace(/\[\S+\]/g, ''); } catch { /* dontcare */ }
-        try { art.description = art.description.substr(0,1024); } catch { /* dontcare */ }
-        try { 
-            art.description = art.description
-                .replace(/[^\S ]/,' ')
-                .replace(/[^\S]{3,}/g,' ')
-                // replaces lone surrogates by the replacement character
-                // see issue #86
-                .replace(/[\uD800-\uDBFF](?![\uDC00-\uDFFF])|(?:[^\uD800-\uDBFF]|^)[\uDC00-\uDFFF]/g, '\uFFFD');
-        } catch { /* dontcare */ }
-                    
-    }
-    private static ParseArticleImage(art: Article, item: any, serializer: any) { //eslint-disable-line
-        try {
-            const imagecontent =
-                item.getElementsByTagName('enclosure')[0] ||
-                item.getElementsByTagName('media:content')[0] ||
-                item.getElementsByTagName('media:thumbnail')[0];
-            if (
-                imagecontent &&
-                ((imagecontent.hasAttribute('type') && imagecontent.getAttribute('type').includes('image')) ||
-                (imagecontent.hasAttribute('medium') && imagecontent.getAttribute('medium') === 'image') ||
-                imagecontent.getAttribute('url').match(/\.(?:(?:jpe?g)|(?:png))/i))
-            ) {
-                art.cover = imagecontent.getAttribute('url');
-            }
-            // If this first approach did not find an image, try to check the whole 'content:encoded' or if it does not exist the whole 'item'.
-            // Checking 'content:encoded' first is necessary, because there are feeds that contain advertisement images outside of 'content:encoded' which would be detected if only the 'item' was checked.
-            if (art.cover === undefined) {
-                const content = item.getElementsByTagName('content:encoded')[0]
-                    ? serializer.serializeToString(item.getElementsByTagName('content:encoded')[0])
-                    : serializer.serializeToString(item);
-                // Try to match an <img...> tag or &lt;img...&gt; tag. For some reason even with &lt; in the content string, a &gt; is converted to >,
-                // perhaps because of the serializer?
-                // It needs to be done this way, otherwise feeds with mixed tags and entities cannot be matched properly.
-                // And it's also not possible to decode the content already here, because of feeds with mixed tags and entities (they exist...).
-                art.cover = content.match(/(<img[\w\W]+?)[/]?(?:>)|(&lt;img[\w\W]+?)[/]?(?:>|&gt;)/i)
-                    ? content
-                        .match(/(<img[\w\W]+?)[/]?(?:>)|(&lt;img[\w\W]+?)[/]?(?:>|&gt;)/i)[0]
-                        .match(/(src=[\w\W]+?)[/]?(?:>|&gt;)/i)[1]
-                        .match(/(https?:\/\/[^<>"']+?)[\n"'<]/i)[1]
-                    : serializer
-                        .serializeToString(item)
-                        .match(/(https?:\/\/[^<>"'/]+\/+[^<>"':]+?\.(?:(?:jpe?g)|(?:png)).*?)[\n"'<]/i)[1];
-            }
-            if (art.cover !== undefined) {
-                art.cover = decode(art.cover, { scope: 'strict' }).replace('http://', 'https://');
-            }
-        } catch { /* dontcare */ }
-    }
-    private static ParseArticleUrl(art: Article, item: any) { //eslint-disable-line
-        const isUrlUnset = () => art.url == 'about:blank' || art.url == null || art.url.trim() == '';
-
-        if (isUrlUnset())
-            try { art.url = item.getElementsByTagName('link')[0].childNodes[0].nodeValue; } catch { /* dontcare */ }
-
-        if (isUrlUnset()) // for CDATA cases, see issue #114
-            try { art.url = item.getElementsByTagName('link')[0].childNodes[0].nextSibling.nodeValue; } catch { /* dontcare */ }
-
-        if (isUrlUnset()) {
-            try {
-                const linkElements = item.getElementsByTagName('link');
-                if (linkElements.length == 1)
-                    art.url = item.getElementsByTagName('link')[0].getAttribute('href');
-                else {
-                    // Needed for Atom feeds which provide multiple <link>, i.e.: Blogspot
-                    // see gitlab issue #53
-                    for (let i = 0; i < linkElements.length; i++) {
-                        if (linkElements[i].getAttribute('rel') == 'alternate')
-                            art.url = linkElements[i].getAttribute('href');
-                    }
-                }
-            } catch { /* dontcare */ }
-        }
-
-        if (isUrlUnset()) {
-            throw new Error(`Could not find any link to article (title: '${art.title}')`);
+    /* Builds Article objects from records returned by the native parser. */
+    private static ToArticles(feed: Feed, items: NativeFeedArticle[]): Article[] {
+        const arts: Article[] = [];
+        for (let y = 0; y < items.length; y++) {
+            const item = items[y];
+            const art = new Article(Math.floor(Math.random() * 1e16));
+            art.source = feed.name;
+            art.sourceUrl = feed.url;
+            art.title = item.title;
+            art.description = item.description;
+            art.cover = item.cover ?? undefined;
+            art.url = item.url;
+            art.date = item.date != null ? new Date(item.date) : undefined;
+            arts.push(art);
         }
+        return arts;
     }
-    private static ParseArticleDate(art: Article, item: any) { //eslint-disable-line
-        const isDateUnset = () => art.date == undefined || art.date == null;
-        if (isDateUnset())
-            try { art.date = new Date(item.getElementsByTagName('dc:date')[0].childNodes[0].nodeValue); } catch { /* dontcare */ }
-        if (isDateUnset())
-            try { art.date = new Date(item.getElementsByTagName('pubDate')[0].childNodes[0].nodeValue); } catch { /* dontcare */ }
-        if (isDateUnset())
-            try { art.date = new Date(item.getElementsByTagName('published')[0].childNodes[0].nodeValue); } catch { /* dontcare */ }
-        if (isDateUnset())
-            try { art.date = new Date(item.getElementsByTagName('updated')[0].childNodes[0].nodeValue); } catch { /* dontcare */ }
-    }
-    private static GetRandomUA(): string {
+    public static GetRandomUA(): string {
         const agents = [
             'Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/104.0.0.0 Safari/537.36',
             'Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/103.0.0.0 Safari/537.36',
@@ -1,9 +1,11 @@
 import Log from '../Log';
 import { Article } from './Article';
-import { Storage } from './Storage';
 import { UserSettings } from './UserSettings';
 import { Utils } from './Utils';
 import { ReadabilityArticle, WebpageParser } from './WebpageParser';
+import HtmlPurifyList from '../HtmlPurifyList';
+import { NativeModules } from 'react-native';
+const OfflineStoreModule = NativeModules.OfflineStoreModule;
 
 export class OfflineArticle {
     public title = '';
@@ -18,31 +20,26 @@ export class OfflineArticle {
 }
 export class OfflineCache {
     private static log = Log.BE.context('OfflineCache');
-    private static cache: {[url: string]: OfflineArticle} | null = null; //to speed up re-resolving articles from cache
 
     /** Try to retrive article from offline-cache, returns null on fail. */
     public static async TryGetArticleAsync(url: string): Promise<OfflineArticle | null> {
         const log = this.log.context('GetArticle');
         log.info(`Retrieving article from offline cache '${url}'..`);
         try {
-            const arts = await this.GetCacheAsync();
-            return url in arts ? arts[url] : null;
+            const art: string | null = await OfflineStoreModule.get(url);
+            return art != null ? JSON.parse(art) : null;
         } catch (err) {
             log.error('Failed to retrieve offline cache article.',err);
             return null;
         }
     }
-    public static async GetCacheAsync(): Promise<{[url: string]: OfflineArticle}> {
-        if (this.cache == null)
-            this.cache = await Storage.GetOfflineCacheAsync();
-        return this.cache;
-    }
-    public static async TrySetCacheAsync(offlineCache: {[url: string]: OfflineArticle}): Promise<boolean> {
+    /** Saves a single article, least recently read articles are evicted once the store is over its size budget. */
+    public static async TrySetArticleAsync(url: string, art: OfflineArticle): Promise<boolean> {
         try {
-            await Storage.SetOfflineCacheAsync(offlineCache);
-            this.cache = offlineCache;
+            await OfflineStoreModule.put(url, JSON.stringify(art));
             return true;
         } catch (err) {
+            this.log.context('SetArticle').error('Failed to save offline cache article.', err);
             return false;
         }
     }
@@ -55,17 +52,24 @@ export class OfflineCache {
         }
         try {
             const art = await WebpageParser.ExtractContentAsync(url);
-            const cache = await this.GetCacheAsync();
-            cache[url] = art;
-            await this.TrySetCacheAsync(cache);
+            await this.TrySetArticleAsync(url, art);
             return art;
         } catch (err) {
             return null;
         }
     }
 
-    /** Attempts to save articles for offline reading according to user settings. Obeys wifionly mode. */
-    public static async TryDoOfflineSave(arts: Article[]): Promise<void> {
+    /**
+     * Attempts to save articles for offline reading according to user settings. Obeys wifionly mode.
+     * Pages are downloaded and extracted natively, several at a time and best ranked first. Each one is saved as soon as it is done,
+     * no new page is started close to deadline (epoch ms, 0 = none).
+     */
+    /* Whether TryDoOfflineSave would download anything now. */
+    public static async IsOfflineSaveDue(): Promise<boolean> {
+        return UserSettings.Instance.EnableOfflineReading && !await Utils.IsDoNotDownloadActive();
+    }
+
+    public static async TryDoOfflineSave(arts: Article[], deadline = 0): Promise<void> {
         if (!UserSettings.Instance.EnableOfflineReading) {
             return;
         }
@@ -78,24 +82,18 @@ export class OfflineCache {
 
         const startTime = Date.now();
         log.info(`Saving top ${UserSettings.Instance.OfflineCacheSize} articles for offline use..`);
-        
-        const offlineCache: { [url: string]: OfflineArticle } = {};
-        const updatePeriod = Math.min(arts.length, UserSettings.Instance.OfflineCacheSize) / 5;
-        for (let i = 0; i < arts.length && Object.keys(offlineCache).length < UserSettings.Instance.OfflineCacheSize; i++) {
-            const art = arts[i];
-            try {
-                offlineCache[art.url] = await WebpageParser.ExtractContentAsync(art.url);
-                if (i % updatePeriod == 0)
-                    log.info(`Downloaded ${i} / ${Math.min(arts.length, UserSettings.Instance.OfflineCacheSize)} articles so far.`);
-            } catch (err) {
-                log.warn('Failed to download article for offline use. Url: ', art.url, err);
-            }
-        }
-        log.info(`Download finished in ${Date.now() - startTime} ms (${Math.round((Date.now() - startTime)/Object.keys(offlineCache).length)} per article).`);
 
-        if (!this.TrySetCacheAsync(offlineCache)) {
-            log.error('Failed to save offline cache. SetCache failed.');
-        }
+        const summary: {succeeded: number, failed: number, skipped: number, alreadyStored: number, deadlineReached: boolean} =
+            await OfflineStoreModule.prefetch(arts.map((art: Article) => art.url), {
+                runId: `OfflineSave:${startTime}`,
+                wanted: UserSettings.Instance.OfflineCacheSize,
+                deadline: deadline,
+                allowList: HtmlPurifyList,
+            });
+
+        log.info(`Saved ${summary.succeeded} new articles (${summary.alreadyStored} already stored, ${summary.failed} failed).`);
+        if (summary.deadlineReached)
+            log.warn(`Stopped early because of deadline, ${summary.skipped} articles were not tried.`);
         log.info(`Finished in ${Date.now() - startTime} ms.`);
     }
-}
\ No newline at end of file
+}
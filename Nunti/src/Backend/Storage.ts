@@ -6,8 +6,12 @@ import { UserSettings } from './UserSettings';
 import Store from 'react-native-fs-store';
 import { Utils } from './Utils';
 import { Current } from './Current';
-import { OfflineArticle } from './OfflineCache';
+import { OfflineArticle, OfflineCache } from './OfflineCache';
+import { Downloader } from './Downloader';
+import { NativeModules } from 'react-native';
 const FSStore = new Store('store1');
+const ArticleStoreModule = NativeModules.ArticleStoreModule;
+const OfflineStoreModule = NativeModules.OfflineStoreModule;
 
 export class Storage {
     public static LastRemovedBookmark: Article | null = null;
@@ -19,8 +23,9 @@ export class Storage {
     /* Resets cache */
     public static async ResetCache(): Promise<void> {
         this.log.context('ResetCache').info('Resetting cache..');
-        await FSStore.setItem('cache', JSON.stringify({'timestamp': 0, 'articles': []}));
-        await FSStore.setItem('offline-cache', JSON.stringify({}));
+        await ArticleStoreModule.clear();
+        await OfflineStoreModule.clear();
+        await Downloader.ResetCache();
     }
     /* Resets all data in the app storage. */
     public static async ResetAllData(): Promise<void> {
@@ -100,48 +105,58 @@ export class Storage {
                     keywords:{}
                 }));
             }
+            const legacyCache = await FSStore.getItem('cache');
+            if (legacyCache !== null && legacyCache !== undefined) {
+                log.debug('Moving JSON article cache to the native article store..');
+                const cache = JSON.parse(legacyCache);
+                const arts: Article[] = cache.articles ?? [];
+                arts.forEach((art: Article) => { Article.Fix(art); });
+                await this.SetArticleCache(arts, parseInt((cache.timestamp ?? 0).toString()));
+                await FSStore.removeItem('cache');
+            }
+            const legacyOfflineCache = await FSStore.getItem('offline-cache');
+            if (legacyOfflineCache !== null && legacyOfflineCache !== undefined) {
+                log.debug('Moving JSON offline cache to the native offline store..');
+                const offlineArts: {[url: string]: OfflineArticle} = JSON.parse(legacyOfflineCache);
+                for (const url in offlineArts)
+                    await OfflineCache.TrySetArticleAsync(url, offlineArts[url]);
+                await FSStore.removeItem('offline-cache');
+            }
         } finally {
             log.info('DB unlocking now.');
             this.DbLocked = false;
         }
     }
-    /** Gets article cache */
-    public static async GetArticleCache(): Promise<{timestamp: number | string, articles: Article[]}> {
-        const log = this.log.context('GetArticleCache');
+    /** Gets timestamp and article count of the article cache, no article is read. */
+    public static async GetArticleCacheHeader(): Promise<{timestamp: number, count: number}> {
+        return await ArticleStoreModule.getHeader();
+    }
+    /** Gets cached articles [from, to), to = -1 reads until the end. */
+    public static async GetCachedArticles(from = 0, to = -1): Promise<Article[]> {
+        const log = this.log.context('GetCachedArticles');
         const startTime = Date.now();
-        let cache = await FSStore.getItem('cache');
-        if (cache == null) {
-            log.debug('Cache is null, initializing it.');
-            cache = {'timestamp': 0, 'articles': []};
-            await FSStore.setItem('cache',JSON.stringify(cache));
-        } else {
-            cache = JSON.parse(cache);
-        }
-        cache.articles.forEach((art: Article) => { Article.Fix(art); });
+        const arts: Article[] = (await ArticleStoreModule.getRange(from, to)).map((art: any) => { //eslint-disable-line
+            const article = new Article(0);
+            Object.assign(article, art);
+            article.date = art.date != undefined ? new Date(art.date) : undefined;
+            return article;
+        });
         const endTime = Date.now();
-        log.debug(`Retrieved in ${endTime - startTime} ms.`);
-        return cache;
-    }
-    public static async ClearOfflineCacheAsync(): Promise<void> {
-        await FSStore.setItem('offline-cache', '{}');
+        log.debug(`Retrieved ${arts.length} articles in ${endTime - startTime} ms.`);
+        return arts;
     }
-    public static async SetOfflineCacheAsync(arts: {[url: string]: OfflineArticle}): Promise<void> {
-        await FSStore.setItem('offline-cache', JSON.stringify(arts));
+    /** Replaces the article cache. */
+    public static async SetArticleCache(arts: Article[], timestamp: number): Promise<void> {
+        await ArticleStoreModule.write(arts.map((art: Article) => {
+            return {
+                title: art.title, description: art.description, cover: art.cover, url: art.url,
+                source: art.source, sourceUrl: art.sourceUrl, date: art.date?.getTime() ?? null, keywords: art.keywords,
+            };
+        }), timestamp);
     }
-    public static async GetOfflineCacheAsync(): Promise<{[url: string]: OfflineArticle}> {
-        const log = this.log.context('GetOfflineCache');
-        const startTime = Date.now();
-        let cache = await FSStore.getItem('offline-cache');
-        if (cache == null) {
-            log.debug('Cache is null, initializing it.');
-            cache = {};
-            await FSStore.setItem('cache',JSON.stringify(cache));
-        } else {
-            cache = JSON.parse(cache);
-        }
-        const endTime = Date.now();
-        log.debug(`Retrieved in ${endTime - startTime} ms.`);
-        return cache;
+    /** Marks the article cache as expired without rewriting it. */
+    public static async ExpireArticleCache(): Promise<void> {
+        await ArticleStoreModule.setTimestamp(0);
     }
     /* Tries to save an article, true on success, false on fail. */
     public static async TrySaveArticle(article: Article): Promise<boolean> {
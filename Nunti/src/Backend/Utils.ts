@@ -22,6 +22,16 @@ export class Utils {
         }
         return -1;
     }
+    /* Fisher-Yates shuffle in place, returns the same array. */
+    public static Shuffle<T>(a: T[]): T[] {
+        for (let i = a.length - 1; i > 0; i--) {
+            const j = Math.floor(Math.random() * (i + 1));
+            const x = a[i];
+            a[i] = a[j];
+            a[j] = x;
+        }
+        return a;
+    }
     public static PaginateArticles(arts: Article[], pageSize: number, keepFirstEmptyPage = true): Article[][] {
         let pages: Article[][] = [];
         while (arts.length > 0) {
@@ -1,7 +1,6 @@
-import SanitizeHtml from 'sanitize-html';
-import { DOMParser } from 'linkedom';
-import { Readability } from '@mozilla/readability';
 import HtmlPurifyList from '../HtmlPurifyList';
+import { NativeModules } from 'react-native';
+const WebpageParserModule = NativeModules.WebpageParserModule;
 
 export type ReadabilityArticle = {
     title: string;
@@ -21,21 +20,10 @@ export class WebpageParser {
         const response = await fetch(url);
         if (!response.ok)
             throw Error('HTTP Error: ' + response.statusText);
-
-        const cleanHtml = SanitizeHtml(await response.text(), {
-            allowedTags: HtmlPurifyList.tags,
-            allowedAttributes: { '*': HtmlPurifyList.attributes }
-        });
-        const dom = new DOMParser().parseFromString(cleanHtml, 'text/html');
-
-        // add base at base, readability expects it
-        const baseElem = dom.createElement('base');
-        baseElem.setAttribute('href', url);
-        dom.head.appendChild(baseElem);
-
-        const readable: ReadabilityArticle | null = new Readability(dom).parse();
-        if (readable == null)
-            throw Error('Readability engine extracted nothing.');
-        return readable;
+        return await this.ParseContentAsync(await response.text(), url);
     }
-}
\ No newline at end of file
+    /** Extracts readable content from an already downloaded webpage, may throw errors. Runs natively off the JS thread. */
+    public static async ParseContentAsync(html: string, url: string): Promise<ReadabilityArticle> {
+        return await WebpageParserModule.parse(html, url, HtmlPurifyList);
+    }
+}
@@ -116,6 +116,18 @@ type BackgroundFetchStatus = 0 | 1 | 2;
 */
 type NetworkType = 0 | 1 | 2 | 3 | 4;
 
+/**
+* Passed to [[BackgroundFetch.finish]], a periodic task is rescheduled from the results it finishes with,
+* see IntervalPolicy.java.
+*
+* | FetchResult                          | Description                                                   |
+* |--------------------------------------|---------------------------------------------------------------|
+* | BackgroundFetch.FETCH_RESULT_NEW_DATA | The run brought new data, the interval shrinks back toward minimumFetchInterval. |
+* | BackgroundFetch.FETCH_RESULT_NO_DATA  | Nothing new, repeated no-data runs stretch the interval.     |
+* | BackgroundFetch.FETCH_RESULT_FAILED   | The run failed, the interval backs off exponentially.        |
+*/
+export type FetchResult = 0 | 1 | 2;
+
 export interface HeadlessEvent {
     /**
     * The name of the task.  This will be used with [[BackgroundFetch.finish]] to signal task-completion.
@@ -126,6 +138,49 @@ export interface HeadlessEvent {
     */
     timeout: boolean;
 }
+
+/**
+* Duration histogram in milliseconds, `le` is the inclusive upper bound of a bucket, -1 for the last, open one.
+*/
+export interface DurationHistogram {
+    count: number;
+    totalMs: number;
+    maxMs: number;
+    buckets: { le: number, count: number }[];
+}
+
+/**
+* State of the native executor that loads configs and runs fetch bookkeeping.
+*/
+export interface ThreadPoolMetrics {
+    activeThreads: number;
+    poolSize: number;
+    maxThreads: number;
+    queueLength: number;
+    queueCapacity: number;
+    completed: number;
+    /** Tasks that did not fit into the queue and ran on the overflow thread. */
+    rejected: number;
+    /** From submission until a worker started the task. */
+    waitMs: DurationHistogram;
+    runMs: DurationHistogram;
+}
+
+/**
+* Cold-start cost of a headless task, every phase in ms since the previous one (the first since the job started).
+*/
+export interface HeadlessTiming {
+    taskId: string;
+    timeout: boolean;
+    /** No React context existed when the job fired. */
+    coldStart: boolean;
+    /** Context creation was already started by the pre-warm when the task arrived. */
+    prewarmed: boolean;
+    contextReadyMs: number;
+    jsTaskStartMs: number;
+    finishMs: number;
+    totalMs: number;
+}
 import {
     NativeModules,
     NativeEventEmitter,
@@ -149,7 +204,26 @@ const NETWORK_TYPE_UNMETERED = 2;
 const NETWORK_TYPE_NOT_ROAMING = 3;
 const NETWORK_TYPE_CELLULAR = 4;
 
+const FETCH_RESULT_NEW_DATA = 0;
+const FETCH_RESULT_NO_DATA = 1;
+const FETCH_RESULT_FAILED = 2;
+const FETCH_RESULT_NONE = -1;
+
+/**
+* A span of background work recorded natively (job, config load, React context, sync phases), see MetricsRecorder.java.
+*/
+export interface MetricsSpan {
+    name: string;
+    /** Task id or recording component, null if none. */
+    detail: string | null;
+    /** Milliseconds since epoch. */
+    startedAt: number;
+    durationMs: number;
+}
+
 export default class BackgroundFetch {
+    private static lastSpanId = 0;
+
     static get STATUS_RESTRICTED(): BackgroundFetchStatus { return STATUS_RESTRICTED; }
     static get STATUS_DENIED(): BackgroundFetchStatus { return STATUS_DENIED; }
     static get STATUS_AVAILABLE(): BackgroundFetchStatus { return STATUS_AVAILABLE; }
@@ -160,6 +234,10 @@ export default class BackgroundFetch {
     static get NETWORK_TYPE_NOT_ROAMING(): NetworkType { return NETWORK_TYPE_NOT_ROAMING; }
     static get NETWORK_TYPE_CELLULAR(): NetworkType { return NETWORK_TYPE_CELLULAR; }
 
+    static get FETCH_RESULT_NEW_DATA(): FetchResult { return FETCH_RESULT_NEW_DATA; }
+    static get FETCH_RESULT_NO_DATA(): FetchResult { return FETCH_RESULT_NO_DATA; }
+    static get FETCH_RESULT_FAILED(): FetchResult { return FETCH_RESULT_FAILED; }
+
     static configure(config: BackgroundFetchConfig, onEvent: (taskId: string) => void, onTimeout?: (taskId: string) => void): Promise<BackgroundFetchStatus> {
         const log = Log.context('BackgroundFetch').context('configure');
         if (typeof (onEvent) !== 'function') {
@@ -236,8 +314,39 @@ export default class BackgroundFetch {
         });
     }
 
-    static finish(taskId?: string): void {
-        RNBackgroundFetch.finish(taskId);
+    /** Without a result (timeouts) the interval of the task stays as it is. */
+    static finish(taskId?: string, result?: FetchResult): void {
+        RNBackgroundFetch.finish(taskId, result ?? FETCH_RESULT_NONE);
+    }
+
+    static getThreadPoolMetrics(): Promise<ThreadPoolMetrics> {
+        return new Promise((resolve) => {
+            RNBackgroundFetch.getThreadPoolMetrics(resolve);
+        });
+    }
+
+    static getHeadlessTimings(): Promise<HeadlessTiming[]> {
+        return new Promise((resolve) => {
+            RNBackgroundFetch.getHeadlessTimings(resolve);
+        });
+    }
+
+    /** Last recorded spans, oldest first. */
+    static getMetrics(): Promise<MetricsSpan[]> {
+        return new Promise((resolve) => {
+            RNBackgroundFetch.getMetrics(resolve);
+        });
+    }
+
+    /** Starts a recorded span (also a system trace section) for JS work, returns the id to pass to endSpan. */
+    static beginSpan(name: string, detail: string | null = null): number {
+        const id = ++BackgroundFetch.lastSpanId;
+        RNBackgroundFetch.beginSpan(id, name, detail);
+        return id;
+    }
+
+    static endSpan(id: number): void {
+        RNBackgroundFetch.endSpan(id);
     }
 
     static status(callback?: (status: BackgroundFetchStatus) => void): Promise<BackgroundFetchStatus> {
@@ -258,7 +258,18 @@ function ArticlesPage(props: Props) {
         forceUpdate(!forceValue);
     }
 
+    // the feed knows how many pages it has before the pages after the first one are ranked
+    const pageCount = (): number => {
+        if (props.source == 'feed' && Backend.FeedPageCount != null)
+            return Backend.FeedPageCount;
+        return articlesFromBackend.current.length;
+    };
+
     const changePage = async (newPageIndex: number) => {
+        if (props.source == 'feed' && newPageIndex > 0) {
+            await Backend.LoadRemainingFeedPages();
+            articlesFromBackend.current = Current.CurrentFeed;
+        }
         currentPageIndex.current = newPageIndex;
         flatListRef.current!.scrollToOffset({ animated: true, offset: 0 });
 
@@ -370,7 +381,7 @@ function ArticlesPage(props: Props) {
                             style={{ flex: 1, alignSelf: 'center' }}>{currentPageIndex.current + 1}</Button>
                         <IconButton onPress={() => { changePage(currentPageIndex.current + 1); }}
                             icon="chevron-right" mode="outlined"
-                            disabled={currentPageIndex.current + 1 == articlesFromBackend.current?.length} />
+                            disabled={currentPageIndex.current + 1 >= pageCount()} />
                     </View>
                 ) : null}
             ></FlatList>